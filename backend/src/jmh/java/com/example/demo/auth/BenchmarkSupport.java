@@ -0,0 +1,126 @@
+package com.example.demo.auth;
+
+import com.yubico.webauthn.CredentialRepository;
+import com.yubico.webauthn.FinishRegistrationOptions;
+import com.yubico.webauthn.RegisteredCredential;
+import com.yubico.webauthn.RegistrationResult;
+import com.yubico.webauthn.RelyingParty;
+import com.yubico.webauthn.data.AttestationConveyancePreference;
+import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.PublicKeyCredentialCreationOptions;
+import com.yubico.webauthn.data.PublicKeyCredentialDescriptor;
+import com.yubico.webauthn.data.RelyingPartyIdentity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+/** Bound properties, a relying party and a map-backed credential repository. */
+final class BenchmarkSupport {
+  static final String RP_ID = "localhost";
+  static final String ORIGIN = "http://localhost:5173";
+
+  private BenchmarkSupport() {}
+
+  static WebAuthnProperties properties(Map<String, String> overrides) {
+    Map<String, String> values = new HashMap<>();
+    values.put("app.webauthn.rpId", RP_ID);
+    values.put("app.webauthn.rpName", "Play");
+    values.put("app.webauthn.origins[0]", ORIGIN);
+    values.putAll(overrides);
+    return new Binder(new MapConfigurationPropertySource(values))
+        .bind("app.webauthn", WebAuthnProperties.class)
+        .get();
+  }
+
+  static EntropySource entropy(WebAuthnProperties properties) {
+    return properties.entropy().type() == WebAuthnProperties.Entropy.Type.SHARED
+        ? new SharedEntropySource()
+        : new StripedEntropySource(properties, new SimpleMeterRegistry());
+  }
+
+  static RelyingParty relyingParty(CredentialRepository credentials) {
+    return RelyingParty.builder()
+        .identity(RelyingPartyIdentity.builder().id(RP_ID).name("Play").build())
+        .credentialRepository(credentials)
+        .origins(Set.of(ORIGIN))
+        .attestationConveyancePreference(Optional.of(AttestationConveyancePreference.NONE))
+        .validateSignatureCounter(true)
+        .build();
+  }
+
+  /** Runs a real registration ceremony so the stored key comes from the library, not the test. */
+  static void register(
+      RelyingParty relyingParty,
+      InMemoryCredentials credentials,
+      SoftwareAuthenticator authenticator,
+      String username
+  ) throws Exception {
+    UserSummary user = new UserSummary(
+        (long) username.hashCode(),
+        username,
+        username,
+        new ByteArray(username.getBytes())
+    );
+    PublicKeyCredentialCreationOptions options =
+        relyingParty.startRegistration(WebAuthnService.registrationOptions(user));
+    String attestation = authenticator.register(options.toCredentialsCreateJson());
+    RegistrationResult result = relyingParty.finishRegistration(
+        FinishRegistrationOptions.builder()
+            .request(options)
+            .response(WebAuthnService.parseRegistrationCredential(attestation))
+            .build()
+    );
+    credentials.add(user, RegisteredCredential.builder()
+        .credentialId(result.getKeyId().getId())
+        .userHandle(user.userHandle())
+        .publicKeyCose(result.getPublicKeyCose())
+        .signatureCount(result.getSignatureCount())
+        .backupEligible(result.isBackupEligible())
+        .backupState(result.isBackedUp())
+        .build());
+  }
+
+  static final class InMemoryCredentials implements CredentialRepository {
+    private final Map<String, UserSummary> usersByName = new ConcurrentHashMap<>();
+    private final Map<ByteArray, UserSummary> usersByHandle = new ConcurrentHashMap<>();
+    private final Map<ByteArray, RegisteredCredential> credentials = new ConcurrentHashMap<>();
+
+    void add(UserSummary user, RegisteredCredential credential) {
+      usersByName.put(user.username(), user);
+      usersByHandle.put(user.userHandle(), user);
+      credentials.put(credential.getCredentialId(), credential);
+    }
+
+    @Override
+    public Set<PublicKeyCredentialDescriptor> getCredentialIdsForUsername(String username) {
+      return Set.of();
+    }
+
+    @Override
+    public Optional<ByteArray> getUserHandleForUsername(String username) {
+      return Optional.ofNullable(usersByName.get(username)).map(UserSummary::userHandle);
+    }
+
+    @Override
+    public Optional<String> getUsernameForUserHandle(ByteArray userHandle) {
+      return Optional.ofNullable(usersByHandle.get(userHandle)).map(UserSummary::username);
+    }
+
+    @Override
+    public Optional<RegisteredCredential> lookup(ByteArray credentialId, ByteArray userHandle) {
+      return Optional.ofNullable(credentials.get(credentialId))
+          .filter(credential -> credential.getUserHandle().equals(userHandle));
+    }
+
+    @Override
+    public Set<RegisteredCredential> lookupAll(ByteArray credentialId) {
+      RegisteredCredential credential = credentials.get(credentialId);
+      return credential == null ? Set.of() : Set.of(credential);
+    }
+  }
+}
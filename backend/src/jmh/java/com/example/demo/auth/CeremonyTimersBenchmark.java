@@ -0,0 +1,72 @@
+package com.example.demo.auth;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Cost of one phase record against a Prometheus registry with histogram buckets on, as in
+ * production. gc.alloc.rate.norm should stay at zero.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CeremonyTimersBenchmark {
+  private CeremonyTimers timers;
+
+  @Setup
+  public void setUp() {
+    PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    registry.config().meterFilter(new MeterFilter() {
+      @Override
+      public DistributionStatisticConfig configure(
+          Meter.Id id,
+          DistributionStatisticConfig config
+      ) {
+        return DistributionStatisticConfig.builder()
+            .percentilesHistogram(true)
+            .build()
+            .merge(config);
+      }
+    });
+    timers = new CeremonyTimers(registry);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public long phase1() {
+    return record();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public long phase16() {
+    return record();
+  }
+
+  private long record() {
+    long started = System.nanoTime();
+    long phase = timers.phase(
+        CeremonyTimers.Ceremony.AUTHENTICATION,
+        CeremonyTimers.Phase.VERIFY,
+        started
+    );
+    timers.ceremony(
+        CeremonyTimers.Ceremony.AUTHENTICATION,
+        CeremonyTimers.Outcome.SUCCESS,
+        started
+    );
+    return phase;
+  }
+}
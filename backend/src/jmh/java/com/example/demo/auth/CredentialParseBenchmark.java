@@ -0,0 +1,84 @@
+package com.example.demo.auth;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yubico.webauthn.data.PublicKeyCredential;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Verify-body handling from raw request bytes to the library's credential object:
+ * {@code boundMap} is the old bind-to-Map, re-serialize, parse route and {@code rawSlice} the
+ * single streaming pass the controllers use now.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CredentialParseBenchmark {
+  private static final ObjectMapper JSON = new ObjectMapper();
+
+  private byte[] assertionBody;
+  private byte[] registrationBody;
+
+  @Setup
+  public void setUp() throws Exception {
+    SoftwareAuthenticator authenticator = new SoftwareAuthenticator(
+        BenchmarkSupport.RP_ID,
+        BenchmarkSupport.ORIGIN,
+        false
+    );
+    var relyingParty = BenchmarkSupport.relyingParty(new BenchmarkSupport.InMemoryCredentials());
+    UserSummary user = new UserSummary(1L, "bench", "bench", new byte[32]);
+    String registration = authenticator.register(relyingParty
+        .startRegistration(WebAuthnService.registrationOptions(user))
+        .toCredentialsCreateJson());
+    String assertion = authenticator.authenticate(relyingParty
+        .startAssertion(WebAuthnService.assertionOptions(Optional.empty()))
+        .toCredentialsGetJson());
+    registrationBody = body(registration);
+    assertionBody = body(assertion);
+  }
+
+  @Benchmark
+  public PublicKeyCredential<?, ?> assertionRawSlice() {
+    return WebAuthnService.parseAssertionCredential(
+        FinishWebAuthnRequest.parse(assertionBody).credentialJson()
+    );
+  }
+
+  @Benchmark
+  public PublicKeyCredential<?, ?> assertionBoundMap() throws Exception {
+    Map<?, ?> bound = JSON.readValue(assertionBody, Map.class);
+    return WebAuthnService.parseAssertionCredential(
+        JSON.writeValueAsString(bound.get("credential"))
+    );
+  }
+
+  @Benchmark
+  public PublicKeyCredential<?, ?> registrationRawSlice() {
+    return WebAuthnService.parseRegistrationCredential(
+        FinishWebAuthnRequest.parse(registrationBody).credentialJson()
+    );
+  }
+
+  @Benchmark
+  public PublicKeyCredential<?, ?> registrationBoundMap() throws Exception {
+    Map<?, ?> bound = JSON.readValue(registrationBody, Map.class);
+    return WebAuthnService.parseRegistrationCredential(
+        JSON.writeValueAsString(bound.get("credential"))
+    );
+  }
+
+  private static byte[] body(String credentialJson) {
+    return ("{\"requestId\":\"bench\",\"credential\":" + credentialJson + "}")
+        .getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,49 @@
+package com.example.demo.auth;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/** Request-ID generation for the shared and striped entropy sources at 1, 16 and 64 threads. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EntropyBenchmark {
+  @Param({"shared", "striped"})
+  public String type;
+
+  private EntropySource entropy;
+
+  @Setup
+  public void setUp() {
+    entropy = BenchmarkSupport.entropy(BenchmarkSupport.properties(Map.of(
+        "app.webauthn.entropy.type", type
+    )));
+  }
+
+  @Benchmark
+  @Threads(1)
+  public String randomId1() {
+    return entropy.randomId();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public String randomId16() {
+    return entropy.randomId();
+  }
+
+  @Benchmark
+  @Threads(64)
+  public String randomId64() {
+    return entropy.randomId();
+  }
+}
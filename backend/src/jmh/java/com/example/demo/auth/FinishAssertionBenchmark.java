@@ -0,0 +1,68 @@
+package com.example.demo.auth;
+
+import com.yubico.webauthn.AssertionRequest;
+import com.yubico.webauthn.AssertionResult;
+import com.yubico.webauthn.FinishAssertionOptions;
+import com.yubico.webauthn.RelyingParty;
+import com.yubico.webauthn.data.AuthenticatorAssertionResponse;
+import com.yubico.webauthn.data.ClientAssertionExtensionOutputs;
+import com.yubico.webauthn.data.PublicKeyCredential;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Full {@code finishAssertion} against a map-backed repository, so the score is the library's
+ * parsing and signature work alone. Responses are signed up front and cycled through.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FinishAssertionBenchmark {
+  private static final int PREPARED = 256;
+
+  @Param({"ES256", "EDDSA"})
+  public SoftwareAuthenticator.Algorithm algorithm;
+
+  private RelyingParty relyingParty;
+  private FinishAssertionOptions[] prepared;
+  private int next;
+
+  @Setup
+  public void setUp() throws Exception {
+    BenchmarkSupport.InMemoryCredentials credentials = new BenchmarkSupport.InMemoryCredentials();
+    relyingParty = BenchmarkSupport.relyingParty(credentials);
+    SoftwareAuthenticator authenticator = new SoftwareAuthenticator(
+        BenchmarkSupport.RP_ID,
+        BenchmarkSupport.ORIGIN,
+        false,
+        algorithm
+    );
+    BenchmarkSupport.register(relyingParty, credentials, authenticator, "bench");
+
+    prepared = new FinishAssertionOptions[PREPARED];
+    for (int i = 0; i < PREPARED; i++) {
+      AssertionRequest request =
+          relyingParty.startAssertion(WebAuthnService.assertionOptions(Optional.empty()));
+      PublicKeyCredential<AuthenticatorAssertionResponse, ClientAssertionExtensionOutputs>
+          response = WebAuthnService.parseAssertionCredential(
+              authenticator.authenticate(request.toCredentialsGetJson())
+          );
+      prepared[i] = FinishAssertionOptions.builder().request(request).response(response).build();
+    }
+  }
+
+  @Benchmark
+  public AssertionResult finishAssertion() throws Exception {
+    FinishAssertionOptions options = prepared[next];
+    next = (next + 1) % PREPARED;
+    return relyingParty.finishAssertion(options);
+  }
+}
@@ -0,0 +1,58 @@
+package com.example.demo.auth;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Writing an options response with {@code publicKey} embedded raw vs as an escaped string. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class OptionsEncodingBenchmark {
+  private static final ObjectMapper JSON = new ObjectMapper();
+
+  @Param({"RAW", "STRING"})
+  public WebAuthnProperties.OptionsEncoding encoding;
+
+  private WebAuthnService.StartResponse start;
+
+  @Setup
+  public void setUp() throws Exception {
+    var relyingParty = BenchmarkSupport.relyingParty(new BenchmarkSupport.InMemoryCredentials());
+    UserSummary user = new UserSummary(1L, "bench", "Bench User", new byte[32]);
+    start = new WebAuthnService.StartResponse(
+        "bench",
+        relyingParty.startRegistration(WebAuthnService.registrationOptions(user))
+            .toCredentialsCreateJson()
+    );
+  }
+
+  @Benchmark
+  public byte[] write(PayloadSize size) throws Exception {
+    byte[] payload = JSON.writeValueAsBytes(AuthController.OptionsResponse.of(encoding, start));
+    size.bytes = payload.length;
+    return payload;
+  }
+
+  /** Reported next to the score so the size difference is tracked with the timing. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class PayloadSize {
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      bytes = 0;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package com.example.demo.auth;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RecoveryCodeBenchmark {
+  private final byte[] salt = new byte[16];
+  private final String entered = "abcde fghjk";
+  private final String normalized = "ABCDEFGHJK";
+
+  private RecoveryCodeService service;
+
+  @Setup
+  public void setUp() {
+    WebAuthnProperties properties = BenchmarkSupport.properties(Map.of());
+    service = new RecoveryCodeService(
+        null,
+        null,
+        null,
+        BenchmarkSupport.entropy(properties),
+        null,
+        null,
+        properties,
+        new SimpleMeterRegistry(),
+        new CeremonyTimers(new SimpleMeterRegistry())
+    );
+  }
+
+  @Benchmark
+  public String generate() {
+    return service.generateCode();
+  }
+
+  @Benchmark
+  public String normalize() {
+    return RecoveryCodeService.normalizeCode(entered);
+  }
+
+  /** Single-threaded cost of one hash; the pool runs {@code hashThreads} of these at once. */
+  @Benchmark
+  public byte[] hash(Kdf kdf) {
+    return kdf.kdf.hash(salt, normalized);
+  }
+
+  @State(Scope.Benchmark)
+  public static class Kdf {
+    @Param({"sha256", "scrypt:16384:8:1", "argon2id:19456:2:1"})
+    public String spec;
+
+    private RecoveryKdf kdf;
+
+    @Setup
+    public void setUp() {
+      kdf = RecoveryKdf.parse(spec);
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package com.example.demo.auth;
+
+import com.yubico.webauthn.AssertionRequest;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/** One create + consume round trip per op, uncontended and with 16 threads on one store. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RequestStoreBenchmark {
+  @Param({"memory", "sealed"})
+  public String type;
+
+  private WebAuthnRequestStore store;
+  private AssertionRequest request;
+
+  @Setup
+  public void setUp() {
+    WebAuthnProperties properties = BenchmarkSupport.properties(Map.of(
+        "app.webauthn.requestStore.type", type,
+        "app.webauthn.requestStore.sealKey", "AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA="
+    ));
+    EntropySource entropy = BenchmarkSupport.entropy(properties);
+    store = "sealed".equals(type)
+        ? new SealedWebAuthnRequestStore(properties, entropy)
+        : new InMemoryWebAuthnRequestStore(properties, entropy);
+    request = BenchmarkSupport.relyingParty(new BenchmarkSupport.InMemoryCredentials())
+        .startAssertion(WebAuthnService.assertionOptions(Optional.empty()));
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Object createAndConsume() {
+    return roundTrip();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public Object createAndConsumeContended() {
+    return roundTrip();
+  }
+
+  private Object roundTrip() {
+    String requestId = store.createAssertion(request, Optional.empty()).requestId();
+    return store.consumeAssertion(requestId).orElseThrow();
+  }
+}
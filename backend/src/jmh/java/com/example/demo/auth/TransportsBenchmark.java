@@ -0,0 +1,33 @@
+package com.example.demo.auth;
+
+import com.yubico.webauthn.data.AuthenticatorTransport;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TransportsBenchmark {
+  private final String stored = "hybrid,internal,usb";
+  private final Set<AuthenticatorTransport> transports = Set.of(
+      AuthenticatorTransport.HYBRID,
+      AuthenticatorTransport.INTERNAL,
+      AuthenticatorTransport.USB
+  );
+
+  @Benchmark
+  public Set<AuthenticatorTransport> parse() {
+    return JpaCredentialRepository.Transports.parse(stored);
+  }
+
+  @Benchmark
+  public String join() {
+    return JpaCredentialRepository.Transports.join(transports);
+  }
+}
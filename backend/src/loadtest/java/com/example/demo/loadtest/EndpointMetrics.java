@@ -0,0 +1,62 @@
+package com.example.demo.loadtest;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/** Per-endpoint latency histograms (1us to 60s, 3 significant digits) and error counts. */
+final class EndpointMetrics {
+  private static final long MAX_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+  private final Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+  private volatile boolean recording;
+
+  void start() {
+    recorders.values().forEach(Recorder::reset);
+    errors.values().forEach(LongAdder::reset);
+    recording = true;
+  }
+
+  void stop() {
+    recording = false;
+  }
+
+  void record(String endpoint, long latencyNanos, boolean ok) {
+    if (!recording) {
+      return;
+    }
+    recorders.computeIfAbsent(endpoint, key -> new Recorder(MAX_NANOS, 3))
+        .recordValue(Math.min(Math.max(latencyNanos, 1000), MAX_NANOS));
+    if (!ok) {
+      errors.computeIfAbsent(endpoint, key -> new LongAdder()).increment();
+    }
+  }
+
+  void report(PrintStream out, double seconds) {
+    out.printf("%-28s %9s %8s %9s %9s %9s %9s %9s %9s%n",
+        "endpoint", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+    recorders.keySet().stream().sorted().forEach(endpoint -> {
+      Histogram histogram = recorders.get(endpoint).getIntervalHistogram();
+      long failed = errors.getOrDefault(endpoint, new LongAdder()).sum();
+      out.printf("%-28s %9d %8d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+          endpoint,
+          histogram.getTotalCount(),
+          failed,
+          histogram.getTotalCount() / seconds,
+          millis(histogram.getValueAtPercentile(50)),
+          millis(histogram.getValueAtPercentile(90)),
+          millis(histogram.getValueAtPercentile(99)),
+          millis(histogram.getValueAtPercentile(99.9)),
+          millis(histogram.getMaxValue()));
+    });
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+}
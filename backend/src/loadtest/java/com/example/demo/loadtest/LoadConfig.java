@@ -0,0 +1,46 @@
+package com.example.demo.loadtest;
+
+import java.time.Duration;
+import org.springframework.boot.convert.DurationStyle;
+
+/** Settings read from {@code loadtest.*} system properties; see the loadTest Gradle task. */
+record LoadConfig(
+    Model model,
+    int users,
+    double rate,
+    Duration warmup,
+    Duration duration,
+    double registerRatio,
+    int recoveryFlood,
+    String baseUrl,
+    String report
+) {
+  enum Model {
+    /** A fixed number of users, each starting its next flow as soon as the last one ends. */
+    CLOSED,
+    /** Flows start on a Poisson schedule regardless of how fast earlier ones complete. */
+    OPEN
+  }
+
+  static LoadConfig fromSystemProperties() {
+    return new LoadConfig(
+        Model.valueOf(property("model", "closed").toUpperCase()),
+        Integer.parseInt(property("users", "50")),
+        Double.parseDouble(property("rate", "100")),
+        DurationStyle.detectAndParse(property("warmup", "10s")),
+        DurationStyle.detectAndParse(property("duration", "60s")),
+        Double.parseDouble(property("registerRatio", "0.05")),
+        Integer.parseInt(property("recoveryFlood", "0")),
+        property("baseUrl", ""),
+        property("report", "loadtest-summary.txt")
+    );
+  }
+
+  boolean inProcess() {
+    return baseUrl.isBlank();
+  }
+
+  private static String property(String name, String fallback) {
+    return System.getProperty("loadtest." + name, fallback);
+  }
+}
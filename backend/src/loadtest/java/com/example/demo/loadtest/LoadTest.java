@@ -0,0 +1,210 @@
+package com.example.demo.loadtest;
+
+import com.example.demo.DemoApplication;
+import com.example.demo.auth.SqlAccountingDataSource;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import javax.sql.DataSource;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Register, login, me and logout load against one node. Runs a warmup, then a measured window,
+ * and prints per-endpoint HdrHistogram percentiles plus the SQL statement count per flow when the
+ * app runs in-process. With {@code loadtest.recoveryFlood > 0} that many loops post wrong recovery
+ * codes throughout, to show what a recovery-login flood does to the login percentiles.
+ */
+public final class LoadTest {
+  private static final String RP_ID = "localhost";
+  private static final String ORIGIN = "http://localhost:5173";
+
+  private LoadTest() {}
+
+  public static void main(String[] args) throws Exception {
+    LoadConfig config = LoadConfig.fromSystemProperties();
+    ConfigurableApplicationContext app = null;
+    String baseUrl = config.baseUrl();
+    if (config.inProcess()) {
+      int port = freePort();
+      app = new SpringApplicationBuilder(DemoApplication.class)
+          .properties(
+              "server.address=127.0.0.1",
+              "server.port=" + port,
+              "app.webauthn.sqlAccounting.enabled=true"
+          )
+          .run();
+      baseUrl = "http://127.0.0.1:" + port;
+    }
+
+    try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+      HttpClient http = HttpClient.newBuilder()
+          .connectTimeout(Duration.ofSeconds(5))
+          .executor(workers)
+          .build();
+      EndpointMetrics metrics = new EndpointMetrics();
+      List<VirtualUser> users = registerUsers(http, baseUrl, metrics, config.users());
+      AtomicBoolean flooding = new AtomicBoolean(true);
+      if (config.recoveryFlood() > 0) {
+        VirtualUser target = users.get(0);
+        target.createRecoveryCodes();
+        for (int i = 0; i < config.recoveryFlood(); i++) {
+          workers.submit(() -> flood(target, flooding));
+        }
+      }
+
+      run(config, http, baseUrl, metrics, users, workers, config.warmup());
+      SqlAccountingDataSource accounting = accounting(app);
+      long statementsBefore = accounting == null ? 0 : accounting.statements();
+      metrics.start();
+      long started = System.nanoTime();
+      long flows = run(config, http, baseUrl, metrics, users, workers, config.duration());
+      metrics.stop();
+      flooding.set(false);
+      double seconds = (System.nanoTime() - started) / 1e9;
+
+      try (PrintStream report = new PrintStream(Files.newOutputStream(Path.of(config.report())))) {
+        for (PrintStream out : List.of(System.out, report)) {
+          out.printf("%s model, %s, %.1fs measured, %d flows%n",
+              config.model(), describe(config), seconds, flows);
+          metrics.report(out, seconds);
+          if (accounting != null) {
+            long statements = accounting.statements() - statementsBefore;
+            out.printf("SQL statements: %d (%.2f per flow)%n",
+                statements, flows == 0 ? 0.0 : (double) statements / flows);
+          }
+        }
+      }
+    } finally {
+      if (app != null) {
+        app.close();
+      }
+    }
+  }
+
+  private static List<VirtualUser> registerUsers(
+      HttpClient http,
+      String baseUrl,
+      EndpointMetrics metrics,
+      int count
+  ) throws Exception {
+    List<VirtualUser> users = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      VirtualUser user = new VirtualUser(http, baseUrl, metrics, RP_ID, ORIGIN);
+      user.register(System.nanoTime());
+      users.add(user);
+    }
+    return users;
+  }
+
+  /** Runs flows for {@code window} and returns how many completed. */
+  private static long run(
+      LoadConfig config,
+      HttpClient http,
+      String baseUrl,
+      EndpointMetrics metrics,
+      List<VirtualUser> users,
+      ExecutorService workers,
+      Duration window
+  ) throws InterruptedException {
+    AtomicLong completed = new AtomicLong();
+    long deadline = System.nanoTime() + window.toNanos();
+    List<Future<?>> pending = new ArrayList<>();
+    if (config.model() == LoadConfig.Model.CLOSED) {
+      for (VirtualUser user : users) {
+        pending.add(workers.submit(() -> {
+          while (System.nanoTime() < deadline) {
+            flow(config, http, baseUrl, metrics, user, System.nanoTime(), completed);
+          }
+        }));
+      }
+    } else {
+      double meanGapNanos = 1e9 / config.rate();
+      long next = System.nanoTime();
+      while (next < deadline) {
+        LockSupport.parkNanos(next - System.nanoTime());
+        long intendedStart = next;
+        VirtualUser user = users.get(ThreadLocalRandom.current().nextInt(users.size()));
+        pending.add(workers.submit(
+            () -> flow(config, http, baseUrl, metrics, user, intendedStart, completed)
+        ));
+        next += (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * meanGapNanos);
+      }
+    }
+    for (Future<?> future : pending) {
+      try {
+        future.get(60, TimeUnit.SECONDS);
+      } catch (Exception e) {
+        // counted as an endpoint error already
+      }
+    }
+    return completed.get();
+  }
+
+  private static void flow(
+      LoadConfig config,
+      HttpClient http,
+      String baseUrl,
+      EndpointMetrics metrics,
+      VirtualUser user,
+      long intendedStart,
+      AtomicLong completed
+  ) {
+    try {
+      if (ThreadLocalRandom.current().nextDouble() < config.registerRatio()) {
+        new VirtualUser(http, baseUrl, metrics, RP_ID, ORIGIN).register(intendedStart);
+      } else {
+        user.signIn(intendedStart);
+      }
+      completed.incrementAndGet();
+    } catch (Exception e) {
+      // recorded against the endpoint that failed
+    }
+  }
+
+  private static void flood(VirtualUser target, AtomicBoolean flooding) {
+    while (flooding.get()) {
+      try {
+        target.guessRecoveryCode();
+      } catch (Exception e) {
+        // recorded against recovery/login
+      }
+    }
+  }
+
+  private static SqlAccountingDataSource accounting(ConfigurableApplicationContext app)
+      throws Exception {
+    if (app == null) {
+      return null;
+    }
+    return app.getBean(DataSource.class).unwrap(SqlAccountingDataSource.class);
+  }
+
+  private static String describe(LoadConfig config) {
+    String load = config.model() == LoadConfig.Model.CLOSED
+        ? config.users() + " users"
+        : config.rate() + " flows/s over " + config.users() + " users";
+    return config.recoveryFlood() > 0
+        ? load + ", " + config.recoveryFlood() + " recovery-login flooders"
+        : load;
+  }
+
+  private static int freePort() throws Exception {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package com.example.demo.loadtest;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Measures the on-disk size of both recovery-code layouts for {@code loadtest.recoveryUsers}
+ * users (1M by default) with eight codes each. Builds them in a scratch schema of the database
+ * in SPRING_DATASOURCE_URL, vacuums, prints heap and index sizes and drops the schema again.
+ */
+public final class RecoveryStorageSize {
+  private static final String SCHEMA = "recovery_size";
+
+  private RecoveryStorageSize() {}
+
+  public static void main(String[] args) throws Exception {
+    int users = Integer.parseInt(System.getProperty("loadtest.recoveryUsers", "1000000"));
+    try (Connection connection = DriverManager.getConnection(
+        env("SPRING_DATASOURCE_URL", "jdbc:postgresql://localhost:5432/appdb"),
+        env("SPRING_DATASOURCE_USERNAME", "app"),
+        env("SPRING_DATASOURCE_PASSWORD", "app")
+    ); Statement sql = connection.createStatement()) {
+      sql.execute("drop schema if exists " + SCHEMA + " cascade");
+      sql.execute("create schema " + SCHEMA);
+      try {
+        sql.execute("""
+            create table %s.recovery_codes (
+              id bigint generated by default as identity primary key,
+              user_id bigint not null,
+              code_hash varchar(255) not null,
+              used boolean not null,
+              constraint uq_recovery_code_hash unique (user_id, code_hash)
+            )
+            """.formatted(SCHEMA));
+        sql.execute("""
+            insert into %s.recovery_codes (user_id, code_hash, used)
+            select u,
+                   rtrim(translate(encode(sha256((u * 8 + i)::text::bytea), 'base64'),
+                     '+/', '-_'), '='),
+                   false
+            from generate_series(1, %d) u, generate_series(0, 7) i
+            """.formatted(SCHEMA, users));
+        sql.execute("""
+            create table %s.recovery_code_sets (
+              user_id bigint primary key,
+              hashes bytea not null,
+              used_mask smallint not null default 0,
+              generated_at timestamptz not null
+            )
+            """.formatted(SCHEMA));
+        sql.execute("""
+            insert into %s.recovery_code_sets (user_id, hashes, used_mask, generated_at)
+            select u,
+                   (select string_agg(sha256((u * 8 + i)::text::bytea), ''::bytea order by i)
+                    from generate_series(0, 7) i),
+                   0,
+                   now()
+            from generate_series(1, %d) u
+            """.formatted(SCHEMA, users));
+        sql.execute("vacuum analyze " + SCHEMA + ".recovery_codes");
+        sql.execute("vacuum analyze " + SCHEMA + ".recovery_code_sets");
+
+        System.out.printf("%d users, 8 codes each%n", users);
+        System.out.printf("%-20s %12s %12s %12s%n", "layout", "heap MB", "indexes MB", "total MB");
+        long rows = report(sql, "recovery_codes");
+        long compact = report(sql, "recovery_code_sets");
+        System.out.printf("compact is %.1fx smaller%n", (double) rows / compact);
+      } finally {
+        sql.execute("drop schema " + SCHEMA + " cascade");
+      }
+    }
+  }
+
+  private static long report(Statement sql, String table) throws Exception {
+    String relation = "'" + SCHEMA + "." + table + "'";
+    try (ResultSet rs = sql.executeQuery("select pg_table_size(" + relation + "), "
+        + "pg_indexes_size(" + relation + "), pg_total_relation_size(" + relation + ")")) {
+      rs.next();
+      System.out.printf("%-20s %12.1f %12.1f %12.1f%n",
+          table, mb(rs.getLong(1)), mb(rs.getLong(2)), mb(rs.getLong(3)));
+      return rs.getLong(3);
+    }
+  }
+
+  private static double mb(long bytes) {
+    return bytes / (1024.0 * 1024.0);
+  }
+
+  private static String env(String name, String fallback) {
+    String value = System.getenv(name);
+    return value == null || value.isBlank() ? fallback : value;
+  }
+}
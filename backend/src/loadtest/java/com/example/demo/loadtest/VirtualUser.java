@@ -0,0 +1,162 @@
+package com.example.demo.loadtest;
+
+import com.example.demo.auth.SoftwareAuthenticator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * One passkey holder. Each flow keeps its own session cookie, so overlapping flows of the same
+ * user in the open model do not sign each other out. Every call is timed into
+ * {@link EndpointMetrics}; the first call of a flow is timed from its intended start, so in the
+ * open model the time a late flow waited to start counts too.
+ */
+final class VirtualUser {
+  private static final ObjectMapper JSON = new ObjectMapper();
+
+  private final HttpClient http;
+  private final String baseUrl;
+  private final EndpointMetrics metrics;
+  private final SoftwareAuthenticator authenticator;
+  private final String username = "load-" + UUID.randomUUID();
+
+  VirtualUser(
+      HttpClient http,
+      String baseUrl,
+      EndpointMetrics metrics,
+      String rpId,
+      String origin
+  ) {
+    this.http = http;
+    this.baseUrl = baseUrl;
+    this.metrics = metrics;
+    this.authenticator = new SoftwareAuthenticator(rpId, origin, false);
+  }
+
+  /** Registration signs the user in; the flow ends with logout. */
+  void register(long intendedStart) throws Exception {
+    Flow flow = new Flow();
+    JsonNode options = flow.post("register/options", "/api/auth/webauthn/register/options",
+        JSON.createObjectNode().put("username", username).toString(), intendedStart);
+    String attestation = authenticator.register(publicKey(options));
+    flow.post("register/verify", "/api/auth/webauthn/register/verify",
+        finishBody(options, attestation), System.nanoTime());
+    flow.send("logout", post("/api/auth/logout", "{}"), System.nanoTime());
+  }
+
+  /** Discoverable login, then /me and logout: the steady-state flow. */
+  void signIn(long intendedStart) throws Exception {
+    Flow flow = new Flow();
+    JsonNode options = flow.post("login/options", "/api/auth/webauthn/login/options", "{}",
+        intendedStart);
+    String assertion = authenticator.authenticate(publicKey(options));
+    flow.post("login/verify", "/api/auth/webauthn/login/verify",
+        finishBody(options, assertion), System.nanoTime());
+    HttpResponse<String> me =
+        flow.send("me", HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/me")).GET(),
+            System.nanoTime());
+    if (me.statusCode() != 200) {
+      throw new IllegalStateException("me returned " + me.statusCode());
+    }
+    flow.send("logout", post("/api/auth/logout", "{}"), System.nanoTime());
+  }
+
+  /** Signs in and creates recovery codes, so guesses against this user reach the KDF. */
+  void createRecoveryCodes() throws Exception {
+    Flow flow = new Flow();
+    JsonNode options = flow.post("login/options", "/api/auth/webauthn/login/options", "{}",
+        System.nanoTime());
+    String assertion = authenticator.authenticate(publicKey(options));
+    flow.post("login/verify", "/api/auth/webauthn/login/verify",
+        finishBody(options, assertion), System.nanoTime());
+    flow.post("recovery/create", "/api/auth/recovery/create", "{}", System.nanoTime());
+    flow.send("logout", post("/api/auth/logout", "{}"), System.nanoTime());
+  }
+
+  /**
+   * One wrong recovery code. 401 is the expected answer and counts as success; a 503 from the
+   * saturated hashing pool counts as an error.
+   */
+  void guessRecoveryCode() throws Exception {
+    String body = JSON.createObjectNode()
+        .put("username", username)
+        .put("code", "AAAAA-AAAAA")
+        .toString();
+    long start = System.nanoTime();
+    try {
+      HttpResponse<String> response = http.send(
+          post("/api/auth/recovery/login", body).timeout(Duration.ofSeconds(30)).build(),
+          HttpResponse.BodyHandlers.ofString()
+      );
+      metrics.record("recovery/login", System.nanoTime() - start, response.statusCode() == 401);
+    } catch (Exception e) {
+      metrics.record("recovery/login", System.nanoTime() - start, false);
+      throw e;
+    }
+  }
+
+  private HttpRequest.Builder post(String path, String body) {
+    return HttpRequest.newBuilder(URI.create(baseUrl + path))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(body));
+  }
+
+  /** Accepts both the raw and the string options encodings. */
+  private static String publicKey(JsonNode options) {
+    JsonNode publicKey = options.get("publicKey");
+    return publicKey.isTextual() ? publicKey.asText() : publicKey.toString();
+  }
+
+  private static String finishBody(JsonNode options, String credentialJson) {
+    return "{\"requestId\":\"" + options.get("requestId").asText()
+        + "\",\"credential\":" + credentialJson + "}";
+  }
+
+  private final class Flow {
+    private String cookie;
+
+    JsonNode post(String endpoint, String path, String body, long intendedStart)
+        throws Exception {
+      HttpResponse<String> response =
+          send(endpoint, VirtualUser.this.post(path, body), intendedStart);
+      if (response.statusCode() != 200) {
+        throw new IllegalStateException(endpoint + " returned " + response.statusCode());
+      }
+      return JSON.readTree(response.body());
+    }
+
+    HttpResponse<String> send(String endpoint, HttpRequest.Builder request, long start)
+        throws Exception {
+      if (cookie != null) {
+        request.header("Cookie", cookie);
+      }
+      try {
+        HttpResponse<String> response = http.send(
+            request.timeout(Duration.ofSeconds(30)).build(),
+            HttpResponse.BodyHandlers.ofString()
+        );
+        metrics.record(endpoint, System.nanoTime() - start, response.statusCode() < 400);
+        remember(response.headers().allValues("Set-Cookie"));
+        return response;
+      } catch (Exception e) {
+        metrics.record(endpoint, System.nanoTime() - start, false);
+        throw e;
+      }
+    }
+
+    private void remember(List<String> setCookies) {
+      if (!setCookies.isEmpty()) {
+        cookie = setCookies.stream()
+            .map(value -> value.split(";", 2)[0])
+            .collect(Collectors.joining("; "));
+      }
+    }
+  }
+}
@@ -1,10 +1,21 @@
 package com.example.demo.auth;
 
-import jakarta.servlet.http.HttpSession;
+import com.example.demo.auth.CeremonyTimers.Ceremony;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.exception.Base64UrlException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -13,35 +24,43 @@ import org.springframework.web.server.ResponseStatusException;
 
 @RestController
 @RequestMapping("/api/auth")
+@Profile("!reactive")
 public class AuthController {
   private final WebAuthnService webAuthnService;
   private final SessionService sessionService;
   private final RecoveryCodeService recoveryCodeService;
-  private final UserAccountRepository userRepository;
+  private final UserIdentityCache userCache;
+  private final CeremonyRouter ceremonyRouter;
+  private final WebAuthnProperties.OptionsEncoding optionsEncoding;
 
   public AuthController(
       WebAuthnService webAuthnService,
       SessionService sessionService,
       RecoveryCodeService recoveryCodeService,
-      UserAccountRepository userRepository
+      UserIdentityCache userCache,
+      CeremonyRouter ceremonyRouter,
+      WebAuthnProperties properties
   ) {
     this.webAuthnService = webAuthnService;
     this.sessionService = sessionService;
     this.recoveryCodeService = recoveryCodeService;
-    this.userRepository = userRepository;
+    this.userCache = userCache;
+    this.ceremonyRouter = ceremonyRouter;
+    this.optionsEncoding = properties.optionsEncoding();
   }
 
   @PostMapping("/webauthn/register/options")
-  public WebAuthnService.StartResponse startRegistration(
+  public OptionsResponse startRegistration(
       @RequestBody StartRegistrationRequest request,
-      HttpSession session
+      HttpServletRequest httpRequest,
+      HttpServletResponse httpResponse
   ) {
     try {
-      return webAuthnService.startRegistration(
+      return optionsResponse(webAuthnService.startRegistration(
           request.username(),
           request.displayName(),
-          sessionService.getUserId(session)
-      );
+          sessionService.getUserId(httpRequest, httpResponse)
+      ));
     } catch (IllegalStateException e) {
       throw new ResponseStatusException(HttpStatus.FORBIDDEN, e.getMessage());
     } catch (IllegalArgumentException e) {
@@ -51,15 +70,24 @@ public class AuthController {
 
   @PostMapping("/webauthn/register/verify")
   public AuthUserResponse finishRegistration(
-      @RequestBody FinishWebAuthnRequest request,
-      HttpSession session
+      @RequestBody byte[] body,
+      HttpServletRequest httpRequest,
+      HttpServletResponse httpResponse
   ) {
+    long started = System.nanoTime();
+    FinishWebAuthnRequest request = parseFinishRequest(body);
+    Optional<String> owner = ceremonyRouter.foreignOwner(request.requestId());
+    if (owner.isPresent()) {
+      AuthUserResponse user = ceremonyRouter.forwardRegistration(owner.get(), request);
+      sessionService.signIn(httpRequest, httpResponse, user.id(), Ceremony.REGISTRATION, started);
+      return user;
+    }
     try {
-      UserAccount user = webAuthnService.finishRegistration(
+      UserSummary user = webAuthnService.finishRegistration(
           request.requestId(),
-          request.credential()
+          request.credentialJson()
       );
-      sessionService.signIn(session, user.getId());
+      sessionService.signIn(httpRequest, httpResponse, user.id(), Ceremony.REGISTRATION, started);
       return AuthUserResponse.from(user);
     } catch (IllegalArgumentException e) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
@@ -69,7 +97,7 @@ public class AuthController {
   }
 
   @PostMapping("/webauthn/login/options")
-  public WebAuthnService.StartResponse startAuthentication(
+  public OptionsResponse startAuthentication(
       @RequestBody StartAuthenticationRequest request
   ) {
     try {
@@ -77,7 +105,7 @@ public class AuthController {
           request.username() == null || request.username().isBlank()
               ? Optional.empty()
               : Optional.of(request.username());
-      return webAuthnService.startAuthentication(username);
+      return optionsResponse(webAuthnService.startAuthentication(username));
     } catch (IllegalArgumentException e) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
     }
@@ -85,15 +113,24 @@ public class AuthController {
 
   @PostMapping("/webauthn/login/verify")
   public AuthUserResponse finishAuthentication(
-      @RequestBody FinishWebAuthnRequest request,
-      HttpSession session
+      @RequestBody byte[] body,
+      HttpServletRequest httpRequest,
+      HttpServletResponse httpResponse
   ) {
+    long started = System.nanoTime();
+    FinishWebAuthnRequest request = parseFinishRequest(body);
+    Optional<String> owner = ceremonyRouter.foreignOwner(request.requestId());
+    if (owner.isPresent()) {
+      AuthUserResponse user = ceremonyRouter.forwardAuthentication(owner.get(), request);
+      sessionService.signIn(httpRequest, httpResponse, user.id(), Ceremony.AUTHENTICATION, started);
+      return user;
+    }
     try {
-      UserAccount user = webAuthnService.finishAuthentication(
+      UserSummary user = webAuthnService.finishAuthentication(
           request.requestId(),
-          request.credential()
+          request.credentialJson()
       );
-      sessionService.signIn(session, user.getId());
+      sessionService.signIn(httpRequest, httpResponse, user.id(), Ceremony.AUTHENTICATION, started);
       return AuthUserResponse.from(user);
     } catch (IllegalArgumentException e) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
@@ -103,8 +140,11 @@ public class AuthController {
   }
 
   @PostMapping("/recovery/create")
-  public RecoveryCodesResponse createRecoveryCodes(HttpSession session) {
-    Long userId = sessionService.getUserId(session)
+  public RecoveryCodesResponse createRecoveryCodes(
+      HttpServletRequest httpRequest,
+      HttpServletResponse httpResponse
+  ) {
+    Long userId = sessionService.getUserId(httpRequest, httpResponse)
         .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not signed in"));
     List<String> codes = recoveryCodeService.generateCodes(userId);
     return new RecoveryCodesResponse(codes);
@@ -113,36 +153,99 @@ public class AuthController {
   @PostMapping("/recovery/login")
   public AuthUserResponse loginWithRecoveryCode(
       @RequestBody RecoveryLoginRequest request,
-      HttpSession session
+      HttpServletRequest httpRequest,
+      HttpServletResponse httpResponse
   ) {
+    long started = System.nanoTime();
     return recoveryCodeService.consumeCode(request.username(), request.code())
         .map(user -> {
-          sessionService.signIn(session, user.getId());
+          sessionService.signIn(httpRequest, httpResponse, user.id(), Ceremony.RECOVERY, started);
           return AuthUserResponse.from(user);
         })
         .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid code"));
   }
 
   @GetMapping("/me")
-  public AuthUserResponse me(HttpSession session) {
-    Long userId = sessionService.getUserId(session)
+  public AuthUserResponse me(HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
+    Long userId = sessionService.getUserId(httpRequest, httpResponse)
         .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not signed in"));
-    UserAccount user = userRepository.findById(userId)
+    UserSummary user = userCache.findById(userId)
         .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not signed in"));
     return AuthUserResponse.from(user);
   }
 
+  /**
+   * Deletes one of the caller's passkeys. Every session of the user is revoked with it; the
+   * caller's own session is re-issued so only the other devices are signed out.
+   */
+  @DeleteMapping("/webauthn/credentials/{credentialId}")
+  public void deleteCredential(
+      @PathVariable String credentialId,
+      HttpServletRequest httpRequest,
+      HttpServletResponse httpResponse
+  ) {
+    Long userId = sessionService.getUserId(httpRequest, httpResponse)
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not signed in"));
+    ByteArray id;
+    try {
+      id = ByteArray.fromBase64Url(credentialId);
+    } catch (Base64UrlException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid credential id");
+    }
+    if (!webAuthnService.deleteCredential(userId, id)) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Credential not found");
+    }
+    sessionService.reissue(httpRequest, httpResponse, userId);
+  }
+
   @PostMapping("/logout")
-  public void logout(HttpSession session) {
-    sessionService.signOut(session);
+  public void logout(HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
+    sessionService.signOut(httpRequest, httpResponse);
+  }
+
+  @ExceptionHandler(RecoveryCodeHasher.Busy.class)
+  public ResponseEntity<String> recoveryBusy(RecoveryCodeHasher.Busy e) {
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+        .header(HttpHeaders.RETRY_AFTER, "1")
+        .body(e.getMessage());
+  }
+
+  private OptionsResponse optionsResponse(WebAuthnService.StartResponse start) {
+    return OptionsResponse.of(optionsEncoding, start);
   }
 
+  static FinishWebAuthnRequest parseFinishRequest(byte[] body) {
+    try {
+      return FinishWebAuthnRequest.parse(body);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  public sealed interface OptionsResponse permits RawOptionsResponse, EncodedOptionsResponse {
+    static OptionsResponse of(
+        WebAuthnProperties.OptionsEncoding encoding,
+        WebAuthnService.StartResponse start
+    ) {
+      if (encoding == WebAuthnProperties.OptionsEncoding.STRING) {
+        return new EncodedOptionsResponse(start.requestId(), start.publicKey());
+      }
+      return new RawOptionsResponse(start.requestId(), start.publicKey());
+    }
+  }
+
+  /** Options embedded as a JSON object; the library output is copied through without escaping. */
+  public record RawOptionsResponse(String requestId, @JsonRawValue String publicKey)
+      implements OptionsResponse {}
+
+  /** Options as a JSON string literal, for clients that still parse {@code publicKey} again. */
+  public record EncodedOptionsResponse(String requestId, String publicKey)
+      implements OptionsResponse {}
+
   public record StartRegistrationRequest(String username, String displayName) {}
 
   public record StartAuthenticationRequest(String username) {}
 
-  public record FinishWebAuthnRequest(String requestId, Object credential) {}
-
   public record RecoveryLoginRequest(String username, String code) {}
 
   public record RecoveryCodesResponse(List<String> codes) {}
@@ -151,5 +254,9 @@ public class AuthController {
     public static AuthUserResponse from(UserAccount user) {
       return new AuthUserResponse(user.getId(), user.getUsername(), user.getDisplayName());
     }
+
+    public static AuthUserResponse from(UserSummary user) {
+      return new AuthUserResponse(user.id(), user.username(), user.displayName());
+    }
   }
 }
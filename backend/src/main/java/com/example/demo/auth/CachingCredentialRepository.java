@@ -0,0 +1,179 @@
+package com.example.demo.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.yubico.webauthn.CredentialRepository;
+import com.yubico.webauthn.RegisteredCredential;
+import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.PublicKeyCredentialDescriptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches what every node can safely share: credential keys (public key and user handle), which
+ * never change, and each user's credential list for a few seconds. The signature counter and
+ * backup flags are read fresh on every lookup, so a node never verifies against a counter another
+ * node has already moved past, and a passkey deleted elsewhere stops resolving immediately.
+ */
+@Component
+@Primary
+public class CachingCredentialRepository implements CredentialRepository {
+  private final JpaCredentialRepository delegate;
+  private final WebAuthnCredentialRepository credentialRepository;
+  private final UserIdentityCache userCache;
+  private final Cache<ByteArray, Set<RegisteredCredential>> credentialsById;
+  private final Cache<ByteArray, Set<PublicKeyCredentialDescriptor>> descriptorsByUserHandle;
+  private final Timer credentialLoads;
+  private final Timer descriptorLoads;
+
+  public CachingCredentialRepository(
+      JpaCredentialRepository delegate,
+      WebAuthnCredentialRepository credentialRepository,
+      UserIdentityCache userCache,
+      WebAuthnProperties properties,
+      MeterRegistry meterRegistry
+  ) {
+    this.delegate = delegate;
+    this.credentialRepository = credentialRepository;
+    this.userCache = userCache;
+    WebAuthnProperties.CredentialCache config = properties.credentialCache();
+    this.credentialsById = Caffeine.newBuilder()
+        .maximumSize(config.maximumSize())
+        .expireAfterWrite(config.ttl())
+        .recordStats()
+        .build();
+    this.descriptorsByUserHandle = Caffeine.newBuilder()
+        .maximumSize(config.maximumSize())
+        .expireAfterWrite(config.descriptorTtl())
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, credentialsById, "webauthn.credentials");
+    CaffeineCacheMetrics.monitor(meterRegistry, descriptorsByUserHandle, "webauthn.descriptors");
+    this.credentialLoads = loads(meterRegistry, "credentials");
+    this.descriptorLoads = loads(meterRegistry, "descriptors");
+  }
+
+  @Override
+  public Set<PublicKeyCredentialDescriptor> getCredentialIdsForUsername(String username) {
+    return getUserHandleForUsername(username)
+        .map(userHandle -> RequestMemo.computeIfAbsent(
+            "descriptors",
+            userHandle,
+            () -> descriptorsByUserHandle.get(userHandle, this::loadDescriptors)
+        ))
+        .orElseGet(Collections::emptySet);
+  }
+
+  @Override
+  public Optional<ByteArray> getUserHandleForUsername(String username) {
+    return userCache.findByUsername(username).map(UserSummary::userHandle);
+  }
+
+  @Override
+  public Optional<String> getUsernameForUserHandle(ByteArray userHandle) {
+    return userCache.findByUserHandle(userHandle).map(UserSummary::username);
+  }
+
+  @Override
+  public Optional<RegisteredCredential> lookup(ByteArray credentialId, ByteArray userHandle) {
+    return lookupAll(credentialId).stream()
+        .filter(credential -> credential.getUserHandle().equals(userHandle))
+        .findFirst();
+  }
+
+  @Override
+  public Set<RegisteredCredential> lookupAll(ByteArray credentialId) {
+    return RequestMemo.computeIfAbsent("credentials", credentialId, () -> {
+      boolean[] loaded = new boolean[1];
+      Set<RegisteredCredential> keys = credentialsById.get(credentialId, id -> {
+        loaded[0] = true;
+        return loadCredentials(id);
+      });
+      if (keys == null || loaded[0]) {
+        return keys == null ? Set.of() : keys;
+      }
+      return withCurrentState(credentialId, keys);
+    });
+  }
+
+  public void credentialRegistered(ByteArray credentialId, ByteArray userHandle) {
+    invalidate(credentialId, userHandle);
+  }
+
+  public void credentialRemoved(ByteArray credentialId, ByteArray userHandle) {
+    invalidate(credentialId, userHandle);
+  }
+
+  private void invalidate(ByteArray credentialId, ByteArray userHandle) {
+    RequestMemo.forget("credentials", credentialId);
+    RequestMemo.forget("descriptors", userHandle);
+    AfterCommit.run(() -> {
+      credentialsById.invalidate(credentialId);
+      descriptorsByUserHandle.invalidate(userHandle);
+    });
+  }
+
+  /** A credential missing from the table was removed on some node; forget its key too. */
+  private Set<RegisteredCredential> withCurrentState(
+      ByteArray credentialId,
+      Set<RegisteredCredential> keys
+  ) {
+    Optional<CredentialState> state =
+        credentialRepository.findStateByCredentialId(credentialId.getBytes());
+    if (state.isEmpty()) {
+      credentialsById.invalidate(credentialId);
+      return Set.of();
+    }
+    CredentialState current = state.get();
+    return keys.stream()
+        .map(credential -> credential.toBuilder()
+            .signatureCount(current.signatureCount())
+            .backupEligible(current.backupEligible())
+            .backupState(current.backupState())
+            .build())
+        .collect(Collectors.toUnmodifiableSet());
+  }
+
+  /** Unknown IDs are not cached, so a credential registered on another node is found at once. */
+  private Set<RegisteredCredential> loadCredentials(ByteArray credentialId) {
+    long started = System.nanoTime();
+    Set<RegisteredCredential> credentials = Set.copyOf(delegate.lookupAll(credentialId));
+    credentialLoads.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    return credentials.isEmpty() ? null : credentials;
+  }
+
+  private Set<PublicKeyCredentialDescriptor> loadDescriptors(ByteArray userHandle) {
+    long started = System.nanoTime();
+    Set<PublicKeyCredentialDescriptor> descriptors =
+        delegate.getCredentialIdsForUserHandle(userHandle);
+    descriptorLoads.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    return descriptors;
+  }
+
+  void invalidateAll() {
+    credentialsById.invalidateAll();
+    descriptorsByUserHandle.invalidateAll();
+  }
+
+  public CacheStats credentialStats() {
+    return credentialsById.stats();
+  }
+
+  public CacheStats descriptorStats() {
+    return descriptorsByUserHandle.stats();
+  }
+
+  /** Time spent in Postgres on a cache miss; hits are visible in the cache metrics instead. */
+  private static Timer loads(MeterRegistry registry, String query) {
+    return Timer.builder("webauthn.credential.load").tag("query", query).register(registry);
+  }
+}
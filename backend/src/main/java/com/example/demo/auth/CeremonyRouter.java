@@ -0,0 +1,109 @@
+package com.example.demo.auth;
+
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Optional;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.server.ResponseStatusException;
+
+@Component
+public class CeremonyRouter {
+  static final String SECRET_HEADER = "X-Internal-Secret";
+  static final String NODE_HEADER = "X-Ceremony-Node";
+  private static final HttpStatusCode MISDIRECTED_REQUEST = HttpStatusCode.valueOf(421);
+
+  private final WebAuthnProperties.Cluster cluster;
+  private final RestClient restClient;
+
+  public CeremonyRouter(WebAuthnProperties properties) {
+    this.cluster = properties.cluster();
+    JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(
+        HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build()
+    );
+    requestFactory.setReadTimeout(Duration.ofSeconds(5));
+    this.restClient = RestClient.builder().requestFactory(requestFactory).build();
+  }
+
+  public Optional<String> foreignOwner(String requestId) {
+    if (!cluster.enabled()) {
+      return Optional.empty();
+    }
+    return RequestIds.nodeId(requestId)
+        .filter(node -> !node.equals(cluster.nodeId()))
+        .filter(cluster.peers()::containsKey);
+  }
+
+  public AuthController.AuthUserResponse forwardRegistration(
+      String owner,
+      FinishWebAuthnRequest request
+  ) {
+    return forward(owner, "/internal/webauthn/register/verify", request);
+  }
+
+  public AuthController.AuthUserResponse forwardAuthentication(
+      String owner,
+      FinishWebAuthnRequest request
+  ) {
+    return forward(owner, "/internal/webauthn/login/verify", request);
+  }
+
+  public boolean isTrustedPeer(String secret) {
+    String expected = cluster.internalSecret();
+    if (expected == null || expected.isBlank() || secret == null) {
+      return false;
+    }
+    return MessageDigest.isEqual(
+        expected.getBytes(StandardCharsets.UTF_8),
+        secret.getBytes(StandardCharsets.UTF_8)
+    );
+  }
+
+  private AuthController.AuthUserResponse forward(
+      String owner,
+      String path,
+      FinishWebAuthnRequest request
+  ) {
+    if (cluster.misroutePolicy() == WebAuthnProperties.Cluster.MisroutePolicy.REDIRECT) {
+      throw new MisdirectedCeremonyException(owner);
+    }
+    try {
+      return restClient.post()
+          .uri(cluster.peers().get(owner) + path)
+          .contentType(MediaType.APPLICATION_JSON)
+          .header(SECRET_HEADER, cluster.internalSecret())
+          .body(request.body())
+          .retrieve()
+          .body(AuthController.AuthUserResponse.class);
+    } catch (RestClientResponseException e) {
+      throw new ResponseStatusException(e.getStatusCode(), "Verification failed");
+    } catch (RestClientException e) {
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Owning node unavailable");
+    }
+  }
+
+  static final class MisdirectedCeremonyException extends ResponseStatusException {
+    private final String owner;
+
+    MisdirectedCeremonyException(String owner) {
+      super(MISDIRECTED_REQUEST, "Ceremony belongs to another node");
+      this.owner = owner;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      HttpHeaders headers = new HttpHeaders();
+      headers.set(NODE_HEADER, owner);
+      return headers;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package com.example.demo.auth;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.springframework.stereotype.Component;
+
+/**
+ * Phase and end-to-end timers for the finish side of each ceremony. Timers are registered the
+ * first time a ceremony/phase/outcome combination is seen and kept in flat arrays, so recording
+ * is an index, a clock read and a histogram update with nothing allocated.
+ *
+ * <p>Callers chain phases by passing the value returned from the previous {@link #phase} call as
+ * the next start. Histogram buckets are configured under {@code management.metrics.distribution}.
+ *
+ * <p>Only {@code health} is exposed over HTTP by default, since timings and failure rates should
+ * not be public. To scrape them, add {@code metrics,prometheus} to
+ * {@code management.endpoints.web.exposure.include} together with a {@code management.server.port}
+ * and {@code management.server.address} on a private listener.
+ */
+@Component
+public class CeremonyTimers {
+  static final String PHASE_TIMER = "webauthn.ceremony.phase";
+  static final String CEREMONY_TIMER = "webauthn.ceremony";
+
+  private static final Ceremony[] CEREMONIES = Ceremony.values();
+  private static final Phase[] PHASES = Phase.values();
+  private static final Outcome[] OUTCOMES = Outcome.values();
+
+  private final MeterRegistry registry;
+  private final AtomicReferenceArray<Timer> phases =
+      new AtomicReferenceArray<>(CEREMONIES.length * PHASES.length * OUTCOMES.length);
+  private final AtomicReferenceArray<Timer> ceremonies =
+      new AtomicReferenceArray<>(CEREMONIES.length * OUTCOMES.length);
+
+  public CeremonyTimers(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  /** Records a successful phase and returns the end time, which is the next phase's start. */
+  long phase(Ceremony ceremony, Phase phase, long startNanos) {
+    return phase(ceremony, phase, Outcome.SUCCESS, startNanos);
+  }
+
+  long phase(Ceremony ceremony, Phase phase, Outcome outcome, long startNanos) {
+    long now = System.nanoTime();
+    phaseTimer(ceremony, phase, outcome).record(now - startNanos, TimeUnit.NANOSECONDS);
+    return now;
+  }
+
+  void ceremony(Ceremony ceremony, Outcome outcome, long startNanos) {
+    ceremonyTimer(ceremony, outcome).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Records the phase that failed and the ceremony as a whole, and hands back {@code failure} so
+   * the caller can throw it in one statement.
+   */
+  <E extends RuntimeException> E failed(
+      Ceremony ceremony,
+      Phase phase,
+      Outcome outcome,
+      long phaseStartNanos,
+      long ceremonyStartNanos,
+      E failure
+  ) {
+    phase(ceremony, phase, outcome, phaseStartNanos);
+    ceremony(ceremony, outcome, ceremonyStartNanos);
+    return failure;
+  }
+
+  private Timer phaseTimer(Ceremony ceremony, Phase phase, Outcome outcome) {
+    int index = (ceremony.ordinal() * PHASES.length + phase.ordinal()) * OUTCOMES.length
+        + outcome.ordinal();
+    Timer timer = phases.get(index);
+    if (timer == null) {
+      timer = Timer.builder(PHASE_TIMER)
+          .tag("ceremony", ceremony.tag)
+          .tag("phase", phase.tag)
+          .tag("outcome", outcome.tag)
+          .register(registry);
+      phases.set(index, timer);
+    }
+    return timer;
+  }
+
+  private Timer ceremonyTimer(Ceremony ceremony, Outcome outcome) {
+    int index = ceremony.ordinal() * OUTCOMES.length + outcome.ordinal();
+    Timer timer = ceremonies.get(index);
+    if (timer == null) {
+      timer = Timer.builder(CEREMONY_TIMER)
+          .tag("ceremony", ceremony.tag)
+          .tag("outcome", outcome.tag)
+          .register(registry);
+      ceremonies.set(index, timer);
+    }
+    return timer;
+  }
+
+  public enum Ceremony {
+    REGISTRATION("registration"),
+    AUTHENTICATION("authentication"),
+    RECOVERY("recovery");
+
+    final String tag;
+
+    Ceremony(String tag) {
+      this.tag = tag;
+    }
+  }
+
+  public enum Phase {
+    STORE_CONSUME("store-consume"),
+    PARSE("parse"),
+    /** {@code relyingParty.finish*}, including credential lookups that miss the cache. */
+    VERIFY("verify"),
+    USER_LOOKUP("user-lookup"),
+    CREDENTIAL_WRITE("credential-write"),
+    COUNTER_UPDATE("counter-update"),
+    CODE_HASH("code-hash"),
+    CODE_CONSUME("code-consume"),
+    SESSION_SIGN_IN("session-sign-in");
+
+    final String tag;
+
+    Phase(String tag) {
+      this.tag = tag;
+    }
+  }
+
+  public enum Outcome {
+    SUCCESS("success"),
+    /** The pending request was gone: expired, already used or never issued. */
+    EXPIRED("expired"),
+    /** The client payload did not parse. */
+    INVALID("invalid"),
+    /** Signature, challenge or origin checks failed, or the code did not match. */
+    FAILURE("failure");
+
+    final String tag;
+
+    Outcome(String tag) {
+      this.tag = tag;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package com.example.demo.auth;
+
+import jakarta.annotation.PostConstruct;
+import java.util.List;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * One {@code recovery_code_sets} row per user: the code hashes concatenated into a single
+ * {@code bytea} of fixed-width slots plus a {@code smallint} bitmap of used slots. Regenerating
+ * is one upsert and redeeming is one compare-and-set on the bitmap, keyed by the primary key
+ * alone, instead of eight rows and a {@code (user_id, code_hash)} index per user.
+ *
+ * <p>Rows left in {@code recovery_codes} are folded into sets and deleted by {@link #migrateRows},
+ * which only runs at startup when {@code app.webauthn.recovery.migrateRows} is set: enable it for
+ * one deploy once every node is on compact storage, since nodes still on {@code rows} keep
+ * writing there. Users that already have a set keep it. Switching back to {@code rows} storage
+ * does not move codes back, so users would need to regenerate them.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@ConditionalOnProperty(prefix = "app.webauthn.recovery", name = "storage", havingValue = "compact")
+public class CompactRecoveryCodeStore implements RecoveryCodeStore {
+  static final int HASH_LENGTH = RecoveryKdf.HASH_LENGTH;
+  static final int MAX_CODES = 15;
+
+  private static final Logger log = LoggerFactory.getLogger(CompactRecoveryCodeStore.class);
+
+  private static final String UPSERT = """
+      insert into recovery_code_sets (user_id, hashes, used_mask, generated_at)
+      values (?, ?, 0, now())
+      on conflict (user_id) do update
+      set hashes = excluded.hashes, used_mask = 0, generated_at = excluded.generated_at
+      """;
+
+  /**
+   * A hash only counts where it starts on a slot boundary ({@code position} is 1-based). The
+   * bitmap test in the where clause is re-checked under the row lock, so of two concurrent
+   * redemptions of the same slot only one updates the row.
+   */
+  private static final String REDEEM = """
+      update recovery_code_sets s
+      set used_mask = (s.used_mask | (1 << ((position(? in s.hashes) - 1) / %1$d)))::smallint
+      from users u
+      where u.username = ? and s.user_id = u.id
+        and position(? in s.hashes) %% %1$d = 1
+        and s.used_mask & (1 << ((position(? in s.hashes) - 1) / %1$d)) = 0
+      returning u.id, u.username, u.display_name, u.user_handle
+      """.formatted(HASH_LENGTH);
+
+  private static final String MIGRATE = """
+      insert into recovery_code_sets (user_id, hashes, used_mask, generated_at)
+      select user_id,
+             string_agg(hash, ''::bytea order by slot),
+             bit_or(case when used then 1 << slot else 0 end)::smallint,
+             now()
+      from (
+        select user_id, used,
+               decode(translate(code_hash, '-_', '+/') || '=', 'base64') as hash,
+               (row_number() over (partition by user_id order by id) - 1)::int as slot
+        from recovery_codes
+      ) c
+      where slot < %d
+      group by user_id
+      on conflict (user_id) do nothing
+      """.formatted(MAX_CODES);
+
+  private static final String DELETE_MIGRATED = """
+      delete from recovery_codes
+      where user_id in (select user_id from recovery_code_sets)
+      """;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final boolean migrateRows;
+
+  public CompactRecoveryCodeStore(
+      JdbcTemplate jdbcTemplate,
+      TransactionTemplate transactionTemplate,
+      WebAuthnProperties properties
+  ) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = transactionTemplate;
+    this.migrateRows = properties.recovery().migrateRows();
+  }
+
+  @PostConstruct
+  void createTable() {
+    jdbcTemplate.execute("""
+        create table if not exists recovery_code_sets (
+          user_id bigint primary key references users (id) on delete cascade,
+          hashes bytea not null,
+          used_mask smallint not null default 0,
+          generated_at timestamptz not null
+        )
+        """);
+    if (migrateRows) {
+      migrateRows();
+    }
+  }
+
+  /** Folds {@code recovery_codes} rows into sets and deletes them, in one transaction. */
+  int migrateRows() {
+    Integer migrated = transactionTemplate.execute(status -> {
+      int sets = jdbcTemplate.update(MIGRATE);
+      jdbcTemplate.update(DELETE_MIGRATED);
+      return sets;
+    });
+    int users = migrated == null ? 0 : migrated;
+    log.info("Moved recovery codes of {} users into recovery_code_sets", users);
+    return users;
+  }
+
+  @Override
+  public void replace(Long userId, List<byte[]> hashes) {
+    if (hashes.size() > MAX_CODES) {
+      throw new IllegalArgumentException("At most " + MAX_CODES + " recovery codes fit a set");
+    }
+    byte[] slots = new byte[hashes.size() * HASH_LENGTH];
+    for (int i = 0; i < hashes.size(); i++) {
+      byte[] hash = hashes.get(i);
+      if (hash.length != HASH_LENGTH) {
+        throw new IllegalArgumentException("Recovery code hashes must be " + HASH_LENGTH
+            + " bytes");
+      }
+      System.arraycopy(hash, 0, slots, i * HASH_LENGTH, HASH_LENGTH);
+    }
+    jdbcTemplate.update(UPSERT, userId, slots);
+  }
+
+  @Override
+  public Optional<UserSummary> redeem(String username, byte[] hash) {
+    List<UserSummary> redeemed = jdbcTemplate.query(REDEEM, (rs, rowNum) -> new UserSummary(
+        rs.getLong("id"),
+        rs.getString("username"),
+        rs.getString("display_name"),
+        rs.getBytes("user_handle")
+    ), hash, username, hash, hash);
+    return redeemed.isEmpty() ? Optional.empty() : Optional.of(redeemed.get(0));
+  }
+}
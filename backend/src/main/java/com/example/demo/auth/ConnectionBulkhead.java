@@ -0,0 +1,146 @@
+package com.example.demo.auth;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Admits at most {@code permits} concurrent connection holders (normally the pool size) and at
+ * most {@code maxWaiting} callers queued behind them. With virtual threads every request gets its
+ * own thread, so without this thousands of them would queue inside the pool and fail only after
+ * the pool's connection timeout. Callers over the limit are rejected straight away with
+ * {@link Rejected}, which the web layer turns into a 503.
+ */
+public class ConnectionBulkhead extends DelegatingDataSource {
+  private final Semaphore permits;
+  private final int capacity;
+  private final int maxWaiting;
+  private final long acquireTimeoutNanos;
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final LongAdder rejected = new LongAdder();
+
+  public ConnectionBulkhead(
+      DataSource target,
+      int permits,
+      int maxWaiting,
+      Duration acquireTimeout
+  ) {
+    super(target);
+    this.permits = new Semaphore(permits, true);
+    this.capacity = permits;
+    this.maxWaiting = maxWaiting;
+    this.acquireTimeoutNanos = acquireTimeout.toNanos();
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    admit();
+    try {
+      return releasingOnClose(obtainTargetDataSource().getConnection());
+    } catch (SQLException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    admit();
+    try {
+      return releasingOnClose(obtainTargetDataSource().getConnection(username, password));
+    } catch (SQLException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public int inUse() {
+    return capacity - permits.availablePermits();
+  }
+
+  public int waiting() {
+    return waiting.get();
+  }
+
+  public long rejected() {
+    return rejected.sum();
+  }
+
+  private void admit() throws SQLException {
+    // The untimed tryAcquire() barges past queued callers; the timed form honours fairness.
+    if (acquire(0)) {
+      return;
+    }
+    if (waiting.incrementAndGet() > maxWaiting) {
+      waiting.decrementAndGet();
+      rejected.increment();
+      throw new Rejected("Database bulkhead queue is full");
+    }
+    try {
+      if (!acquire(acquireTimeoutNanos)) {
+        rejected.increment();
+        throw new Rejected("Timed out waiting for a database permit");
+      }
+    } finally {
+      waiting.decrementAndGet();
+    }
+  }
+
+  private boolean acquire(long timeoutNanos) throws Rejected {
+    try {
+      return permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new Rejected("Interrupted while waiting for a database permit");
+    }
+  }
+
+  private Connection releasingOnClose(Connection connection) {
+    AtomicBoolean released = new AtomicBoolean();
+    InvocationHandler handler = (proxy, method, args) -> invoke(connection, released, method, args);
+    return (Connection) Proxy.newProxyInstance(
+        Connection.class.getClassLoader(),
+        new Class<?>[] {Connection.class},
+        handler
+    );
+  }
+
+  private Object invoke(
+      Connection connection,
+      AtomicBoolean released,
+      Method method,
+      Object[] args
+  ) throws Throwable {
+    try {
+      return method.invoke(connection, args);
+    } catch (InvocationTargetException e) {
+      throw e.getTargetException();
+    } finally {
+      if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+        permits.release();
+      }
+    }
+  }
+
+  public static final class Rejected extends SQLTransientConnectionException {
+    Rejected(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package com.example.demo.auth;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.SQLException;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.ModelAndView;
+
+@Configuration
+@ConditionalOnProperty(prefix = "app.webauthn.bulkhead", name = "enabled", havingValue = "true")
+public class ConnectionBulkheadConfig {
+
+  /** Applied before {@link SqlAccountingConfig}'s wrapper, which then sits outside this one. */
+  static final int POST_PROCESSOR_ORDER = Ordered.LOWEST_PRECEDENCE - 10;
+
+  @Bean
+  public static BeanPostProcessor connectionBulkheadPostProcessor(Environment environment) {
+    return new BulkheadPostProcessor(environment);
+  }
+
+  @Bean
+  public MeterBinder connectionBulkheadMetrics(DataSource dataSource) {
+    return registry -> {
+      ConnectionBulkhead bulkhead = bulkhead(dataSource);
+      if (bulkhead == null) {
+        return;
+      }
+      Gauge.builder("db.bulkhead.in-use", bulkhead, ConnectionBulkhead::inUse).register(registry);
+      Gauge.builder("db.bulkhead.waiting", bulkhead, ConnectionBulkhead::waiting)
+          .register(registry);
+      FunctionCounter.builder("db.bulkhead.rejected", bulkhead, ConnectionBulkhead::rejected)
+          .register(registry);
+    };
+  }
+
+  /** Answers 503 with Retry-After for anything caused by a bulkhead rejection. */
+  @Bean
+  public HandlerExceptionResolver connectionBulkheadExceptionResolver() {
+    return new BulkheadRejectionResolver();
+  }
+
+  private static int poolSize(DataSource dataSource) {
+    return dataSource instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : 10;
+  }
+
+  private static ConnectionBulkhead bulkhead(DataSource dataSource) {
+    try {
+      return dataSource.isWrapperFor(ConnectionBulkhead.class)
+          ? dataSource.unwrap(ConnectionBulkhead.class)
+          : null;
+    } catch (SQLException e) {
+      return null;
+    }
+  }
+
+  static final class BulkheadPostProcessor implements BeanPostProcessor, Ordered {
+    private final Environment environment;
+
+    BulkheadPostProcessor(Environment environment) {
+      this.environment = environment;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+      if (!(bean instanceof DataSource dataSource) || bean instanceof ConnectionBulkhead) {
+        return bean;
+      }
+      WebAuthnProperties.Bulkhead config = Binder.get(environment)
+          .bindOrCreate("app.webauthn.bulkhead", WebAuthnProperties.Bulkhead.class);
+      int permits = config.permits() > 0 ? config.permits() : poolSize(dataSource);
+      return new ConnectionBulkhead(
+          dataSource,
+          permits,
+          config.maxWaiting(),
+          config.acquireTimeout()
+      );
+    }
+
+    @Override
+    public int getOrder() {
+      return POST_PROCESSOR_ORDER;
+    }
+  }
+
+  static final class BulkheadRejectionResolver implements HandlerExceptionResolver, Ordered {
+    @Override
+    public ModelAndView resolveException(
+        HttpServletRequest request,
+        HttpServletResponse response,
+        Object handler,
+        Exception ex
+    ) {
+      for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+        if (cause instanceof ConnectionBulkhead.Rejected) {
+          try {
+            response.setHeader("Retry-After", "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, cause.getMessage());
+          } catch (IOException e) {
+            return null;
+          }
+          return new ModelAndView();
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public int getOrder() {
+      return Ordered.HIGHEST_PRECEDENCE;
+    }
+  }
+}
@@ -1,10 +1,12 @@
 package com.example.demo.auth;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
+@Profile("!reactive")
 public class CorsConfig implements WebMvcConfigurer {
   private final WebAuthnProperties properties;
 
@@ -0,0 +1,3 @@
+package com.example.demo.auth;
+
+public record CredentialDescriptorRow(byte[] credentialId, String transports) {}
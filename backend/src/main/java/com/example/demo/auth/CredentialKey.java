@@ -0,0 +1,13 @@
+package com.example.demo.auth;
+
+public record CredentialKey(
+    byte[] credentialId,
+    byte[] publicKeyCose,
+    long signatureCount,
+    Boolean backupEligible,
+    Boolean backupState,
+    Long userId,
+    String username,
+    String displayName,
+    byte[] userHandle
+) {}
@@ -0,0 +1,3 @@
+package com.example.demo.auth;
+
+public record CredentialState(long signatureCount, Boolean backupEligible, Boolean backupState) {}
@@ -0,0 +1,136 @@
+package com.example.demo.auth;
+
+import com.yubico.webauthn.RegisteredCredential;
+import com.yubico.webauthn.data.ByteArray;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Component
+public class CredentialUsageWriter {
+  private static final String UPDATE_FLAGS = """
+      update webauthn_credentials
+      set backup_eligible = ?, backup_state = ?
+      where credential_id = ?
+      """;
+
+  private final WebAuthnCredentialRepository credentialRepository;
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final Map<ByteArray, Flags> pendingFlags = new ConcurrentHashMap<>();
+  private final Counter counterWrites;
+  private final Counter counterWritesElided;
+  private final Counter flagWrites;
+  private final Counter flagWritesElided;
+  private final Counter flagWritesCoalesced;
+
+  public CredentialUsageWriter(
+      WebAuthnCredentialRepository credentialRepository,
+      JdbcTemplate jdbcTemplate,
+      TransactionTemplate transactionTemplate,
+      MeterRegistry meterRegistry
+  ) {
+    this.credentialRepository = credentialRepository;
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = transactionTemplate;
+    this.counterWrites = writes(meterRegistry, "counter", "written");
+    this.counterWritesElided = writes(meterRegistry, "counter", "elided");
+    this.flagWrites = writes(meterRegistry, "flags", "written");
+    this.flagWritesElided = writes(meterRegistry, "flags", "elided");
+    this.flagWritesCoalesced = writes(meterRegistry, "flags", "coalesced");
+  }
+
+  /**
+   * Advances the stored counter and queues changed backup flags. Returns the rows the counter
+   * write changed: zero when no write was needed, or when another login already reached this
+   * counter or the credential was deleted, in which case the flags are left alone.
+   */
+  public int recordUsage(
+      RegisteredCredential stored,
+      long signatureCount,
+      boolean backupEligible,
+      boolean backupState
+  ) {
+    boolean counterAdvanced = counterAdvanced(stored, signatureCount);
+    boolean flagsChanged = flagsChanged(stored, backupEligible, backupState);
+
+    int rowsUpdated = 0;
+    if (counterAdvanced) {
+      Integer updated = transactionTemplate.execute(status ->
+          credentialRepository.advanceSignatureCount(
+              stored.getCredentialId().getBytes(),
+              signatureCount
+          ));
+      counterWrites.increment();
+      rowsUpdated = updated == null ? 0 : updated;
+      if (rowsUpdated == 0) {
+        return 0;
+      }
+    } else {
+      counterWritesElided.increment();
+    }
+
+    if (flagsChanged) {
+      if (pendingFlags.put(stored.getCredentialId(), new Flags(backupEligible, backupState)) != null) {
+        flagWritesCoalesced.increment();
+      }
+    } else {
+      flagWritesElided.increment();
+    }
+    return rowsUpdated;
+  }
+
+  static boolean counterAdvanced(RegisteredCredential stored, long signatureCount) {
+    return signatureCount > stored.getSignatureCount();
+  }
+
+  static boolean flagsChanged(
+      RegisteredCredential stored,
+      boolean backupEligible,
+      boolean backupState
+  ) {
+    return !Objects.equals(stored.isBackupEligible().orElse(null), backupEligible)
+        || !Objects.equals(stored.isBackedUp().orElse(null), backupState);
+  }
+
+  @Scheduled(fixedDelayString = "${app.webauthn.usageWriter.flushInterval:2s}")
+  public void flush() {
+    if (pendingFlags.isEmpty()) {
+      return;
+    }
+    List<Object[]> batch = new ArrayList<>();
+    for (ByteArray credentialId : List.copyOf(pendingFlags.keySet())) {
+      Flags flags = pendingFlags.remove(credentialId);
+      if (flags != null) {
+        batch.add(new Object[] {flags.backupEligible(), flags.backupState(), credentialId.getBytes()});
+      }
+    }
+    if (!batch.isEmpty()) {
+      jdbcTemplate.batchUpdate(UPDATE_FLAGS, batch);
+      flagWrites.increment(batch.size());
+    }
+  }
+
+  @PreDestroy
+  void flushOnShutdown() {
+    flush();
+  }
+
+  private static Counter writes(MeterRegistry registry, String field, String result) {
+    return Counter.builder("webauthn.credential.writes")
+        .tag("field", field)
+        .tag("result", result)
+        .register(registry);
+  }
+
+  private record Flags(boolean backupEligible, boolean backupState) {}
+}
@@ -0,0 +1,26 @@
+package com.example.demo.auth;
+
+import java.util.Base64;
+
+/**
+ * Source of the random values the auth flows hand out: user handles, request IDs, seal IVs and
+ * recovery codes. Implementations must be safe to call from any number of request threads.
+ */
+public interface EntropySource {
+  int ID_LENGTH = 32;
+
+  void nextBytes(byte[] bytes);
+
+  int nextInt(int bound);
+
+  default byte[] randomBytes(int size) {
+    byte[] bytes = new byte[size];
+    nextBytes(bytes);
+    return bytes;
+  }
+
+  /** Base64url encoding of {@value #ID_LENGTH} random bytes. */
+  default String randomId() {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(randomBytes(ID_LENGTH));
+  }
+}
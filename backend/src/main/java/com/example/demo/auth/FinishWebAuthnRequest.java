@@ -0,0 +1,63 @@
+package com.example.demo.auth;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Body of the register/login verify endpoints, kept as the raw request bytes. The envelope is
+ * scanned once with a streaming parser to pick out {@code requestId} and the byte range of the
+ * {@code credential} object, which is handed to the WebAuthn library without being bound to a
+ * map and written back out first.
+ */
+public record FinishWebAuthnRequest(
+    String requestId,
+    byte[] body,
+    int credentialOffset,
+    int credentialLength
+) {
+  private static final JsonFactory JSON = new JsonFactory();
+
+  public static FinishWebAuthnRequest parse(byte[] body) {
+    if (body == null || body.length == 0) {
+      throw new IllegalArgumentException("Missing request body");
+    }
+    String requestId = null;
+    int credentialOffset = -1;
+    int credentialLength = 0;
+    try (JsonParser parser = JSON.createParser(body)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IllegalArgumentException("Invalid request body");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.currentName();
+        JsonToken value = parser.nextToken();
+        if ("requestId".equals(field) && value == JsonToken.VALUE_STRING) {
+          requestId = parser.getText();
+        } else if ("credential".equals(field) && value == JsonToken.START_OBJECT) {
+          credentialOffset = (int) parser.currentTokenLocation().getByteOffset();
+          parser.skipChildren();
+          credentialLength = (int) parser.currentLocation().getByteOffset() - credentialOffset;
+        } else {
+          parser.skipChildren();
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Invalid request body", e);
+    }
+    return new FinishWebAuthnRequest(requestId, body, credentialOffset, credentialLength);
+  }
+
+  public boolean hasCredential() {
+    return credentialOffset >= 0;
+  }
+
+  public String credentialJson() {
+    if (!hasCredential()) {
+      return null;
+    }
+    return new String(body, credentialOffset, credentialLength, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,49 @@
+package com.example.demo.auth;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import java.util.Optional;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(
+    prefix = "app.webauthn.session",
+    name = "type",
+    havingValue = "http",
+    matchIfMissing = true
+)
+public class HttpSessionBackend implements SessionBackend {
+  static final String SESSION_EPOCH_KEY = "auth.epoch";
+
+  @Override
+  public void signIn(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      Principal principal
+  ) {
+    HttpSession session = request.getSession();
+    session.setAttribute(SessionService.SESSION_USER_KEY, principal.userId());
+    session.setAttribute(SESSION_EPOCH_KEY, principal.epoch());
+  }
+
+  @Override
+  public Optional<Principal> principal(HttpServletRequest request, HttpServletResponse response) {
+    HttpSession session = request.getSession(false);
+    if (session == null
+        || !(session.getAttribute(SessionService.SESSION_USER_KEY) instanceof Long userId)) {
+      return Optional.empty();
+    }
+    int epoch = session.getAttribute(SESSION_EPOCH_KEY) instanceof Integer value ? value : 0;
+    return Optional.of(new Principal(userId, epoch));
+  }
+
+  @Override
+  public void signOut(HttpServletRequest request, HttpServletResponse response) {
+    HttpSession session = request.getSession(false);
+    if (session != null) {
+      session.invalidate();
+    }
+  }
+}
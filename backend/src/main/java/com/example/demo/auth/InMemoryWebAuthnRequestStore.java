@@ -0,0 +1,243 @@
+package com.example.demo.auth;
+
+import com.yubico.webauthn.AssertionRequest;
+import com.yubico.webauthn.data.PublicKeyCredentialCreationOptions;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(
+    prefix = "app.webauthn.requestStore",
+    name = "type",
+    havingValue = "memory",
+    matchIfMissing = true
+)
+public class InMemoryWebAuthnRequestStore implements WebAuthnRequestStore {
+  private final Clock clock = Clock.systemUTC();
+  private final Duration ttl;
+  private final String nodeId;
+  private final EntropySource entropy;
+  private final PendingMap<PendingRegistration> registrations;
+  private final PendingMap<PendingAssertion> assertions;
+
+  public InMemoryWebAuthnRequestStore(WebAuthnProperties properties, EntropySource entropy) {
+    WebAuthnProperties.RequestStore config = properties.requestStore();
+    this.ttl = config.ttl();
+    this.nodeId = properties.cluster().enabled() ? properties.cluster().nodeId() : null;
+    this.entropy = entropy;
+    this.registrations = new PendingMap<>(config.maxRegistrations());
+    this.assertions = new PendingMap<>(config.maxAssertions());
+  }
+
+  @Override
+  public PendingRegistration createRegistration(
+      PublicKeyCredentialCreationOptions options,
+      Long userId,
+      String username
+  ) {
+    PendingRegistration pending = new PendingRegistration(
+        RequestIds.random(entropy, nodeId),
+        options,
+        userId,
+        username,
+        expiresAt()
+    );
+    registrations.put(pending);
+    return pending;
+  }
+
+  @Override
+  public PendingAssertion createAssertion(
+      AssertionRequest request,
+      Optional<String> username
+  ) {
+    PendingAssertion pending = new PendingAssertion(
+        RequestIds.random(entropy, nodeId),
+        request,
+        username,
+        expiresAt()
+    );
+    assertions.put(pending);
+    return pending;
+  }
+
+  @Override
+  public Optional<PendingRegistration> consumeRegistration(String requestId) {
+    return registrations.consume(requestId, clock.instant());
+  }
+
+  @Override
+  public Optional<PendingAssertion> consumeAssertion(String requestId) {
+    return assertions.consume(requestId, clock.instant());
+  }
+
+  @Scheduled(fixedDelayString = "${app.webauthn.requestStore.sweepInterval:5s}")
+  public void sweepExpired() {
+    Instant now = clock.instant();
+    registrations.sweep(now);
+    assertions.sweep(now);
+  }
+
+  public Stats registrationStats() {
+    return registrations.stats();
+  }
+
+  public Stats assertionStats() {
+    return assertions.stats();
+  }
+
+  private Instant expiresAt() {
+    return clock.instant().plus(ttl);
+  }
+
+  public record Stats(
+      int size,
+      int capacity,
+      long created,
+      long consumed,
+      long expired,
+      long evicted
+  ) {}
+
+  /**
+   * Every entry gets the same TTL, so insertion order is expiry order. The queue only holds
+   * request IDs and deadlines, which lets the sweeper stop at the first live entry and keeps
+   * consumed entries from pinning their options graph until they reach the head.
+   */
+  static final class PendingMap<T extends PendingRequest> {
+    private final int capacity;
+    private final Map<String, T> entries = new ConcurrentHashMap<>();
+    private final Queue<Slot> expiryOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder consumed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    PendingMap(int capacity) {
+      if (capacity <= 0) {
+        throw new IllegalArgumentException("Request store capacity must be positive");
+      }
+      this.capacity = capacity;
+    }
+
+    void put(T pending) {
+      reserve();
+      if (queued.get() >= capacity * 2) {
+        compact();
+      }
+      entries.put(pending.requestId(), pending);
+      expiryOrder.add(new Slot(pending.requestId(), pending.expiresAt()));
+      queued.incrementAndGet();
+      created.increment();
+    }
+
+    Optional<T> consume(String requestId, Instant now) {
+      if (requestId == null || requestId.isBlank()) {
+        return Optional.empty();
+      }
+      T pending = entries.remove(requestId);
+      if (pending == null) {
+        return Optional.empty();
+      }
+      size.decrementAndGet();
+      if (pending.expiresAt().isBefore(now)) {
+        expired.increment();
+        return Optional.empty();
+      }
+      consumed.increment();
+      return Optional.of(pending);
+    }
+
+    /**
+     * Removes the peeked head itself rather than polling, so a slot taken by a concurrent
+     * eviction is never mistaken for this one and nothing has to be put back out of order.
+     */
+    void sweep(Instant now) {
+      Slot head;
+      while ((head = expiryOrder.peek()) != null && head.expiresAt().isBefore(now)) {
+        if (!expiryOrder.remove(head)) {
+          continue;
+        }
+        queued.decrementAndGet();
+        if (remove(head.requestId())) {
+          expired.increment();
+        }
+      }
+    }
+
+    Stats stats() {
+      return new Stats(
+          size.get(),
+          capacity,
+          created.sum(),
+          consumed.sum(),
+          expired.sum(),
+          evicted.sum()
+      );
+    }
+
+    /**
+     * Claims a place below capacity before the entry is inserted, evicting the oldest entries
+     * until one frees up. The queue can be briefly empty while full if the other places are held
+     * by puts that have not enqueued their slot yet.
+     */
+    private void reserve() {
+      while (true) {
+        int current = size.get();
+        if (current < capacity) {
+          if (size.compareAndSet(current, current + 1)) {
+            return;
+          }
+          continue;
+        }
+        Slot oldest = poll();
+        if (oldest == null) {
+          Thread.onSpinWait();
+        } else if (remove(oldest.requestId())) {
+          evicted.increment();
+        }
+      }
+    }
+
+    private Slot poll() {
+      Slot slot = expiryOrder.poll();
+      if (slot != null) {
+        queued.decrementAndGet();
+      }
+      return slot;
+    }
+
+    private boolean remove(String requestId) {
+      if (entries.remove(requestId) == null) {
+        return false;
+      }
+      size.decrementAndGet();
+      return true;
+    }
+
+    private void compact() {
+      expiryOrder.removeIf(slot -> {
+        if (entries.containsKey(slot.requestId())) {
+          return false;
+        }
+        queued.decrementAndGet();
+        return true;
+      });
+    }
+  }
+
+  private record Slot(String requestId, Instant expiresAt) {}
+}
@@ -0,0 +1,61 @@
+package com.example.demo.auth;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+@RequestMapping("/internal/webauthn")
+@Profile("!reactive")
+public class InternalCeremonyController {
+  private final WebAuthnService webAuthnService;
+  private final CeremonyRouter ceremonyRouter;
+
+  public InternalCeremonyController(WebAuthnService webAuthnService, CeremonyRouter ceremonyRouter) {
+    this.webAuthnService = webAuthnService;
+    this.ceremonyRouter = ceremonyRouter;
+  }
+
+  @PostMapping("/register/verify")
+  public AuthController.AuthUserResponse finishRegistration(
+      @RequestHeader(name = CeremonyRouter.SECRET_HEADER, required = false) String secret,
+      @RequestBody byte[] body
+  ) {
+    requireTrustedPeer(secret);
+    try {
+      FinishWebAuthnRequest request = FinishWebAuthnRequest.parse(body);
+      return AuthController.AuthUserResponse.from(
+          webAuthnService.finishRegistration(request.requestId(), request.credentialJson())
+      );
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @PostMapping("/login/verify")
+  public AuthController.AuthUserResponse finishAuthentication(
+      @RequestHeader(name = CeremonyRouter.SECRET_HEADER, required = false) String secret,
+      @RequestBody byte[] body
+  ) {
+    requireTrustedPeer(secret);
+    try {
+      FinishWebAuthnRequest request = FinishWebAuthnRequest.parse(body);
+      return AuthController.AuthUserResponse.from(
+          webAuthnService.finishAuthentication(request.requestId(), request.credentialJson())
+      );
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  private void requireTrustedPeer(String secret) {
+    if (!ceremonyRouter.isTrustedPeer(secret)) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+    }
+  }
+}
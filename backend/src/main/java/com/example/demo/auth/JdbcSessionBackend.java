@@ -0,0 +1,318 @@
+package com.example.demo.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Server-side sessions in Postgres behind an opaque cookie, so any node can serve any client
+ * without new cookie formats. Reads go through a per-node near-cache that keeps hot sessions
+ * (and unknown ids) for {@code nearCacheTtl}; a sign-out on another node is therefore seen
+ * within that window. Last-access times are kept in memory and written back in batches, at most
+ * once per {@code touchInterval} per session, and expired rows are purged in batches.
+ *
+ * <p>{@code session_id} holds the base64url SHA-256 of the cookie value, never the value itself,
+ * so a leaked table or backup cannot be replayed as cookies. Everything past the cookie is keyed
+ * by that hash. Rows written before ids were hashed match no cookie and age out in the sweep.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.webauthn.session", name = "type", havingValue = "jdbc")
+public class JdbcSessionBackend implements SessionBackend {
+  private static final int PURGE_BATCH_SIZE = 500;
+  private static final MessageDigest SHA256_PROTOTYPE = sha256();
+  private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+
+  private static final String INSERT = """
+      insert into auth_sessions
+        (session_id, user_id, epoch, created_at, last_accessed_at, expires_at)
+      values (?, ?, ?, ?, ?, ?)
+      """;
+
+  private static final String FIND = """
+      select user_id, epoch, last_accessed_at, expires_at
+      from auth_sessions
+      where session_id = ? and expires_at > now()
+      """;
+
+  private static final String DELETE = "delete from auth_sessions where session_id = ?";
+
+  private static final String TOUCH = """
+      update auth_sessions
+      set last_accessed_at = ?, expires_at = ?
+      where session_id = ? and last_accessed_at < ?
+      """;
+
+  private static final String PURGE = """
+      delete from auth_sessions
+      where session_id in (
+        select session_id from auth_sessions
+        where expires_at < now()
+        limit ?
+        for update skip locked
+      )
+      """;
+
+  private final Clock clock = Clock.systemUTC();
+  private final JdbcTemplate jdbcTemplate;
+  private final EntropySource entropy;
+  private final String cookieName;
+  private final boolean secureCookie;
+  private final long idleTimeoutMillis;
+  private final long touchIntervalMillis;
+  private final Cache<String, Optional<Entry>> nearCache;
+  private final Map<String, Long> pendingTouches = new ConcurrentHashMap<>();
+  private final Counter touchesWritten;
+  private final Counter touchesCoalesced;
+
+  public JdbcSessionBackend(
+      JdbcTemplate jdbcTemplate,
+      EntropySource entropy,
+      WebAuthnProperties properties,
+      MeterRegistry meterRegistry
+  ) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.entropy = entropy;
+    WebAuthnProperties.Session config = properties.session();
+    this.cookieName = config.cookieName();
+    this.secureCookie = config.secureCookie();
+    this.idleTimeoutMillis = config.idleTimeout().toMillis();
+    this.touchIntervalMillis = config.touchInterval().toMillis();
+    this.nearCache = Caffeine.newBuilder()
+        .maximumSize(config.nearCacheSize())
+        .expireAfterWrite(config.nearCacheTtl())
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, nearCache, "auth.sessions.near-cache");
+    this.touchesWritten = touches(meterRegistry, "written");
+    this.touchesCoalesced = touches(meterRegistry, "coalesced");
+  }
+
+  @PostConstruct
+  void createTable() {
+    jdbcTemplate.execute("""
+        create table if not exists auth_sessions (
+          session_id text primary key,
+          user_id bigint not null,
+          epoch integer not null,
+          created_at timestamptz not null,
+          last_accessed_at timestamptz not null,
+          expires_at timestamptz not null
+        )
+        """);
+    jdbcTemplate.execute("""
+        create index if not exists ix_auth_sessions_expires_at
+          on auth_sessions (expires_at)
+        """);
+  }
+
+  @Override
+  public void signIn(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      Principal principal
+  ) {
+    String previous = storedId(request);
+    if (previous != null) {
+      delete(previous);
+    }
+    String sessionId = entropy.randomId();
+    String storedId = hash(sessionId);
+    long now = clock.millis();
+    long expiresAt = now + idleTimeoutMillis;
+    jdbcTemplate.update(
+        INSERT,
+        storedId,
+        principal.userId(),
+        principal.epoch(),
+        new Timestamp(now),
+        new Timestamp(now),
+        new Timestamp(expiresAt)
+    );
+    nearCache.put(storedId, Optional.of(new Entry(principal, now, expiresAt)));
+    writeCookie(response, sessionId, null);
+  }
+
+  @Override
+  public Optional<Principal> principal(HttpServletRequest request, HttpServletResponse response) {
+    String storedId = storedId(request);
+    if (storedId == null) {
+      return Optional.empty();
+    }
+    Entry entry = nearCache.get(storedId, this::load).orElse(null);
+    if (entry == null) {
+      return Optional.empty();
+    }
+    long now = clock.millis();
+    if (entry.expiresAt <= now) {
+      nearCache.invalidate(storedId);
+      return Optional.empty();
+    }
+    touch(storedId, entry, now);
+    return Optional.of(entry.principal);
+  }
+
+  @Override
+  public void signOut(HttpServletRequest request, HttpServletResponse response) {
+    String storedId = storedId(request);
+    if (storedId != null) {
+      delete(storedId);
+    }
+    writeCookie(response, "", Duration.ZERO);
+  }
+
+  /** Writes back last-access times collected since the previous flush in one batch. */
+  @Scheduled(fixedDelayString = "${app.webauthn.session.touchFlushInterval:5s}")
+  public void flushTouches() {
+    if (pendingTouches.isEmpty()) {
+      return;
+    }
+    List<Object[]> batch = new ArrayList<>();
+    for (String storedId : List.copyOf(pendingTouches.keySet())) {
+      Long touchedAt = pendingTouches.remove(storedId);
+      if (touchedAt != null) {
+        Timestamp accessed = new Timestamp(touchedAt);
+        batch.add(new Object[] {
+            accessed, new Timestamp(touchedAt + idleTimeoutMillis), storedId, accessed
+        });
+      }
+    }
+    if (!batch.isEmpty()) {
+      jdbcTemplate.batchUpdate(TOUCH, batch);
+      touchesWritten.increment(batch.size());
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${app.webauthn.session.sweepInterval:1m}")
+  public void sweepExpired() {
+    int deleted;
+    do {
+      deleted = jdbcTemplate.update(PURGE, PURGE_BATCH_SIZE);
+    } while (deleted == PURGE_BATCH_SIZE);
+  }
+
+  @PreDestroy
+  void flushOnShutdown() {
+    flushTouches();
+  }
+
+  int pendingTouches() {
+    return pendingTouches.size();
+  }
+
+  private Optional<Entry> load(String storedId) {
+    List<Entry> rows = jdbcTemplate.query(FIND, (rs, rowNum) -> new Entry(
+        new Principal(rs.getLong("user_id"), rs.getInt("epoch")),
+        rs.getTimestamp("last_accessed_at").getTime(),
+        rs.getTimestamp("expires_at").getTime()
+    ), storedId);
+    return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+  }
+
+  /**
+   * Slides the local expiry on every request but only queues a database write once the stored
+   * last-access time is {@code touchInterval} old; repeated touches before a flush collapse.
+   */
+  private void touch(String storedId, Entry entry, long now) {
+    entry.expiresAt = now + idleTimeoutMillis;
+    if (now - entry.lastWritten < touchIntervalMillis) {
+      return;
+    }
+    entry.lastWritten = now;
+    if (pendingTouches.put(storedId, now) != null) {
+      touchesCoalesced.increment();
+    }
+  }
+
+  private void delete(String storedId) {
+    pendingTouches.remove(storedId);
+    nearCache.put(storedId, Optional.empty());
+    jdbcTemplate.update(DELETE, storedId);
+  }
+
+  /** The hash of the session cookie's value, or null without one. */
+  private String storedId(HttpServletRequest request) {
+    Cookie[] cookies = request.getCookies();
+    if (cookies == null) {
+      return null;
+    }
+    for (Cookie cookie : cookies) {
+      if (cookieName.equals(cookie.getName()) && !cookie.getValue().isBlank()) {
+        return hash(cookie.getValue());
+      }
+    }
+    return null;
+  }
+
+  static String hash(String sessionId) {
+    MessageDigest digest;
+    try {
+      digest = (MessageDigest) SHA256_PROTOTYPE.clone();
+    } catch (CloneNotSupportedException e) {
+      digest = sha256();
+    }
+    return BASE64.encodeToString(digest.digest(sessionId.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  private void writeCookie(HttpServletResponse response, String value, Duration maxAge) {
+    ResponseCookie.ResponseCookieBuilder cookie = ResponseCookie.from(cookieName, value)
+        .path("/")
+        .httpOnly(true)
+        .secure(secureCookie)
+        .sameSite("Lax");
+    if (maxAge != null) {
+      cookie.maxAge(maxAge);
+    }
+    response.addHeader(HttpHeaders.SET_COOKIE, cookie.build().toString());
+  }
+
+  private static Counter touches(MeterRegistry registry, String result) {
+    return Counter.builder("auth.sessions.touches")
+        .tag("result", result)
+        .register(registry);
+  }
+
+  private static final class Entry {
+    private final Principal principal;
+    private volatile long lastWritten;
+    private volatile long expiresAt;
+
+    Entry(Principal principal, long lastWritten, long expiresAt) {
+      this.principal = principal;
+      this.lastWritten = lastWritten;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -0,0 +1,204 @@
+package com.example.demo.auth;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.yubico.webauthn.AssertionRequest;
+import com.yubico.webauthn.data.PublicKeyCredentialCreationOptions;
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(prefix = "app.webauthn.requestStore", name = "type", havingValue = "jdbc")
+public class JdbcWebAuthnRequestStore implements WebAuthnRequestStore {
+  private static final short KIND_REGISTRATION = 1;
+  private static final short KIND_ASSERTION = 2;
+  private static final int PURGE_BATCH_SIZE = 500;
+
+  private static final String INSERT = """
+      insert into webauthn_pending_requests
+        (request_id, kind, user_id, username, payload, expires_at)
+      values (?, ?, ?, ?, ?, now() + make_interval(secs => ?))
+      returning expires_at
+      """;
+
+  private static final String CONSUME = """
+      delete from webauthn_pending_requests
+      where request_id = ? and kind = ?
+      returning user_id, username, payload, expires_at, expires_at > now() as live
+      """;
+
+  private static final String PURGE = """
+      delete from webauthn_pending_requests
+      where request_id in (
+        select request_id from webauthn_pending_requests
+        where expires_at < now()
+        limit ?
+        for update skip locked
+      )
+      """;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final Duration ttl;
+  private final EntropySource entropy;
+
+  public JdbcWebAuthnRequestStore(
+      JdbcTemplate jdbcTemplate,
+      WebAuthnProperties properties,
+      EntropySource entropy
+  ) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.ttl = properties.requestStore().ttl();
+    this.entropy = entropy;
+  }
+
+  @PostConstruct
+  void createTable() {
+    jdbcTemplate.execute("""
+        create unlogged table if not exists webauthn_pending_requests (
+          request_id text primary key,
+          kind smallint not null,
+          user_id bigint,
+          username text,
+          payload bytea not null,
+          expires_at timestamptz not null
+        )
+        """);
+    jdbcTemplate.execute("""
+        create index if not exists ix_webauthn_pending_requests_expires_at
+          on webauthn_pending_requests (expires_at)
+        """);
+  }
+
+  @Override
+  public PendingRegistration createRegistration(
+      PublicKeyCredentialCreationOptions options,
+      Long userId,
+      String username
+  ) {
+    String requestId = entropy.randomId();
+    byte[] payload;
+    try {
+      payload = options.toJson().getBytes(StandardCharsets.UTF_8);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Failed to serialize registration options", e);
+    }
+    Instant expiresAt = insert(requestId, KIND_REGISTRATION, userId, username, payload);
+    return new PendingRegistration(requestId, options, userId, username, expiresAt);
+  }
+
+  @Override
+  public PendingAssertion createAssertion(AssertionRequest request, Optional<String> username) {
+    String requestId = entropy.randomId();
+    byte[] payload;
+    try {
+      payload = request.toJson().getBytes(StandardCharsets.UTF_8);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Failed to serialize assertion request", e);
+    }
+    Instant expiresAt = insert(requestId, KIND_ASSERTION, null, username.orElse(null), payload);
+    return new PendingAssertion(requestId, request, username, expiresAt);
+  }
+
+  @Override
+  public Optional<PendingRegistration> consumeRegistration(String requestId) {
+    return consume(requestId, KIND_REGISTRATION).map(row -> {
+      try {
+        return new PendingRegistration(
+            requestId,
+            PublicKeyCredentialCreationOptions.fromJson(row.payloadJson()),
+            row.userId(),
+            row.username(),
+            row.expiresAt()
+        );
+      } catch (JsonProcessingException e) {
+        throw new IllegalStateException("Corrupt pending registration", e);
+      }
+    });
+  }
+
+  @Override
+  public Optional<PendingAssertion> consumeAssertion(String requestId) {
+    return consume(requestId, KIND_ASSERTION).map(row -> {
+      try {
+        return new PendingAssertion(
+            requestId,
+            AssertionRequest.fromJson(row.payloadJson()),
+            Optional.ofNullable(row.username()),
+            row.expiresAt()
+        );
+      } catch (JsonProcessingException e) {
+        throw new IllegalStateException("Corrupt pending assertion", e);
+      }
+    });
+  }
+
+  @Scheduled(fixedDelayString = "${app.webauthn.requestStore.sweepInterval:5s}")
+  public void sweepExpired() {
+    int deleted;
+    do {
+      deleted = jdbcTemplate.update(PURGE, PURGE_BATCH_SIZE);
+    } while (deleted == PURGE_BATCH_SIZE);
+  }
+
+  private Instant insert(
+      String requestId,
+      short kind,
+      Long userId,
+      String username,
+      byte[] payload
+  ) {
+    return jdbcTemplate.queryForObject(
+        INSERT,
+        (rs, rowNum) -> rs.getTimestamp("expires_at").toInstant(),
+        requestId,
+        kind,
+        userId,
+        username,
+        payload,
+        (double) ttl.toMillis() / 1000
+    );
+  }
+
+  private Optional<Row> consume(String requestId, short kind) {
+    if (requestId == null || requestId.isBlank()) {
+      return Optional.empty();
+    }
+    List<Row> rows = jdbcTemplate.query(CONSUME, JdbcWebAuthnRequestStore::mapRow, requestId, kind);
+    if (rows.isEmpty() || !rows.get(0).live()) {
+      return Optional.empty();
+    }
+    return Optional.of(rows.get(0));
+  }
+
+  private static Row mapRow(ResultSet rs, int rowNum) throws SQLException {
+    long userId = rs.getLong("user_id");
+    return new Row(
+        rs.wasNull() ? null : userId,
+        rs.getString("username"),
+        rs.getBytes("payload"),
+        rs.getTimestamp("expires_at").toInstant(),
+        rs.getBoolean("live")
+    );
+  }
+
+  private record Row(
+      Long userId,
+      String username,
+      byte[] payload,
+      Instant expiresAt,
+      boolean live
+  ) {
+    String payloadJson() {
+      return new String(payload, StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -34,6 +34,12 @@ public class JpaCredentialRepository implements CredentialRepository {
         .orElseGet(Collections::emptySet);
   }
 
+  public Set<PublicKeyCredentialDescriptor> getCredentialIdsForUserHandle(ByteArray userHandle) {
+    return credentialRepository.findDescriptorsByUserHandle(userHandle.getBytes()).stream()
+        .map(row -> toDescriptor(row.credentialId(), row.transports()))
+        .collect(Collectors.toSet());
+  }
+
   @Override
   public Optional<ByteArray> getUserHandleForUsername(String username) {
     return userAccountRepository.findByUsername(username)
@@ -49,35 +55,38 @@ public class JpaCredentialRepository implements CredentialRepository {
 
   @Override
   public Optional<RegisteredCredential> lookup(ByteArray credentialId, ByteArray userHandle) {
-    return credentialRepository.findByCredentialIdAndUserHandle(
-            credentialId.getBytes(),
-            userHandle.getBytes())
-        .map(this::toRegisteredCredential);
+    return lookupAll(credentialId).stream()
+        .filter(credential -> credential.getUserHandle().equals(userHandle))
+        .findFirst();
   }
 
   @Override
   public Set<RegisteredCredential> lookupAll(ByteArray credentialId) {
-    return credentialRepository.findAllByCredentialId(credentialId.getBytes()).stream()
+    return credentialRepository.findKeysByCredentialId(credentialId.getBytes()).stream()
         .map(this::toRegisteredCredential)
         .collect(Collectors.toSet());
   }
 
   private PublicKeyCredentialDescriptor toDescriptor(WebAuthnCredential credential) {
+    return toDescriptor(credential.getCredentialId(), credential.getTransports());
+  }
+
+  private PublicKeyCredentialDescriptor toDescriptor(byte[] credentialId, String transports) {
     return PublicKeyCredentialDescriptor.builder()
-        .id(new ByteArray(credential.getCredentialId()))
+        .id(new ByteArray(credentialId))
         .type(PublicKeyCredentialType.PUBLIC_KEY)
-        .transports(Transports.parse(credential.getTransports()))
+        .transports(Transports.parse(transports))
         .build();
   }
 
-  private RegisteredCredential toRegisteredCredential(WebAuthnCredential credential) {
+  private RegisteredCredential toRegisteredCredential(CredentialKey key) {
     return RegisteredCredential.builder()
-        .credentialId(new ByteArray(credential.getCredentialId()))
-        .userHandle(new ByteArray(credential.getUser().getUserHandle()))
-        .publicKeyCose(new ByteArray(credential.getPublicKeyCose()))
-        .signatureCount(credential.getSignatureCount())
-        .backupEligible(credential.getBackupEligible())
-        .backupState(credential.getBackupState())
+        .credentialId(new ByteArray(key.credentialId()))
+        .userHandle(new ByteArray(key.userHandle()))
+        .publicKeyCose(new ByteArray(key.publicKeyCose()))
+        .signatureCount(key.signatureCount())
+        .backupEligible(key.backupEligible())
+        .backupState(key.backupState())
         .build();
   }
 
@@ -0,0 +1,81 @@
+package com.example.demo.auth;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.reactive.CorsWebFilter;
+import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Infrastructure for the WebFlux variant of the auth API. The R2DBC pool is built here rather
+ * than through Boot's R2DBC auto-configuration so the JPA transaction manager stays the only one
+ * in the context; the blocking recovery-code path still runs on it.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveAuthConfig {
+
+  public ReactiveAuthConfig(WebAuthnProperties properties) {
+    WebAuthnProperties.RequestStore.Type store = properties.requestStore().type();
+    if (store == WebAuthnProperties.RequestStore.Type.JDBC) {
+      throw new IllegalStateException(
+          "The reactive profile needs the memory or sealed request store"
+      );
+    }
+    if (properties.cluster().enabled() && store != WebAuthnProperties.RequestStore.Type.SEALED) {
+      throw new IllegalStateException("A reactive cluster needs the sealed request store");
+    }
+  }
+
+  @Bean
+  public ConnectionFactory authConnectionFactory(WebAuthnProperties properties) {
+    WebAuthnProperties.Reactive config = properties.reactive();
+    ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(config.r2dbcUrl())
+        .mutate();
+    if (config.username() != null) {
+      options.option(ConnectionFactoryOptions.USER, config.username());
+    }
+    if (config.password() != null) {
+      options.option(ConnectionFactoryOptions.PASSWORD, config.password());
+    }
+    return ConnectionFactories.get(options.build());
+  }
+
+  @Bean
+  public DatabaseClient authDatabaseClient(ConnectionFactory authConnectionFactory) {
+    return DatabaseClient.create(authConnectionFactory);
+  }
+
+  /** CPU-bound attestation and assertion checks; sized to the cores unless configured. */
+  @Bean(destroyMethod = "dispose")
+  public Scheduler webAuthnVerifyScheduler(WebAuthnProperties properties) {
+    int threads = properties.reactive().verifyThreads() > 0
+        ? properties.reactive().verifyThreads()
+        : Runtime.getRuntime().availableProcessors();
+    return Schedulers.newParallel("webauthn-verify", threads);
+  }
+
+  @Bean
+  public CorsWebFilter authCorsWebFilter(WebAuthnProperties properties) {
+    CorsConfiguration cors = new CorsConfiguration();
+    cors.setAllowedOrigins(properties.origins());
+    cors.addAllowedMethod("GET");
+    cors.addAllowedMethod("POST");
+    cors.addAllowedMethod("PUT");
+    cors.addAllowedMethod("DELETE");
+    cors.addAllowedMethod("OPTIONS");
+    cors.addAllowedHeader("*");
+    cors.setAllowCredentials(true);
+    cors.setMaxAge(3600L);
+    UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
+    source.registerCorsConfiguration("/api/**", cors);
+    return new CorsWebFilter(source);
+  }
+}
@@ -0,0 +1,207 @@
+package com.example.demo.auth;
+
+import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.exception.Base64UrlException;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.WebSession;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * WebFlux version of {@link AuthController}: same paths, bodies and status codes, backed by
+ * {@link ReactiveWebAuthnService} and the WebFlux session. Recovery codes and passkey deletion
+ * are rare and stay on the JPA services, which are called from the bounded elastic scheduler.
+ */
+@RestController
+@RequestMapping("/api/auth")
+@Profile("reactive")
+public class ReactiveAuthController {
+  private final ReactiveWebAuthnService webAuthnService;
+  private final ReactiveCredentialStore store;
+  private final RecoveryCodeService recoveryCodeService;
+  private final WebAuthnService credentialService;
+  private final SessionEpochs epochs;
+  private final WebAuthnProperties.OptionsEncoding optionsEncoding;
+
+  public ReactiveAuthController(
+      ReactiveWebAuthnService webAuthnService,
+      ReactiveCredentialStore store,
+      RecoveryCodeService recoveryCodeService,
+      WebAuthnService credentialService,
+      SessionEpochs epochs,
+      WebAuthnProperties properties
+  ) {
+    this.webAuthnService = webAuthnService;
+    this.store = store;
+    this.recoveryCodeService = recoveryCodeService;
+    this.credentialService = credentialService;
+    this.epochs = epochs;
+    this.optionsEncoding = properties.optionsEncoding();
+  }
+
+  @PostMapping("/webauthn/register/options")
+  public Mono<AuthController.OptionsResponse> startRegistration(
+      @RequestBody AuthController.StartRegistrationRequest request,
+      WebSession session
+  ) {
+    return webAuthnService
+        .startRegistration(request.username(), request.displayName(), userId(session))
+        .map(start -> AuthController.OptionsResponse.of(optionsEncoding, start))
+        .onErrorMap(IllegalStateException.class, e -> status(HttpStatus.FORBIDDEN, e))
+        .onErrorMap(IllegalArgumentException.class, e -> status(HttpStatus.BAD_REQUEST, e));
+  }
+
+  @PostMapping("/webauthn/register/verify")
+  public Mono<AuthController.AuthUserResponse> finishRegistration(
+      @RequestBody byte[] body,
+      WebSession session
+  ) {
+    return Mono.fromCallable(() -> AuthController.parseFinishRequest(body))
+        .flatMap(request -> webAuthnService.finishRegistration(
+            request.requestId(),
+            request.credentialJson()
+        ))
+        .flatMap(user -> signIn(session, user))
+        .onErrorMap(this::isCeremonyFailure, e -> status(HttpStatus.BAD_REQUEST, e));
+  }
+
+  @PostMapping("/webauthn/login/options")
+  public Mono<AuthController.OptionsResponse> startAuthentication(
+      @RequestBody AuthController.StartAuthenticationRequest request
+  ) {
+    Optional<String> username =
+        request.username() == null || request.username().isBlank()
+            ? Optional.empty()
+            : Optional.of(request.username());
+    return webAuthnService.startAuthentication(username)
+        .map(start -> AuthController.OptionsResponse.of(optionsEncoding, start))
+        .onErrorMap(IllegalArgumentException.class, e -> status(HttpStatus.BAD_REQUEST, e));
+  }
+
+  @PostMapping("/webauthn/login/verify")
+  public Mono<AuthController.AuthUserResponse> finishAuthentication(
+      @RequestBody byte[] body,
+      WebSession session
+  ) {
+    return Mono.fromCallable(() -> AuthController.parseFinishRequest(body))
+        .flatMap(request -> webAuthnService.finishAuthentication(
+            request.requestId(),
+            request.credentialJson()
+        ))
+        .flatMap(user -> signIn(session, user))
+        .onErrorMap(this::isCeremonyFailure, e -> status(HttpStatus.BAD_REQUEST, e));
+  }
+
+  @PostMapping("/recovery/create")
+  public Mono<AuthController.RecoveryCodesResponse> createRecoveryCodes(WebSession session) {
+    return Mono.justOrEmpty(userId(session))
+        .switchIfEmpty(Mono.error(() -> notSignedIn()))
+        .publishOn(Schedulers.boundedElastic())
+        .map(userId -> new AuthController.RecoveryCodesResponse(
+            recoveryCodeService.generateCodes(userId)
+        ))
+        .onErrorMap(RecoveryCodeHasher.Busy.class, e -> status(HttpStatus.SERVICE_UNAVAILABLE, e));
+  }
+
+  @PostMapping("/recovery/login")
+  public Mono<AuthController.AuthUserResponse> loginWithRecoveryCode(
+      @RequestBody AuthController.RecoveryLoginRequest request,
+      WebSession session
+  ) {
+    return Mono.fromCallable(() -> recoveryCodeService.consumeCode(
+            request.username(),
+            request.code()
+        ))
+        .subscribeOn(Schedulers.boundedElastic())
+        .flatMap(Mono::justOrEmpty)
+        .flatMap(user -> signIn(session, user))
+        .switchIfEmpty(Mono.error(
+            () -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid code")
+        ))
+        .onErrorMap(RecoveryCodeHasher.Busy.class, e -> status(HttpStatus.SERVICE_UNAVAILABLE, e));
+  }
+
+  @GetMapping("/me")
+  public Mono<AuthController.AuthUserResponse> me(WebSession session) {
+    return Mono.justOrEmpty(userId(session))
+        .flatMap(store::findUserById)
+        .map(AuthController.AuthUserResponse::from)
+        .switchIfEmpty(Mono.error(() -> notSignedIn()));
+  }
+
+  /** Same contract as {@link AuthController#deleteCredential}. */
+  @DeleteMapping("/webauthn/credentials/{credentialId}")
+  public Mono<Void> deleteCredential(@PathVariable String credentialId, WebSession session) {
+    return Mono.justOrEmpty(userId(session))
+        .switchIfEmpty(Mono.error(() -> notSignedIn()))
+        .publishOn(Schedulers.boundedElastic())
+        .flatMap(userId -> {
+          ByteArray id;
+          try {
+            id = ByteArray.fromBase64Url(credentialId);
+          } catch (Base64UrlException e) {
+            return Mono.error(
+                new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid credential id"));
+          }
+          if (!credentialService.deleteCredential(userId, id)) {
+            return Mono.error(
+                new ResponseStatusException(HttpStatus.NOT_FOUND, "Credential not found"));
+          }
+          session.getAttributes().put(HttpSessionBackend.SESSION_EPOCH_KEY, epochs.refresh(userId));
+          return Mono.empty();
+        });
+  }
+
+  @PostMapping("/logout")
+  public Mono<Void> logout(WebSession session) {
+    return session.invalidate();
+  }
+
+  /** Same rule as {@link SessionService#getUserId}, see {@link SessionEpochs#honours}. */
+  private Optional<Long> userId(WebSession session) {
+    Map<String, Object> attributes = session.getAttributes();
+    if (attributes.get(SessionService.SESSION_USER_KEY) instanceof Long userId) {
+      int epoch = attributes.get(HttpSessionBackend.SESSION_EPOCH_KEY) instanceof Integer value
+          ? value
+          : 0;
+      if (epochs.honours(userId, epoch)) {
+        return Optional.of(userId);
+      }
+    }
+    return Optional.empty();
+  }
+
+  /** The epoch read is a blocking query, so it runs off the event loop. */
+  private Mono<AuthController.AuthUserResponse> signIn(WebSession session, UserSummary user) {
+    return Mono.fromCallable(() -> epochs.refresh(user.id()))
+        .subscribeOn(Schedulers.boundedElastic())
+        .map(epoch -> {
+          session.getAttributes().put(SessionService.SESSION_USER_KEY, user.id());
+          session.getAttributes().put(HttpSessionBackend.SESSION_EPOCH_KEY, epoch);
+          return AuthController.AuthUserResponse.from(user);
+        });
+  }
+
+  private boolean isCeremonyFailure(Throwable e) {
+    return e instanceof IllegalArgumentException || e instanceof IllegalStateException;
+  }
+
+  private static ResponseStatusException notSignedIn() {
+    return new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not signed in");
+  }
+
+  private static ResponseStatusException status(HttpStatus status, Throwable cause) {
+    return new ResponseStatusException(status, cause.getMessage());
+  }
+}
@@ -0,0 +1,162 @@
+package com.example.demo.auth;
+
+import com.yubico.webauthn.RegisteredCredential;
+import com.yubico.webauthn.RegistrationResult;
+import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.PublicKeyCredentialDescriptor;
+import com.yubico.webauthn.data.PublicKeyCredentialType;
+import io.r2dbc.spi.Readable;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/** R2DBC reads and writes for the reactive auth API, against the tables JPA maps. */
+@Component
+@Profile("reactive")
+public class ReactiveCredentialStore {
+  private static final String USER_COLUMNS =
+      "select id, username, display_name, user_handle from users";
+
+  private final DatabaseClient db;
+
+  public ReactiveCredentialStore(DatabaseClient authDatabaseClient) {
+    this.db = authDatabaseClient;
+  }
+
+  public Mono<UserSummary> findUserByUsername(String username) {
+    return db.sql(USER_COLUMNS + " where username = :username")
+        .bind("username", username)
+        .map(ReactiveCredentialStore::toUser)
+        .one();
+  }
+
+  public Mono<UserSummary> findUserByUserHandle(ByteArray userHandle) {
+    return db.sql(USER_COLUMNS + " where user_handle = :userHandle")
+        .bind("userHandle", userHandle.getBytes())
+        .map(ReactiveCredentialStore::toUser)
+        .one();
+  }
+
+  public Mono<UserSummary> findUserById(Long id) {
+    return db.sql(USER_COLUMNS + " where id = :id")
+        .bind("id", id)
+        .map(ReactiveCredentialStore::toUser)
+        .one();
+  }
+
+  public Mono<UserSummary> insertUser(String username, String displayName, byte[] userHandle) {
+    return db.sql("""
+            insert into users (username, display_name, user_handle)
+            values (:username, :displayName, :userHandle)
+            returning id, username, display_name, user_handle
+            """)
+        .bind("username", username)
+        .bind("displayName", displayName)
+        .bind("userHandle", userHandle)
+        .map(ReactiveCredentialStore::toUser)
+        .one();
+  }
+
+  public Mono<Set<RegisteredCredential>> lookupAll(ByteArray credentialId) {
+    return db.sql("""
+            select c.credential_id, u.user_handle, c.public_key_cose, c.signature_count,
+                   c.backup_eligible, c.backup_state
+            from webauthn_credentials c
+            join users u on u.id = c.user_id
+            where c.credential_id = :credentialId
+            """)
+        .bind("credentialId", credentialId.getBytes())
+        .map(row -> RegisteredCredential.builder()
+            .credentialId(new ByteArray(row.get("credential_id", byte[].class)))
+            .userHandle(new ByteArray(row.get("user_handle", byte[].class)))
+            .publicKeyCose(new ByteArray(row.get("public_key_cose", byte[].class)))
+            .signatureCount(row.get("signature_count", Long.class))
+            .backupEligible(row.get("backup_eligible", Boolean.class))
+            .backupState(row.get("backup_state", Boolean.class))
+            .build())
+        .all()
+        .collect(Collectors.toUnmodifiableSet());
+  }
+
+  public Mono<Set<PublicKeyCredentialDescriptor>> descriptorsForUserHandle(ByteArray userHandle) {
+    return db.sql("""
+            select c.credential_id, c.transports
+            from webauthn_credentials c
+            join users u on u.id = c.user_id
+            where u.user_handle = :userHandle
+            """)
+        .bind("userHandle", userHandle.getBytes())
+        .map(row -> PublicKeyCredentialDescriptor.builder()
+            .id(new ByteArray(row.get("credential_id", byte[].class)))
+            .type(PublicKeyCredentialType.PUBLIC_KEY)
+            .transports(
+                JpaCredentialRepository.Transports.parse(row.get("transports", String.class))
+            )
+            .build())
+        .all()
+        .collect(Collectors.toUnmodifiableSet());
+  }
+
+  public Mono<Void> insertCredential(Long userId, RegistrationResult result) {
+    DatabaseClient.GenericExecuteSpec insert = db.sql("""
+            insert into webauthn_credentials (user_id, credential_id, public_key_cose,
+                signature_count, transports, backup_eligible, backup_state, aaguid)
+            values (:userId, :credentialId, :publicKeyCose, :signatureCount, :transports,
+                :backupEligible, :backupState, :aaguid)
+            """)
+        .bind("userId", userId)
+        .bind("credentialId", result.getKeyId().getId().getBytes())
+        .bind("publicKeyCose", result.getPublicKeyCose().getBytes())
+        .bind("signatureCount", result.getSignatureCount())
+        .bind("backupEligible", result.isBackupEligible())
+        .bind("backupState", result.isBackedUp())
+        .bind("aaguid", result.getAaguid().getBytes());
+    String transports = JpaCredentialRepository.Transports.join(
+        result.getKeyId().getTransports().orElse(null)
+    );
+    insert = transports == null
+        ? insert.bindNull("transports", String.class)
+        : insert.bind("transports", transports);
+    return insert.then();
+  }
+
+  public Mono<Long> advanceSignatureCount(ByteArray credentialId, long signatureCount) {
+    return db.sql("""
+            update webauthn_credentials set signature_count = :signatureCount
+            where credential_id = :credentialId and signature_count < :signatureCount
+            """)
+        .bind("signatureCount", signatureCount)
+        .bind("credentialId", credentialId.getBytes())
+        .fetch()
+        .rowsUpdated();
+  }
+
+  public Mono<Long> updateBackupFlags(
+      ByteArray credentialId,
+      boolean backupEligible,
+      boolean backupState
+  ) {
+    return db.sql("""
+            update webauthn_credentials
+            set backup_eligible = :backupEligible, backup_state = :backupState
+            where credential_id = :credentialId
+            """)
+        .bind("backupEligible", backupEligible)
+        .bind("backupState", backupState)
+        .bind("credentialId", credentialId.getBytes())
+        .fetch()
+        .rowsUpdated();
+  }
+
+  private static UserSummary toUser(Readable row) {
+    return new UserSummary(
+        row.get("id", Long.class),
+        row.get("username", String.class),
+        row.get("display_name", String.class),
+        row.get("user_handle", byte[].class)
+    );
+  }
+}
@@ -0,0 +1,272 @@
+package com.example.demo.auth;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.yubico.webauthn.AssertionRequest;
+import com.yubico.webauthn.AssertionResult;
+import com.yubico.webauthn.FinishAssertionOptions;
+import com.yubico.webauthn.FinishRegistrationOptions;
+import com.yubico.webauthn.RegisteredCredential;
+import com.yubico.webauthn.RelyingParty;
+import com.yubico.webauthn.data.AuthenticatorAssertionResponse;
+import com.yubico.webauthn.data.AuthenticatorAttestationResponse;
+import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.ClientAssertionExtensionOutputs;
+import com.yubico.webauthn.data.ClientRegistrationExtensionOutputs;
+import com.yubico.webauthn.data.PublicKeyCredential;
+import com.yubico.webauthn.data.PublicKeyCredentialCreationOptions;
+import com.yubico.webauthn.data.PublicKeyCredentialDescriptor;
+import com.yubico.webauthn.exception.AssertionFailedException;
+import com.yubico.webauthn.exception.RegistrationFailedException;
+import java.util.Optional;
+import java.util.Set;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Non-blocking counterpart of {@link WebAuthnService}. Every ceremony step first fetches what the
+ * library will ask its {@link com.yubico.webauthn.CredentialRepository} for, then runs the
+ * library against a {@link SnapshotCredentialRepository}. Attestation and assertion checks run on
+ * the bounded verify scheduler so signature work never lands on an event-loop thread.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveWebAuthnService {
+  private final RelyingParty relyingParty;
+  private final WebAuthnRequestStore requestStore;
+  private final ReactiveCredentialStore store;
+  private final EntropySource entropy;
+  private final Scheduler verifyScheduler;
+
+  public ReactiveWebAuthnService(
+      RelyingParty relyingParty,
+      WebAuthnRequestStore requestStore,
+      ReactiveCredentialStore store,
+      EntropySource entropy,
+      Scheduler webAuthnVerifyScheduler
+  ) {
+    this.relyingParty = relyingParty;
+    this.requestStore = requestStore;
+    this.store = store;
+    this.entropy = entropy;
+    this.verifyScheduler = webAuthnVerifyScheduler;
+  }
+
+  public Mono<WebAuthnService.StartResponse> startRegistration(
+      String username,
+      String displayName,
+      Optional<Long> sessionUserId
+  ) {
+    if (username == null || username.isBlank()) {
+      return Mono.error(new IllegalArgumentException("Username is required"));
+    }
+    String finalDisplayName = (displayName == null || displayName.isBlank())
+        ? username
+        : displayName;
+
+    return store.findUserByUsername(username)
+        .flatMap(existing -> {
+          if (sessionUserId.isEmpty() || !existing.id().equals(sessionUserId.get())) {
+            return Mono.error(new IllegalStateException("User already exists"));
+          }
+          return store.descriptorsForUserHandle(existing.userHandle())
+              .map(descriptors -> snapshot(existing, descriptors, Set.of()));
+        })
+        .switchIfEmpty(Mono.defer(() -> store
+            .insertUser(username, finalDisplayName, entropy.randomBytes(32))
+            .onErrorMap(
+                DataIntegrityViolationException.class,
+                e -> new IllegalStateException("User already exists")
+            )
+            .map(created -> snapshot(created, Set.of(), Set.of()))))
+        .map(snapshot -> {
+          UserSummary user = snapshot.user().orElseThrow();
+          PublicKeyCredentialCreationOptions options = relyingParty(snapshot)
+              .startRegistration(WebAuthnService.registrationOptions(user));
+          WebAuthnRequestStore.PendingRegistration pending =
+              requestStore.createRegistration(options, user.id(), user.username());
+          try {
+            return new WebAuthnService.StartResponse(
+                pending.requestId(),
+                options.toCredentialsCreateJson()
+            );
+          } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize registration options", e);
+          }
+        });
+  }
+
+  public Mono<UserSummary> finishRegistration(String requestId, String credentialJson) {
+    return Mono.fromCallable(() -> {
+      WebAuthnRequestStore.PendingRegistration pending = requestStore
+          .consumeRegistration(requestId)
+          .orElseThrow(() -> new IllegalArgumentException("Registration request expired"));
+      return new PendingRegistrationResponse(
+          pending,
+          WebAuthnService.parseRegistrationCredential(credentialJson)
+      );
+    }).flatMap(ceremony -> store.lookupAll(ceremony.credential().getId())
+        .publishOn(verifyScheduler)
+        .map(existing -> {
+          try {
+            return relyingParty(SnapshotCredentialRepository.credentials(existing))
+                .finishRegistration(FinishRegistrationOptions.builder()
+                    .request(ceremony.pending().options())
+                    .response(ceremony.credential())
+                    .build());
+          } catch (RegistrationFailedException e) {
+            throw new IllegalArgumentException("Registration failed", e);
+          }
+        })
+        .flatMap(result -> store.findUserById(ceremony.pending().userId())
+            .switchIfEmpty(Mono.error(() -> new IllegalStateException("User not found")))
+            .flatMap(user -> store.insertCredential(user.id(), result).thenReturn(user))));
+  }
+
+  public Mono<WebAuthnService.StartResponse> startAuthentication(Optional<String> username) {
+    Mono<SnapshotCredentialRepository> snapshot;
+    if (username.isPresent()) {
+      String value = username.get();
+      if (value.isBlank()) {
+        return Mono.error(new IllegalArgumentException("Unknown user"));
+      }
+      snapshot = store.findUserByUsername(value)
+          .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("Unknown user")))
+          .flatMap(user -> store.descriptorsForUserHandle(user.userHandle())
+              .map(descriptors -> snapshot(user, descriptors, Set.of())));
+    } else {
+      snapshot = Mono.just(SnapshotCredentialRepository.empty());
+    }
+
+    return snapshot.map(repository -> {
+      AssertionRequest request = relyingParty(repository)
+          .startAssertion(WebAuthnService.assertionOptions(username));
+      WebAuthnRequestStore.PendingAssertion pending =
+          requestStore.createAssertion(request, username);
+      try {
+        return new WebAuthnService.StartResponse(
+            pending.requestId(),
+            request.toCredentialsGetJson()
+        );
+      } catch (JsonProcessingException e) {
+        throw new IllegalStateException("Failed to serialize assertion options", e);
+      }
+    });
+  }
+
+  public Mono<UserSummary> finishAuthentication(String requestId, String credentialJson) {
+    return Mono.fromCallable(() -> {
+      WebAuthnRequestStore.PendingAssertion pending = requestStore
+          .consumeAssertion(requestId)
+          .orElseThrow(() -> new IllegalArgumentException("Assertion request expired"));
+      return new PendingAssertionResponse(
+          pending,
+          WebAuthnService.parseAssertionCredential(credentialJson)
+      );
+    }).flatMap(ceremony -> store.lookupAll(ceremony.credential().getId())
+        .flatMap(credentials -> assertingUser(ceremony, credentials)
+            .map(user -> new SnapshotCredentialRepository(user, Set.of(), credentials))
+            .defaultIfEmpty(SnapshotCredentialRepository.credentials(credentials)))
+        .publishOn(verifyScheduler)
+        .map(snapshot -> new VerifiedAssertion(snapshot, verify(snapshot, ceremony)))
+        .flatMap(verified -> {
+          UserSummary user = verified.snapshot().user()
+              .filter(found -> found.username().equals(verified.result().getUsername()))
+              .orElseThrow(() -> new IllegalStateException("User not found"));
+          return recordUsage(verified.result()).map(rowsUpdated -> {
+            if (verified.result().getSignatureCount() > 0 && rowsUpdated == 0) {
+              throw new IllegalArgumentException("Assertion failed");
+            }
+            return user;
+          });
+        }));
+  }
+
+  private AssertionResult verify(
+      SnapshotCredentialRepository snapshot,
+      PendingAssertionResponse ceremony
+  ) {
+    AssertionResult result;
+    try {
+      result = relyingParty(snapshot).finishAssertion(FinishAssertionOptions.builder()
+          .request(ceremony.pending().request())
+          .response(ceremony.credential())
+          .build());
+    } catch (AssertionFailedException e) {
+      throw new IllegalArgumentException("Assertion failed", e);
+    }
+    if (!result.isSuccess()) {
+      throw new IllegalArgumentException("Assertion failed");
+    }
+    return result;
+  }
+
+  /** The user the library will resolve: by requested username, else by user handle. */
+  private Mono<Optional<UserSummary>> assertingUser(
+      PendingAssertionResponse ceremony,
+      Set<RegisteredCredential> credentials
+  ) {
+    Optional<String> username = ceremony.pending().username();
+    if (username.isPresent()) {
+      return store.findUserByUsername(username.get()).map(Optional::of);
+    }
+    Optional<ByteArray> userHandle = ceremony.credential().getResponse().getUserHandle()
+        .or(() -> credentials.size() == 1
+            ? Optional.of(credentials.iterator().next().getUserHandle())
+            : Optional.empty());
+    return userHandle.map(handle -> store.findUserByUserHandle(handle).map(Optional::of))
+        .orElseGet(Mono::empty);
+  }
+
+  /** Same contract as {@link CredentialUsageWriter#recordUsage}: the counter rows changed. */
+  private Mono<Long> recordUsage(AssertionResult result) {
+    RegisteredCredential stored = result.getCredential();
+    if (!CredentialUsageWriter.counterAdvanced(stored, result.getSignatureCount())) {
+      return updateFlags(stored, result).thenReturn(0L);
+    }
+    return store.advanceSignatureCount(stored.getCredentialId(), result.getSignatureCount())
+        .flatMap(rowsUpdated -> rowsUpdated == 0
+            ? Mono.just(0L)
+            : updateFlags(stored, result).thenReturn(rowsUpdated));
+  }
+
+  private Mono<Long> updateFlags(RegisteredCredential stored, AssertionResult result) {
+    if (!CredentialUsageWriter.flagsChanged(
+        stored, result.isBackupEligible(), result.isBackedUp())) {
+      return Mono.empty();
+    }
+    return store.updateBackupFlags(
+        stored.getCredentialId(),
+        result.isBackupEligible(),
+        result.isBackedUp()
+    );
+  }
+
+  private RelyingParty relyingParty(SnapshotCredentialRepository snapshot) {
+    return relyingParty.toBuilder().credentialRepository(snapshot).build();
+  }
+
+  private static SnapshotCredentialRepository snapshot(
+      UserSummary user,
+      Set<PublicKeyCredentialDescriptor> descriptors,
+      Set<RegisteredCredential> credentials
+  ) {
+    return new SnapshotCredentialRepository(Optional.of(user), descriptors, credentials);
+  }
+
+  private record PendingRegistrationResponse(
+      WebAuthnRequestStore.PendingRegistration pending,
+      PublicKeyCredential<AuthenticatorAttestationResponse, ClientRegistrationExtensionOutputs>
+          credential
+  ) {}
+
+  private record PendingAssertionResponse(
+      WebAuthnRequestStore.PendingAssertion pending,
+      PublicKeyCredential<AuthenticatorAssertionResponse, ClientAssertionExtensionOutputs>
+          credential
+  ) {}
+
+  private record VerifiedAssertion(SnapshotCredentialRepository snapshot, AssertionResult result) {}
+}
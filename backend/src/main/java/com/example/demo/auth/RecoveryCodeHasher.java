@@ -0,0 +1,112 @@
+package com.example.demo.auth;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs recovery-code hashing on a small dedicated pool with a bounded queue, so a flood of
+ * recovery attempts with a memory-hard KDF is limited to {@code hashThreads} cores and
+ * {@code hashThreads} KDF working sets instead of competing with every login. When the queue is
+ * full the attempt is rejected with {@link Busy} straight away, which the web layer answers
+ * with a 503. {@code auth.recovery.hashes} counts the hashes run per {@code kdf} spec.
+ */
+@Component
+public class RecoveryCodeHasher {
+  private final RecoveryKdf current;
+  private final ThreadPoolExecutor pool;
+  private final Counter rejected;
+  private final MeterRegistry meterRegistry;
+  private final ConcurrentMap<RecoveryKdf, Counter> hashes = new ConcurrentHashMap<>();
+
+  public RecoveryCodeHasher(WebAuthnProperties properties, MeterRegistry meterRegistry) {
+    WebAuthnProperties.Recovery config = properties.recovery();
+    this.current = RecoveryKdf.parse(config.kdf());
+    int threads = config.hashThreads() > 0
+        ? config.hashThreads()
+        : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    AtomicInteger ids = new AtomicInteger();
+    this.pool = new ThreadPoolExecutor(
+        threads,
+        threads,
+        0,
+        TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(config.hashQueue()),
+        task -> {
+          Thread thread = new Thread(task, "recovery-hash-" + ids.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        },
+        new ThreadPoolExecutor.AbortPolicy()
+    );
+    Gauge.builder("auth.recovery.hash.queue", pool.getQueue(), BlockingQueue::size)
+        .register(meterRegistry);
+    this.rejected = Counter.builder("auth.recovery.hash.rejected").register(meterRegistry);
+    this.meterRegistry = meterRegistry;
+  }
+
+  /** The KDF new codes are hashed with; older users move to it when they regenerate. */
+  public RecoveryKdf current() {
+    return current;
+  }
+
+  public byte[] hash(RecoveryKdf kdf, byte[] salt, String normalizedCode) {
+    return hashAll(kdf, salt, List.of(normalizedCode)).get(0);
+  }
+
+  /** Hashes the codes in parallel on the pool and waits; all or nothing on rejection. */
+  public List<byte[]> hashAll(RecoveryKdf kdf, byte[] salt, List<String> normalizedCodes) {
+    List<Future<byte[]>> pending = new ArrayList<>(normalizedCodes.size());
+    try {
+      for (String code : normalizedCodes) {
+        pending.add(pool.submit(() -> kdf.hash(salt, code)));
+      }
+    } catch (RejectedExecutionException e) {
+      pending.forEach(future -> future.cancel(false));
+      rejected.increment();
+      throw new Busy();
+    }
+    List<byte[]> results = new ArrayList<>(pending.size());
+    try {
+      for (Future<byte[]> future : pending) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while hashing a recovery code", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Failed to hash a recovery code", e.getCause());
+    }
+    hashes.computeIfAbsent(kdf, this::counter).increment(results.size());
+    return results;
+  }
+
+  private Counter counter(RecoveryKdf kdf) {
+    return Counter.builder("auth.recovery.hashes").tag("kdf", kdf.spec()).register(meterRegistry);
+  }
+
+  @PreDestroy
+  void shutdown() {
+    pool.shutdownNow();
+  }
+
+  public static final class Busy extends RuntimeException {
+    Busy() {
+      super("Too many recovery attempts in progress, try again shortly");
+    }
+  }
+}
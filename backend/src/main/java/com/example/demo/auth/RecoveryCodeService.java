@@ -1,112 +1,210 @@
 package com.example.demo.auth;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
+import com.example.demo.auth.CeremonyTimers.Ceremony;
+import com.example.demo.auth.CeremonyTimers.Outcome;
+import com.example.demo.auth.CeremonyTimers.Phase;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+/**
+ * Recovery codes are hashed on {@link RecoveryCodeHasher} outside any transaction, so a slow KDF
+ * never holds a database connection; only the write that follows runs in one.
+ */
 @Service
 public class RecoveryCodeService {
-  private static final SecureRandom RANDOM = new SecureRandom();
   private static final char[] ALPHABET =
       "ABCDEFGHJKLMNPQRSTUVWXYZ23456789".toCharArray();
   private static final int CODE_LENGTH = 10;
   private static final int CODE_COUNT = 8;
+  private static final int SALT_LENGTH = 16;
+  /** Hashed against when the user has no current-KDF hash, so every attempt costs one run. */
+  private static final byte[] MISS_SALT = new byte[SALT_LENGTH];
 
   private final UserAccountRepository userRepository;
-  private final RecoveryCodeRepository recoveryCodeRepository;
+  private final RecoveryCodeStore recoveryCodeStore;
+  private final RecoveryCodeHasher hasher;
+  private final EntropySource entropy;
+  private final SessionEpochs sessionEpochs;
+  private final TransactionTemplate transactionTemplate;
+  private final CeremonyTimers timers;
+  private final Cache<String, RecoveryHashParams> hashParams;
 
   public RecoveryCodeService(
       UserAccountRepository userRepository,
-      RecoveryCodeRepository recoveryCodeRepository
+      RecoveryCodeStore recoveryCodeStore,
+      RecoveryCodeHasher hasher,
+      EntropySource entropy,
+      SessionEpochs sessionEpochs,
+      TransactionTemplate transactionTemplate,
+      WebAuthnProperties properties,
+      MeterRegistry meterRegistry,
+      CeremonyTimers timers
   ) {
     this.userRepository = userRepository;
-    this.recoveryCodeRepository = recoveryCodeRepository;
+    this.recoveryCodeStore = recoveryCodeStore;
+    this.hasher = hasher;
+    this.entropy = entropy;
+    this.sessionEpochs = sessionEpochs;
+    this.transactionTemplate = transactionTemplate;
+    this.timers = timers;
+    WebAuthnProperties.UserCache config = properties.userCache();
+    this.hashParams = Caffeine.newBuilder()
+        .maximumSize(config.maximumSize())
+        .expireAfterWrite(config.ttl())
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, hashParams, "auth.recovery.salts");
   }
 
-  @Transactional
+  /**
+   * Replaces the user's codes. Each generation gets a fresh salt and the configured KDF, which
+   * is how users with older hashes are upgraded: a code is spent on use, so it cannot be
+   * re-hashed then.
+   */
   public List<String> generateCodes(Long userId) {
-    UserAccount user = userRepository.findById(userId)
-        .orElseThrow(() -> new IllegalArgumentException("User not found"));
-
-    byte[] salt = ensureSalt(user);
-    recoveryCodeRepository.deleteByUserId(userId);
-
+    if (!userRepository.existsById(userId)) {
+      throw new IllegalArgumentException("User not found");
+    }
+    byte[] salt = new byte[SALT_LENGTH];
+    entropy.nextBytes(salt);
+    RecoveryKdf kdf = hasher.current();
     List<String> codes = new ArrayList<>(CODE_COUNT);
+    List<String> normalized = new ArrayList<>(CODE_COUNT);
     for (int i = 0; i < CODE_COUNT; i++) {
       String code = generateCode();
-      String hash = hashCode(salt, normalizeCode(code));
-      recoveryCodeRepository.save(new RecoveryCode(user, hash));
       codes.add(code);
+      normalized.add(normalizeCode(code));
     }
+    List<byte[]> hashes = hasher.hashAll(kdf, salt, normalized);
+
+    transactionTemplate.executeWithoutResult(status -> {
+      UserAccount user = userRepository.findById(userId)
+          .orElseThrow(() -> new IllegalArgumentException("User not found"));
+      user.setRecoverySalt(salt);
+      user.setRecoveryKdf(kdf.spec());
+      recoveryCodeStore.replace(userId, hashes);
+      String username = user.getUsername();
+      AfterCommit.run(() -> hashParams.invalidate(username));
+    });
     return codes;
   }
 
-  @Transactional
-  public Optional<UserAccount> consumeCode(String username, String code) {
+  /**
+   * A recovery sign-in means a passkey was lost, so it also signs the user out of every other
+   * session; the caller's new session is issued afterwards under the bumped epoch. With the salt
+   * cached, redeeming the code is a single statement in either {@link RecoveryCodeStore}.
+   *
+   * <p>A cached salt goes stale when the codes are regenerated on another node, so a miss is
+   * retried once with the stored salt if that differs. Every attempt pays for at least one hash
+   * with the current KDF: an unknown user, or one without codes, hashes against a fixed salt, and
+   * so does a user whose codes still use a cheaper KDF, after hashing with theirs. The response
+   * time therefore does not tell which usernames have codes. Throws
+   * {@link RecoveryCodeHasher.Busy} when the hashing pool is saturated. A successful ceremony is
+   * timed by {@link SessionService#signIn} once the new session is issued.
+   */
+  public Optional<UserSummary> consumeCode(String username, String code) {
+    long started = System.nanoTime();
     if (username == null || username.isBlank() || code == null || code.isBlank()) {
+      timers.ceremony(Ceremony.RECOVERY, Outcome.INVALID, started);
       return Optional.empty();
     }
-    Optional<UserAccount> userMaybe = userRepository.findByUsername(username);
-    if (userMaybe.isEmpty()) {
-      return Optional.empty();
+    RecoveryHashParams params = hashParams.getIfPresent(username);
+    boolean cached = params != null;
+    if (!cached) {
+      params = load(username);
     }
-    UserAccount user = userMaybe.get();
-    if (user.getRecoverySalt() == null || user.getRecoverySalt().length == 0) {
+    String normalized = normalizeCode(code);
+    if (params == null) {
+      long phase = timers.phase(Ceremony.RECOVERY, Phase.USER_LOOKUP, Outcome.FAILURE, started);
+      hash(hasher.current(), MISS_SALT, normalized, phase, started);
+      timers.phase(Ceremony.RECOVERY, Phase.CODE_HASH, phase);
+      timers.ceremony(Ceremony.RECOVERY, Outcome.FAILURE, started);
       return Optional.empty();
     }
+    long phase = timers.phase(Ceremony.RECOVERY, Phase.USER_LOOKUP, started);
 
-    String hash = hashCode(user.getRecoverySalt(), normalizeCode(code));
-    Optional<RecoveryCode> record =
-        recoveryCodeRepository.findByUser_IdAndCodeHashAndUsedFalse(user.getId(), hash);
-    if (record.isEmpty()) {
-      return Optional.empty();
+    Optional<UserSummary> redeemed = redeem(username, normalized, params, phase, started);
+    if (redeemed.isEmpty() && cached) {
+      RecoveryHashParams stored = load(username);
+      if (stored != null && !stored.sameAs(params)) {
+        redeemed = redeem(username, normalized, stored, System.nanoTime(), started);
+      }
+    }
+    if (redeemed.isEmpty()) {
+      timers.ceremony(Ceremony.RECOVERY, Outcome.FAILURE, started);
     }
-    RecoveryCode recoveryCode = record.get();
-    recoveryCode.setUsed(true);
-    recoveryCodeRepository.save(recoveryCode);
-    return Optional.of(user);
+    return redeemed;
   }
 
-  private byte[] ensureSalt(UserAccount user) {
-    byte[] salt = user.getRecoverySalt();
-    if (salt == null || salt.length == 0) {
-      salt = new byte[16];
-      RANDOM.nextBytes(salt);
-      user.setRecoverySalt(salt);
-      userRepository.save(user);
+  private Optional<UserSummary> redeem(
+      String username,
+      String normalizedCode,
+      RecoveryHashParams params,
+      long phaseStart,
+      long started
+  ) {
+    RecoveryKdf kdf = params.recoveryKdf();
+    byte[] hash = hash(kdf, params.salt(), normalizedCode, phaseStart, started);
+    if (kdf.cheaperThan(hasher.current())) {
+      hash(hasher.current(), MISS_SALT, normalizedCode, phaseStart, started);
     }
-    return salt;
+    long phase = timers.phase(Ceremony.RECOVERY, Phase.CODE_HASH, phaseStart);
+
+    UserSummary user = transactionTemplate.execute(status -> {
+      UserSummary owner = recoveryCodeStore.redeem(username, hash).orElse(null);
+      if (owner != null) {
+        sessionEpochs.bump(owner.id());
+      }
+      return owner;
+    });
+    timers.phase(Ceremony.RECOVERY, Phase.CODE_CONSUME,
+        user == null ? Outcome.FAILURE : Outcome.SUCCESS, phase);
+    return Optional.ofNullable(user);
   }
 
-  private String generateCode() {
+  private byte[] hash(
+      RecoveryKdf kdf,
+      byte[] salt,
+      String normalizedCode,
+      long phaseStart,
+      long started
+  ) {
+    try {
+      return hasher.hash(kdf, salt, normalizedCode);
+    } catch (RecoveryCodeHasher.Busy e) {
+      throw timers.failed(Ceremony.RECOVERY, Phase.CODE_HASH, Outcome.FAILURE,
+          phaseStart, started, e);
+    }
+  }
+
+  /** Users without a salt are not cached, since generating their first codes sets it. */
+  private RecoveryHashParams load(String username) {
+    RecoveryHashParams params = userRepository.findRecoveryHashParamsByUsername(username)
+        .filter(RecoveryHashParams::usable)
+        .orElse(null);
+    if (params != null) {
+      hashParams.put(username, params);
+    }
+    return params;
+  }
+
+  String generateCode() {
     char[] buffer = new char[CODE_LENGTH + 1];
     for (int i = 0; i < CODE_LENGTH; i++) {
-      buffer[i + (i >= 5 ? 1 : 0)] = ALPHABET[RANDOM.nextInt(ALPHABET.length)];
+      buffer[i + (i >= 5 ? 1 : 0)] = ALPHABET[entropy.nextInt(ALPHABET.length)];
     }
     buffer[5] = '-';
     return new String(buffer);
   }
 
-  private String normalizeCode(String code) {
+  static String normalizeCode(String code) {
     return code.replaceAll("[\\s-]", "").toUpperCase();
   }
-
-  private String hashCode(byte[] salt, String code) {
-    try {
-      MessageDigest digest = MessageDigest.getInstance("SHA-256");
-      digest.update(salt);
-      digest.update((byte) ':');
-      digest.update(code.getBytes(StandardCharsets.UTF_8));
-      return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
-    } catch (NoSuchAlgorithmException e) {
-      throw new IllegalStateException("SHA-256 not available", e);
-    }
-  }
 }
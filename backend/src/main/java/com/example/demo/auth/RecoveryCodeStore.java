@@ -0,0 +1,16 @@
+package com.example.demo.auth;
+
+import java.util.List;
+import java.util.Optional;
+
+/** Where hashed recovery codes live; selected by {@code app.webauthn.recovery.storage}. */
+public interface RecoveryCodeStore {
+  /** Replaces every code the user has, used or not, with these hashes. */
+  void replace(Long userId, List<byte[]> hashes);
+
+  /**
+   * Marks the user's unused code with this hash as used and returns the user, atomically, so a
+   * code redeemed concurrently succeeds at most once.
+   */
+  Optional<UserSummary> redeem(String username, byte[] hash);
+}
@@ -0,0 +1,19 @@
+package com.example.demo.auth;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/** A user's recovery salt and the {@link RecoveryKdf} spec their codes were hashed with. */
+public record RecoveryHashParams(byte[] salt, String kdf) {
+  boolean usable() {
+    return salt != null && salt.length > 0;
+  }
+
+  RecoveryKdf recoveryKdf() {
+    return RecoveryKdf.parse(kdf);
+  }
+
+  boolean sameAs(RecoveryHashParams other) {
+    return Arrays.equals(salt, other.salt) && Objects.equals(kdf, other.kdf);
+  }
+}
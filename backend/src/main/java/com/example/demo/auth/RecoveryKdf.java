@@ -0,0 +1,128 @@
+package com.example.demo.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.generators.SCrypt;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+
+/**
+ * How a user's recovery codes are hashed, stored next to their salt as {@code sha256},
+ * {@code scrypt:N:r:p} or {@code argon2id:memoryKiB:iterations:parallelism}. A user without a
+ * stored spec predates it and has SHA-256 hashes. {@code cost} is scrypt's N or Argon2's memory
+ * and {@code rounds} scrypt's block size r or Argon2's iterations. Every algorithm produces
+ * {@value #HASH_LENGTH} bytes, the slot width of {@link CompactRecoveryCodeStore}.
+ */
+public record RecoveryKdf(Algorithm algorithm, int cost, int rounds, int parallelism) {
+  static final int HASH_LENGTH = 32;
+
+  public static final RecoveryKdf LEGACY = new RecoveryKdf(Algorithm.SHA256, 0, 0, 0);
+
+  private static final MessageDigest SHA256_PROTOTYPE = sha256();
+
+  public enum Algorithm {
+    SHA256,
+    SCRYPT,
+    ARGON2ID
+  }
+
+  public static RecoveryKdf parse(String spec) {
+    if (spec == null || spec.isBlank()) {
+      return LEGACY;
+    }
+    String[] parts = spec.trim().split(":");
+    Algorithm algorithm;
+    try {
+      algorithm = Algorithm.valueOf(parts[0].toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown recovery KDF: " + spec);
+    }
+    if (algorithm == Algorithm.SHA256) {
+      return LEGACY;
+    }
+    if (parts.length != 4) {
+      throw new IllegalArgumentException("Recovery KDF needs three parameters: " + spec);
+    }
+    RecoveryKdf kdf = new RecoveryKdf(
+        algorithm,
+        Integer.parseInt(parts[1]),
+        Integer.parseInt(parts[2]),
+        Integer.parseInt(parts[3])
+    );
+    if (kdf.cost <= 1 || kdf.rounds < 1 || kdf.parallelism < 1
+        || (algorithm == Algorithm.SCRYPT && Integer.bitCount(kdf.cost) != 1)) {
+      throw new IllegalArgumentException("Invalid recovery KDF parameters: " + spec);
+    }
+    return kdf;
+  }
+
+  public String spec() {
+    return algorithm == Algorithm.SHA256
+        ? "sha256"
+        : algorithm.name().toLowerCase() + ":" + cost + ":" + rounds + ":" + parallelism;
+  }
+
+  /**
+   * Whether a hash with this KDF is clearly faster than one with {@code other}: SHA-256 against
+   * either memory-hard KDF, or the same memory-hard KDF with less work. scrypt and Argon2 are not
+   * compared with each other.
+   */
+  public boolean cheaperThan(RecoveryKdf other) {
+    if (algorithm != other.algorithm) {
+      return algorithm == Algorithm.SHA256;
+    }
+    return work() < other.work();
+  }
+
+  /** scrypt's lanes each repeat the work, Argon2's share its memory. */
+  private long work() {
+    long work = (long) cost * rounds;
+    return algorithm == Algorithm.SCRYPT ? work * parallelism : work;
+  }
+
+  /** CPU- and, except for SHA-256, memory-bound; run it on {@link RecoveryCodeHasher}. */
+  public byte[] hash(byte[] salt, String normalizedCode) {
+    byte[] code = normalizedCode.getBytes(StandardCharsets.UTF_8);
+    return switch (algorithm) {
+      case SHA256 -> {
+        MessageDigest digest = clone(SHA256_PROTOTYPE);
+        digest.update(salt);
+        digest.update((byte) ':');
+        digest.update(code);
+        yield digest.digest();
+      }
+      case SCRYPT -> SCrypt.generate(code, salt, cost, rounds, parallelism, HASH_LENGTH);
+      case ARGON2ID -> {
+        Argon2BytesGenerator generator = new Argon2BytesGenerator();
+        generator.init(new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
+            .withVersion(Argon2Parameters.ARGON2_VERSION_13)
+            .withSalt(salt)
+            .withMemoryAsKB(cost)
+            .withIterations(rounds)
+            .withParallelism(parallelism)
+            .build());
+        byte[] out = new byte[HASH_LENGTH];
+        generator.generateBytes(code, out);
+        yield out;
+      }
+    };
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  /** MessageDigest is not thread-safe; each hash works on a clone of the prototype. */
+  private static MessageDigest clone(MessageDigest prototype) {
+    try {
+      return (MessageDigest) prototype.clone();
+    } catch (CloneNotSupportedException e) {
+      return sha256();
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package com.example.demo.auth;
+
+import java.util.Optional;
+
+final class RequestIds {
+  private static final char NODE_SEPARATOR = '.';
+
+  private RequestIds() {}
+
+  static String random(EntropySource entropy, String nodeId) {
+    if (nodeId == null || nodeId.isBlank()) {
+      return entropy.randomId();
+    }
+    return nodeId + NODE_SEPARATOR + entropy.randomId();
+  }
+
+  static Optional<String> nodeId(String requestId) {
+    if (requestId == null) {
+      return Optional.empty();
+    }
+    int separator = requestId.indexOf(NODE_SEPARATOR);
+    if (separator <= 0) {
+      return Optional.empty();
+    }
+    return Optional.of(requestId.substring(0, separator));
+  }
+}
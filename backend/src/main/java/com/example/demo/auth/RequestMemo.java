@@ -0,0 +1,59 @@
+package com.example.demo.auth;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+final class RequestMemo {
+  private static final String ATTRIBUTE = RequestMemo.class.getName();
+
+  private RequestMemo() {}
+
+  @SuppressWarnings("unchecked")
+  static <T> T computeIfAbsent(String kind, Object key, Supplier<T> loader) {
+    Map<Key, Object> memo = memo(true);
+    if (memo == null) {
+      return loader.get();
+    }
+    Key memoKey = new Key(kind, key);
+    if (memo.containsKey(memoKey)) {
+      return (T) memo.get(memoKey);
+    }
+    T value = loader.get();
+    memo.put(memoKey, value);
+    return value;
+  }
+
+  /** Records a value learned some other way, e.g. a user found by handle is also known by name. */
+  static void put(String kind, Object key, Object value) {
+    Map<Key, Object> memo = memo(true);
+    if (memo != null) {
+      memo.put(new Key(kind, key), value);
+    }
+  }
+
+  static void forget(String kind, Object key) {
+    Map<Key, Object> memo = memo(false);
+    if (memo != null) {
+      memo.remove(new Key(kind, key));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<Key, Object> memo(boolean create) {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    if (attributes == null) {
+      return null;
+    }
+    Object memo = attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    if (memo == null && create) {
+      memo = new HashMap<Key, Object>();
+      attributes.setAttribute(ATTRIBUTE, memo, RequestAttributes.SCOPE_REQUEST);
+    }
+    return (Map<Key, Object>) memo;
+  }
+
+  private record Key(String kind, Object key) {}
+}
@@ -0,0 +1,68 @@
+package com.example.demo.auth;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/** One {@link RecoveryCode} row per code, hashes stored as base64url text. */
+@Component
+@ConditionalOnProperty(
+    prefix = "app.webauthn.recovery",
+    name = "storage",
+    havingValue = "rows",
+    matchIfMissing = true
+)
+public class RowRecoveryCodeStore implements RecoveryCodeStore {
+  /**
+   * Marks the code used and returns its owner in one statement. Concurrent redemptions of the
+   * same code serialize on the row lock and re-check {@code used}, so only one gets a row back.
+   */
+  private static final String REDEEM = """
+      update recovery_codes c
+      set used = true
+      from users u
+      where u.username = ? and c.user_id = u.id and c.code_hash = ? and not c.used
+      returning u.id, u.username, u.display_name, u.user_handle
+      """;
+
+  private final RecoveryCodeRepository recoveryCodeRepository;
+  private final UserAccountRepository userRepository;
+  private final JdbcTemplate jdbcTemplate;
+
+  public RowRecoveryCodeStore(
+      RecoveryCodeRepository recoveryCodeRepository,
+      UserAccountRepository userRepository,
+      JdbcTemplate jdbcTemplate
+  ) {
+    this.recoveryCodeRepository = recoveryCodeRepository;
+    this.userRepository = userRepository;
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  public void replace(Long userId, List<byte[]> hashes) {
+    UserAccount user = userRepository.getReferenceById(userId);
+    recoveryCodeRepository.deleteByUserId(userId);
+    for (byte[] hash : hashes) {
+      recoveryCodeRepository.save(new RecoveryCode(user, encode(hash)));
+    }
+  }
+
+  @Override
+  public Optional<UserSummary> redeem(String username, byte[] hash) {
+    List<UserSummary> redeemed = jdbcTemplate.query(REDEEM, (rs, rowNum) -> new UserSummary(
+        rs.getLong("id"),
+        rs.getString("username"),
+        rs.getString("display_name"),
+        rs.getBytes("user_handle")
+    ), username, encode(hash));
+    return redeemed.isEmpty() ? Optional.empty() : Optional.of(redeemed.get(0));
+  }
+
+  static String encode(byte[] hash) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+  }
+}
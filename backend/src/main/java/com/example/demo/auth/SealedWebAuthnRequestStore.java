@@ -0,0 +1,262 @@
+package com.example.demo.auth;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.yubico.webauthn.AssertionRequest;
+import com.yubico.webauthn.data.PublicKeyCredentialCreationOptions;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(prefix = "app.webauthn.requestStore", name = "type", havingValue = "sealed")
+public class SealedWebAuthnRequestStore implements WebAuthnRequestStore {
+  private static final Logger log = LoggerFactory.getLogger(SealedWebAuthnRequestStore.class);
+  private static final byte VERSION = 1;
+  private static final byte KIND_REGISTRATION = 1;
+  private static final byte KIND_ASSERTION = 2;
+  private static final int IV_LENGTH = 12;
+  private static final int TAG_BITS = 128;
+  private static final int HEADER_LENGTH = 2 + IV_LENGTH;
+
+  private final Clock clock;
+  private final Duration ttl;
+  private final EntropySource entropy;
+  private final SecretKeySpec key;
+  private final ReplayFilter replayFilter = new ReplayFilter();
+
+  @Autowired
+  public SealedWebAuthnRequestStore(WebAuthnProperties properties, EntropySource entropy) {
+    this(properties, entropy, Clock.systemUTC());
+  }
+
+  SealedWebAuthnRequestStore(WebAuthnProperties properties, EntropySource entropy, Clock clock) {
+    WebAuthnProperties.RequestStore config = properties.requestStore();
+    this.clock = clock;
+    this.ttl = config.ttl();
+    this.entropy = entropy;
+    this.key = new SecretKeySpec(sealKey(config.sealKey(), entropy), "AES");
+  }
+
+  @Override
+  public PendingRegistration createRegistration(
+      PublicKeyCredentialCreationOptions options,
+      Long userId,
+      String username
+  ) {
+    Instant expiresAt = expiresAt();
+    String json;
+    try {
+      json = options.toJson();
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Failed to serialize registration options", e);
+    }
+    String requestId = seal(KIND_REGISTRATION, expiresAt, userId, username, json);
+    return new PendingRegistration(requestId, options, userId, username, expiresAt);
+  }
+
+  @Override
+  public PendingAssertion createAssertion(AssertionRequest request, Optional<String> username) {
+    Instant expiresAt = expiresAt();
+    String json;
+    try {
+      json = request.toJson();
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Failed to serialize assertion request", e);
+    }
+    String requestId = seal(KIND_ASSERTION, expiresAt, null, username.orElse(null), json);
+    return new PendingAssertion(requestId, request, username, expiresAt);
+  }
+
+  @Override
+  public Optional<PendingRegistration> consumeRegistration(String requestId) {
+    return unseal(KIND_REGISTRATION, requestId).map(token -> {
+      try {
+        return new PendingRegistration(
+            requestId,
+            PublicKeyCredentialCreationOptions.fromJson(token.json()),
+            token.userId(),
+            token.username(),
+            token.expiresAt()
+        );
+      } catch (JsonProcessingException e) {
+        throw new IllegalStateException("Corrupt registration token", e);
+      }
+    });
+  }
+
+  @Override
+  public Optional<PendingAssertion> consumeAssertion(String requestId) {
+    return unseal(KIND_ASSERTION, requestId).map(token -> {
+      try {
+        return new PendingAssertion(
+            requestId,
+            AssertionRequest.fromJson(token.json()),
+            Optional.ofNullable(token.username()),
+            token.expiresAt()
+        );
+      } catch (JsonProcessingException e) {
+        throw new IllegalStateException("Corrupt assertion token", e);
+      }
+    });
+  }
+
+  @Scheduled(fixedDelayString = "${app.webauthn.requestStore.sweepInterval:5s}")
+  public void sweepExpired() {
+    replayFilter.sweep(clock.instant());
+  }
+
+  public int replayFilterSize() {
+    return replayFilter.size();
+  }
+
+  private Instant expiresAt() {
+    return clock.instant().plus(ttl);
+  }
+
+  private String seal(
+      byte kind,
+      Instant expiresAt,
+      Long userId,
+      String username,
+      String json
+  ) {
+    byte[] plaintext = encode(expiresAt, userId, username, json);
+    byte[] iv = entropy.randomBytes(IV_LENGTH);
+    byte[] header = new byte[] {VERSION, kind};
+    try {
+      Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+      cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+      cipher.updateAAD(header);
+      byte[] ciphertext = cipher.doFinal(plaintext);
+      ByteBuffer token = ByteBuffer.allocate(HEADER_LENGTH + ciphertext.length);
+      token.put(header).put(iv).put(ciphertext);
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(token.array());
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Failed to seal ceremony token", e);
+    }
+  }
+
+  private Optional<Token> unseal(byte kind, String requestId) {
+    if (requestId == null || requestId.isBlank()) {
+      return Optional.empty();
+    }
+    byte[] raw;
+    try {
+      raw = Base64.getUrlDecoder().decode(requestId);
+    } catch (IllegalArgumentException e) {
+      return Optional.empty();
+    }
+    if (raw.length <= HEADER_LENGTH + TAG_BITS / 8 || raw[0] != VERSION || raw[1] != kind) {
+      return Optional.empty();
+    }
+    byte[] plaintext;
+    try {
+      Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+      cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, raw, 2, IV_LENGTH));
+      cipher.updateAAD(raw, 0, 2);
+      plaintext = cipher.doFinal(raw, HEADER_LENGTH, raw.length - HEADER_LENGTH);
+    } catch (AEADBadTagException e) {
+      return Optional.empty();
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Failed to unseal ceremony token", e);
+    }
+    Token token = decode(plaintext);
+    Instant now = clock.instant();
+    if (token.expiresAt().isBefore(now)) {
+      return Optional.empty();
+    }
+    long fingerprint = ByteBuffer.wrap(raw, raw.length - TAG_BITS / 8, Long.BYTES).getLong();
+    if (!replayFilter.markUsed(fingerprint, token.expiresAt())) {
+      return Optional.empty();
+    }
+    return Optional.of(token);
+  }
+
+  private static byte[] encode(Instant expiresAt, Long userId, String username, String json) {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(json.length() + 64);
+    try (DataOutputStream out = new DataOutputStream(buffer)) {
+      out.writeLong(expiresAt.getEpochSecond());
+      out.writeLong(userId == null ? -1L : userId);
+      out.writeBoolean(username != null);
+      if (username != null) {
+        out.writeUTF(username);
+      }
+      out.write(json.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to encode ceremony token", e);
+    }
+    return buffer.toByteArray();
+  }
+
+  private static Token decode(byte[] plaintext) {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(plaintext))) {
+      Instant expiresAt = Instant.ofEpochSecond(in.readLong());
+      long userId = in.readLong();
+      String username = in.readBoolean() ? in.readUTF() : null;
+      String json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      return new Token(expiresAt, userId < 0 ? null : userId, username, json);
+    } catch (IOException e) {
+      throw new IllegalStateException("Corrupt ceremony token", e);
+    }
+  }
+
+  private static byte[] sealKey(String configured, EntropySource entropy) {
+    if (configured == null || configured.isBlank()) {
+      log.warn("app.webauthn.requestStore.sealKey is not set; using a per-process key, "
+          + "so ceremonies cannot be finished on another node or after a restart");
+      return entropy.randomBytes(32);
+    }
+    byte[] decoded = Base64.getDecoder().decode(configured);
+    if (decoded.length != 16 && decoded.length != 32) {
+      throw new IllegalStateException("sealKey must be a base64 encoded 128 or 256 bit key");
+    }
+    return decoded;
+  }
+
+  private record Token(Instant expiresAt, Long userId, String username, String json) {}
+
+  /**
+   * Remembers tokens that were already redeemed until they would have expired anyway. Entries
+   * are grouped by expiry minute so a sweep drops whole buckets instead of scanning entries.
+   */
+  static final class ReplayFilter {
+    private final Map<Long, Set<Long>> buckets = new ConcurrentHashMap<>();
+
+    boolean markUsed(long fingerprint, Instant expiresAt) {
+      long bucket = expiresAt.getEpochSecond() / 60;
+      return buckets.computeIfAbsent(bucket, b -> ConcurrentHashMap.newKeySet()).add(fingerprint);
+    }
+
+    void sweep(Instant now) {
+      long current = now.getEpochSecond() / 60;
+      buckets.keySet().removeIf(bucket -> bucket < current);
+    }
+
+    int size() {
+      return buckets.values().stream().mapToInt(Set::size).sum();
+    }
+  }
+}
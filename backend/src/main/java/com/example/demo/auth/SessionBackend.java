@@ -0,0 +1,19 @@
+package com.example.demo.auth;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.util.Optional;
+
+/**
+ * Where a signed-in user is remembered between requests. {@link SessionService} checks the
+ * returned epoch against {@link SessionEpochs}, so backends only store and return it.
+ */
+public interface SessionBackend {
+  void signIn(HttpServletRequest request, HttpServletResponse response, Principal principal);
+
+  Optional<Principal> principal(HttpServletRequest request, HttpServletResponse response);
+
+  void signOut(HttpServletRequest request, HttpServletResponse response);
+
+  record Principal(long userId, int epoch) {}
+}
@@ -0,0 +1,132 @@
+package com.example.demo.auth;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Per-user session epochs. A session carries the epoch it was issued under and is only honoured
+ * while that is not behind the user's current epoch, so bumping it signs the user out everywhere.
+ *
+ * <p>Checks are answered from an in-memory table without touching the database. Only users whose
+ * epoch was ever bumped are in it; everyone else is at epoch 0. The table is loaded at startup and
+ * then refreshed with the rows whose {@code session_epoch_changed_at} moved since the previous
+ * poll, re-reading {@code epochRefreshOverlap} of history so late commits are not missed. Bumps on
+ * this node apply immediately; other nodes see them after one refresh interval.
+ *
+ * <p>The table holds one {@link EpochTable} entry per user ever revoked, about 24 bytes each, and
+ * does not shrink: a million revoked users cost some 24 MB per node.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class SessionEpochs {
+  private static final String BUMP = """
+      update users
+      set session_epoch = session_epoch + 1, session_epoch_changed_at = clock_timestamp()
+      where id = ?
+      returning session_epoch
+      """;
+
+  private static final String FIND = "select session_epoch from users where id = ?";
+
+  private static final String LOAD_ALL =
+      "select id, session_epoch from users where session_epoch > 0";
+
+  private static final String CHANGED_SINCE = """
+      select p.polled_at, u.id, u.session_epoch
+      from (select now() as polled_at) p
+      left join users u on u.session_epoch_changed_at > ?
+      """;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final Duration overlap;
+  private final EpochTable epochs = new EpochTable();
+  private volatile Timestamp lastPolled;
+
+  public SessionEpochs(
+      JdbcTemplate jdbcTemplate,
+      WebAuthnProperties properties,
+      MeterRegistry meterRegistry
+  ) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.overlap = properties.session().epochRefreshOverlap();
+    Gauge.builder("auth.session.epochs", epochs, EpochTable::size)
+        .description("Users with a non-zero session epoch held in memory")
+        .register(meterRegistry);
+  }
+
+  @PostConstruct
+  void load() {
+    Timestamp polled = jdbcTemplate.queryForObject("select now()", Timestamp.class);
+    jdbcTemplate.query(LOAD_ALL, rs -> {
+      apply(rs.getLong("id"), rs.getInt("session_epoch"));
+    });
+    lastPolled = polled;
+  }
+
+  /** The user's epoch as of the last refresh; 0 for users that were never revoked. */
+  public int current(long userId) {
+    return epochs.get(userId);
+  }
+
+  /**
+   * Whether a session issued under {@code epoch} is still valid. A session ahead of this node
+   * was issued elsewhere after a bump this node has not polled yet; epochs only move forward and
+   * the session's epoch is stored server-side or MAC-protected, so it is taken as the newer value.
+   */
+  public boolean honours(long userId, int epoch) {
+    int current = current(userId);
+    if (epoch > current) {
+      apply(userId, epoch);
+      return true;
+    }
+    return epoch == current;
+  }
+
+  /**
+   * Reads the epoch from the database for a session about to be issued, so a sign-in right after
+   * a revocation on another node is not issued under an epoch this node has not caught up with.
+   */
+  public int refresh(long userId) {
+    List<Integer> rows = jdbcTemplate.queryForList(FIND, Integer.class, userId);
+    return rows.isEmpty() ? 0 : apply(userId, rows.get(0));
+  }
+
+  @Transactional
+  public void bump(long userId) {
+    List<Integer> rows = jdbcTemplate.queryForList(BUMP, Integer.class, userId);
+    if (!rows.isEmpty()) {
+      int epoch = rows.get(0);
+      AfterCommit.run(() -> apply(userId, epoch));
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${app.webauthn.session.epochRefreshInterval:2s}")
+  public void refreshChanged() {
+    Timestamp since = new Timestamp(lastPolled.getTime() - overlap.toMillis());
+    Timestamp[] polled = new Timestamp[1];
+    jdbcTemplate.query(CHANGED_SINCE, rs -> {
+      polled[0] = rs.getTimestamp("polled_at");
+      long userId = rs.getLong("id");
+      if (!rs.wasNull()) {
+        apply(userId, rs.getInt("session_epoch"));
+      }
+    }, since);
+    if (polled[0] != null) {
+      lastPolled = polled[0];
+    }
+  }
+
+  /** Epochs only move forward, so a stale refresh racing a local bump cannot undo it. */
+  private int apply(long userId, int epoch) {
+    return epoch == 0 ? current(userId) : epochs.merge(userId, epoch);
+  }
+}
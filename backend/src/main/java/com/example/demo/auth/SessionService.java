@@ -1,26 +1,71 @@
 package com.example.demo.auth;
 
-import jakarta.servlet.http.HttpSession;
+import com.example.demo.auth.CeremonyTimers.Ceremony;
+import com.example.demo.auth.CeremonyTimers.Outcome;
+import com.example.demo.auth.CeremonyTimers.Phase;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.util.Optional;
 import org.springframework.stereotype.Component;
 
 @Component
 public class SessionService {
-  private static final String SESSION_USER_KEY = "auth.userId";
+  static final String SESSION_USER_KEY = "auth.userId";
 
-  public void signIn(HttpSession session, Long userId) {
-    session.setAttribute(SESSION_USER_KEY, userId);
+  private final SessionBackend backend;
+  private final SessionEpochs epochs;
+  private final CeremonyTimers timers;
+
+  public SessionService(SessionBackend backend, SessionEpochs epochs, CeremonyTimers timers) {
+    this.backend = backend;
+    this.epochs = epochs;
+    this.timers = timers;
   }
 
-  public Optional<Long> getUserId(HttpSession session) {
-    Object value = session.getAttribute(SESSION_USER_KEY);
-    if (value instanceof Long userId) {
-      return Optional.of(userId);
+  /**
+   * Issues the session that completes {@code ceremony} and records the ceremony as a whole from
+   * {@code ceremonyStartNanos}, so the end-to-end timer includes the session write.
+   */
+  public void signIn(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      Long userId,
+      Ceremony ceremony,
+      long ceremonyStartNanos
+  ) {
+    long started = System.nanoTime();
+    try {
+      backend.signIn(request, response, issued(userId));
+    } catch (RuntimeException e) {
+      throw timers.failed(ceremony, Phase.SESSION_SIGN_IN, Outcome.FAILURE,
+          started, ceremonyStartNanos, e);
     }
-    return Optional.empty();
+    timers.phase(ceremony, Phase.SESSION_SIGN_IN, started);
+    timers.ceremony(ceremony, Outcome.SUCCESS, ceremonyStartNanos);
+  }
+
+  public Optional<Long> getUserId(HttpServletRequest request, HttpServletResponse response) {
+    return backend.principal(request, response)
+        .filter(principal -> epochs.honours(principal.userId(), principal.epoch()))
+        .map(SessionBackend.Principal::userId);
+  }
+
+  public void signOut(HttpServletRequest request, HttpServletResponse response) {
+    backend.signOut(request, response);
+  }
+
+  /** Ends every session the user has, on every node, including ones signed in elsewhere. */
+  public void revokeAll(Long userId) {
+    epochs.bump(userId);
+  }
+
+  /** Re-issues the caller's session under the user's current epoch, e.g. after a revocation. */
+  public void reissue(HttpServletRequest request, HttpServletResponse response, Long userId) {
+    backend.signIn(request, response, issued(userId));
   }
 
-  public void signOut(HttpSession session) {
-    session.invalidate();
+  /** Reads the epoch authoritatively; sign-ins are rare enough to afford the query. */
+  private SessionBackend.Principal issued(Long userId) {
+    return new SessionBackend.Principal(userId, epochs.refresh(userId));
   }
 }
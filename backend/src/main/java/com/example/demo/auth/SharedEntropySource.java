@@ -0,0 +1,22 @@
+package com.example.demo.auth;
+
+import java.security.SecureRandom;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/** One process-wide {@link SecureRandom}; kept as the baseline the striped source is measured against. */
+@Component
+@ConditionalOnProperty(prefix = "app.webauthn.entropy", name = "type", havingValue = "shared")
+public class SharedEntropySource implements EntropySource {
+  private final SecureRandom random = new SecureRandom();
+
+  @Override
+  public void nextBytes(byte[] bytes) {
+    random.nextBytes(bytes);
+  }
+
+  @Override
+  public int nextInt(int bound) {
+    return random.nextInt(bound);
+  }
+}
@@ -0,0 +1,74 @@
+package com.example.demo.auth;
+
+import com.yubico.webauthn.CredentialRepository;
+import com.yubico.webauthn.RegisteredCredential;
+import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.PublicKeyCredentialDescriptor;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Answers the library's synchronous {@link CredentialRepository} calls from rows fetched ahead of
+ * time over R2DBC, so a ceremony step can run on a compute thread without touching the database.
+ * Anything outside the snapshot is reported as unknown.
+ */
+final class SnapshotCredentialRepository implements CredentialRepository {
+  private final Optional<UserSummary> user;
+  private final Set<PublicKeyCredentialDescriptor> descriptors;
+  private final Set<RegisteredCredential> credentials;
+
+  SnapshotCredentialRepository(
+      Optional<UserSummary> user,
+      Set<PublicKeyCredentialDescriptor> descriptors,
+      Set<RegisteredCredential> credentials
+  ) {
+    this.user = user;
+    this.descriptors = descriptors;
+    this.credentials = credentials;
+  }
+
+  static SnapshotCredentialRepository empty() {
+    return new SnapshotCredentialRepository(Optional.empty(), Set.of(), Set.of());
+  }
+
+  static SnapshotCredentialRepository credentials(Set<RegisteredCredential> credentials) {
+    return new SnapshotCredentialRepository(Optional.empty(), Set.of(), credentials);
+  }
+
+  Optional<UserSummary> user() {
+    return user;
+  }
+
+  @Override
+  public Set<PublicKeyCredentialDescriptor> getCredentialIdsForUsername(String username) {
+    return user.filter(found -> found.username().equals(username)).isPresent()
+        ? descriptors
+        : Set.of();
+  }
+
+  @Override
+  public Optional<ByteArray> getUserHandleForUsername(String username) {
+    return user.filter(found -> found.username().equals(username)).map(UserSummary::userHandle);
+  }
+
+  @Override
+  public Optional<String> getUsernameForUserHandle(ByteArray userHandle) {
+    return user.filter(found -> found.userHandle().equals(userHandle)).map(UserSummary::username);
+  }
+
+  @Override
+  public Optional<RegisteredCredential> lookup(ByteArray credentialId, ByteArray userHandle) {
+    return credentials.stream()
+        .filter(credential -> credential.getCredentialId().equals(credentialId))
+        .filter(credential -> credential.getUserHandle().equals(userHandle))
+        .findFirst();
+  }
+
+  @Override
+  public Set<RegisteredCredential> lookupAll(ByteArray credentialId) {
+    return credentials.stream()
+        .filter(credential -> credential.getCredentialId().equals(credentialId))
+        .collect(Collectors.toUnmodifiableSet());
+  }
+}
@@ -0,0 +1,178 @@
+package com.example.demo.auth;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Optional;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+@Configuration
+@ConditionalOnProperty(
+    prefix = "app.webauthn.sqlAccounting",
+    name = "enabled",
+    havingValue = "true",
+    matchIfMissing = true
+)
+public class SqlAccountingConfig {
+  private final DataSource dataSource;
+
+  public SqlAccountingConfig(DataSource dataSource) {
+    this.dataSource = dataSource;
+  }
+
+  @Bean
+  public static BeanPostProcessor sqlAccountingPostProcessor(Environment environment) {
+    return new SqlAccountingPostProcessor(environment);
+  }
+
+  @Bean
+  public MeterBinder sqlAccountingMetrics() {
+    return registry -> accounting(dataSource).ifPresent(accounting -> {
+      FunctionCounter.builder(
+          "db.statements.slow",
+          accounting,
+          SqlAccountingDataSource::slowStatements
+      ).register(registry);
+      FunctionCounter.builder(
+          "db.statements.repeated",
+          accounting,
+          SqlAccountingDataSource::repeatedUnits
+      ).description("Requests that ran the same statement repeatThreshold times or more")
+          .register(registry);
+    });
+  }
+
+  @Bean
+  public SqlEndpoint sqlEndpoint() {
+    return new SqlEndpoint(dataSource);
+  }
+
+  @Bean
+  @Profile("!reactive")
+  public SqlAccountingFilter sqlAccountingFilter() {
+    return new SqlAccountingFilter(dataSource);
+  }
+
+  @Scheduled(fixedDelayString = "${app.webauthn.sqlAccounting.window:1m}")
+  public void rotateWindow() {
+    accounting(dataSource).ifPresent(SqlAccountingDataSource::rotate);
+  }
+
+  static Optional<SqlAccountingDataSource> accounting(DataSource dataSource) {
+    try {
+      return dataSource.isWrapperFor(SqlAccountingDataSource.class)
+          ? Optional.of(dataSource.unwrap(SqlAccountingDataSource.class))
+          : Optional.empty();
+    } catch (SQLException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Wraps outside {@link ConnectionBulkhead} when both are on, so connection wait includes the
+   * time spent queued for a permit.
+   */
+  static final class SqlAccountingPostProcessor implements BeanPostProcessor, Ordered {
+    private final Environment environment;
+
+    SqlAccountingPostProcessor(Environment environment) {
+      this.environment = environment;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+      if (!(bean instanceof DataSource dataSource) || bean instanceof SqlAccountingDataSource) {
+        return bean;
+      }
+      WebAuthnProperties.SqlAccounting config = Binder.get(environment)
+          .bindOrCreate("app.webauthn.sqlAccounting", WebAuthnProperties.SqlAccounting.class);
+      return new SqlAccountingDataSource(
+          dataSource,
+          config.repeatThreshold(),
+          config.slowQueryThreshold(),
+          config.slowQuerySampleRate()
+      );
+    }
+
+    @Override
+    public int getOrder() {
+      return ConnectionBulkheadConfig.POST_PROCESSOR_ORDER + 1;
+    }
+  }
+
+  /** Binds a usage to the request thread and charges it to the matched route. */
+  static final class SqlAccountingFilter extends OncePerRequestFilter {
+    private final DataSource dataSource;
+
+    SqlAccountingFilter(DataSource dataSource) {
+      this.dataSource = dataSource;
+    }
+
+    @Override
+    protected void doFilterInternal(
+        HttpServletRequest request,
+        HttpServletResponse response,
+        FilterChain chain
+    ) throws ServletException, IOException {
+      Optional<SqlAccountingDataSource> accounting = accounting(dataSource);
+      if (accounting.isEmpty()) {
+        chain.doFilter(request, response);
+        return;
+      }
+      SqlAccountingDataSource.Usage usage = accounting.get().begin();
+      try {
+        chain.doFilter(request, response);
+      } finally {
+        accounting.get().end(usage, endpoint(request));
+      }
+    }
+
+    /**
+     * The method and matched route. Requests no handler matched share one key whatever their
+     * method or path, both of which the client picks, so scanners cannot grow the report.
+     */
+    static String endpoint(HttpServletRequest request) {
+      Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+      return pattern == null ? "unmapped" : request.getMethod() + " " + pattern;
+    }
+  }
+
+  /**
+   * {@code /actuator/sql}: per-endpoint statement and connection figures. It names every route
+   * and its database cost, so it is not exposed by default; add {@code sql} to
+   * {@code management.endpoints.web.exposure.include} only with {@code management.server.port}
+   * and {@code management.server.address} set to a listener the public cannot reach.
+   */
+  @Endpoint(id = "sql")
+  public static class SqlEndpoint {
+    private final DataSource dataSource;
+
+    SqlEndpoint(DataSource dataSource) {
+      this.dataSource = dataSource;
+    }
+
+    @ReadOperation
+    public Map<String, SqlAccountingDataSource.EndpointReport> endpoints() {
+      return accounting(dataSource).map(SqlAccountingDataSource::report).orElseGet(Map::of);
+    }
+  }
+}
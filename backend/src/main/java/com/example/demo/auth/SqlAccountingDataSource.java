@@ -0,0 +1,312 @@
+package com.example.demo.auth;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Counts statements, database time, connection wait and connection hold time per unit of work.
+ * A unit is an HTTP request while a {@link Usage} is bound to the thread (see
+ * {@link SqlAccountingConfig}), otherwise a single connection checkout, charged to
+ * {@value #BACKGROUND}. Totals roll up per endpoint into the current window, and
+ * {@link #rotate()} moves it to "last window".
+ *
+ * <p>The same SQL executed {@code repeatThreshold} times in one unit is reported once per
+ * endpoint as a likely N+1. Statements slower than {@code slowQueryThreshold} are counted and
+ * a {@code slowQuerySampleRate} share of them is logged; this replaces {@code show-sql}.
+ */
+public class SqlAccountingDataSource extends DelegatingDataSource {
+  static final String BACKGROUND = "background";
+
+  private static final Logger log = LoggerFactory.getLogger(SqlAccountingDataSource.class);
+  private static final ThreadLocal<Usage> CURRENT = new ThreadLocal<>();
+  private static final int MAX_REPORTED_STATEMENTS = 20;
+
+  private final int repeatThreshold;
+  private final long slowQueryNanos;
+  private final double slowQuerySampleRate;
+  private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+  private final LongAdder statements = new LongAdder();
+  private final LongAdder slowStatements = new LongAdder();
+  private final LongAdder repeatedUnits = new LongAdder();
+
+  public SqlAccountingDataSource(
+      DataSource target,
+      int repeatThreshold,
+      Duration slowQueryThreshold,
+      double slowQuerySampleRate
+  ) {
+    super(target);
+    this.repeatThreshold = repeatThreshold;
+    this.slowQueryNanos = slowQueryThreshold.toNanos();
+    this.slowQuerySampleRate = slowQuerySampleRate;
+  }
+
+  /** Charges everything this thread does until {@link #end} to a fresh usage. */
+  Usage begin() {
+    Usage usage = new Usage();
+    CURRENT.set(usage);
+    return usage;
+  }
+
+  void end(Usage usage, String endpoint) {
+    CURRENT.remove();
+    record(endpoint, usage);
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    long started = System.nanoTime();
+    return accounted(obtainTargetDataSource().getConnection(), started);
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    long started = System.nanoTime();
+    return accounted(obtainTargetDataSource().getConnection(username, password), started);
+  }
+
+  /** Starts a new window; the one that just ended is reported as {@code lastWindow}. */
+  public void rotate() {
+    endpoints.values().forEach(EndpointStats::rotate);
+  }
+
+  /** Every statement executed through this data source since startup. */
+  public long statements() {
+    return statements.sum();
+  }
+
+  public long slowStatements() {
+    return slowStatements.sum();
+  }
+
+  public long repeatedUnits() {
+    return repeatedUnits.sum();
+  }
+
+  public Map<String, EndpointReport> report() {
+    Map<String, EndpointReport> report = new TreeMap<>();
+    endpoints.forEach((endpoint, stats) -> report.put(endpoint, new EndpointReport(
+        stats.previous.snapshot(),
+        stats.current.snapshot(),
+        List.copyOf(stats.repeatedSql)
+    )));
+    return report;
+  }
+
+  private Connection accounted(Connection connection, long started) {
+    long acquired = System.nanoTime();
+    Usage bound = CURRENT.get();
+    Usage usage = bound != null ? bound : new Usage();
+    usage.acquireNanos += acquired - started;
+    usage.connections++;
+    boolean[] closed = new boolean[1];
+    return (Connection) Proxy.newProxyInstance(
+        Connection.class.getClassLoader(),
+        new Class<?>[] {Connection.class},
+        (proxy, method, args) -> {
+          String name = method.getName();
+          if ("close".equals(name)) {
+            Object result = invoke(connection, method, args);
+            if (!closed[0]) {
+              closed[0] = true;
+              usage.holdNanos += System.nanoTime() - acquired;
+              if (bound == null) {
+                record(BACKGROUND, usage);
+              }
+            }
+            return result;
+          }
+          Object result = invoke(connection, method, args);
+          if (result instanceof Statement statement
+              && Statement.class.isAssignableFrom(method.getReturnType())) {
+            String sql = args != null && args.length > 0 && args[0] instanceof String text
+                ? text
+                : null;
+            return statement(statement, method.getReturnType(), sql, usage);
+          }
+          return result;
+        }
+    );
+  }
+
+  private Object statement(Statement statement, Class<?> type, String preparedSql, Usage usage) {
+    return Proxy.newProxyInstance(
+        Statement.class.getClassLoader(),
+        new Class<?>[] {type},
+        (proxy, method, args) -> {
+          if (!method.getName().startsWith("execute")) {
+            return invoke(statement, method, args);
+          }
+          long started = System.nanoTime();
+          try {
+            return invoke(statement, method, args);
+          } finally {
+            String sql = preparedSql != null
+                ? preparedSql
+                : args != null && args.length > 0 && args[0] instanceof String text
+                    ? text
+                    : "batch";
+            executed(usage, sql, System.nanoTime() - started);
+          }
+        }
+    );
+  }
+
+  private void executed(Usage usage, String sql, long elapsedNanos) {
+    statements.increment();
+    usage.statements++;
+    usage.dbNanos += elapsedNanos;
+    usage.executions.merge(sql, 1, Integer::sum);
+    if (elapsedNanos >= slowQueryNanos) {
+      slowStatements.increment();
+      if (ThreadLocalRandom.current().nextDouble() < slowQuerySampleRate) {
+        log.warn("Slow SQL ({} ms): {}", elapsedNanos / 1_000_000, sql);
+      }
+    }
+  }
+
+  private void record(String endpoint, Usage usage) {
+    EndpointStats stats = endpoints.computeIfAbsent(endpoint, key -> new EndpointStats());
+    boolean repeated = false;
+    for (Map.Entry<String, Integer> execution : usage.executions.entrySet()) {
+      if (execution.getValue() < repeatThreshold) {
+        continue;
+      }
+      repeated = true;
+      if (stats.repeatedSql.size() < MAX_REPORTED_STATEMENTS
+          && stats.repeatedSql.add(execution.getKey())) {
+        log.warn(
+            "Possible N+1 on {}: {} executions of {}",
+            endpoint,
+            execution.getValue(),
+            execution.getKey()
+        );
+      }
+    }
+    if (repeated) {
+      repeatedUnits.increment();
+    }
+    stats.current.add(usage, repeated);
+    if (log.isDebugEnabled()) {
+      log.debug(
+          "{}: {} statements, {} us in database, connections waited {} us, held {} us",
+          endpoint,
+          usage.statements,
+          usage.dbNanos / 1000,
+          usage.acquireNanos / 1000,
+          usage.holdNanos / 1000
+      );
+    }
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getTargetException();
+    }
+  }
+
+  /** One unit of work. Only ever touched by the thread it is bound to. */
+  static final class Usage {
+    private final Map<String, Integer> executions = new HashMap<>();
+    private int statements;
+    private int connections;
+    private long dbNanos;
+    private long acquireNanos;
+    private long holdNanos;
+
+    int statements() {
+      return statements;
+    }
+  }
+
+  private static final class EndpointStats {
+    private final Set<String> repeatedSql = ConcurrentHashMap.newKeySet();
+    private volatile Window current = new Window();
+    private volatile Window previous = new Window();
+
+    void rotate() {
+      previous = current;
+      current = new Window();
+    }
+  }
+
+  private static final class Window {
+    private final LongAdder units = new LongAdder();
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder connections = new LongAdder();
+    private final LongAdder dbNanos = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final LongAdder holdNanos = new LongAdder();
+    private final LongAdder repeated = new LongAdder();
+    private final LongAccumulator maxStatements = new LongAccumulator(Math::max, 0);
+
+    void add(Usage usage, boolean repeatedSql) {
+      units.increment();
+      statements.add(usage.statements);
+      connections.add(usage.connections);
+      dbNanos.add(usage.dbNanos);
+      acquireNanos.add(usage.acquireNanos);
+      holdNanos.add(usage.holdNanos);
+      maxStatements.accumulate(usage.statements);
+      if (repeatedSql) {
+        repeated.increment();
+      }
+    }
+
+    WindowSnapshot snapshot() {
+      long count = units.sum();
+      return new WindowSnapshot(
+          count,
+          perUnit(statements.sum(), count),
+          maxStatements.get(),
+          perUnit(connections.sum(), count),
+          perUnit(dbNanos.sum(), count) / 1e6,
+          perUnit(acquireNanos.sum(), count) / 1e6,
+          perUnit(holdNanos.sum(), count) / 1e6,
+          repeated.sum()
+      );
+    }
+
+    private static double perUnit(long total, long count) {
+      return count == 0 ? 0 : (double) total / count;
+    }
+  }
+
+  public record EndpointReport(
+      WindowSnapshot lastWindow,
+      WindowSnapshot currentWindow,
+      List<String> repeatedStatements
+  ) {}
+
+  /** Averages are per request (per connection checkout for {@value #BACKGROUND}). */
+  public record WindowSnapshot(
+      long requests,
+      double statements,
+      long maxStatements,
+      double connections,
+      double dbMillis,
+      double acquireMillis,
+      double holdMillis,
+      long repeatedSqlRequests
+  ) {}
+}
@@ -0,0 +1,164 @@
+package com.example.demo.auth;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.ByteBuffer;
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Spreads callers over a power-of-two number of independently seeded DRBG instances, picked by
+ * thread id, so concurrent requests rarely wait on the same generator lock. Every stripe is
+ * reseeded from the system entropy source on a schedule. With {@code idBufferSize > 0} request
+ * IDs are pre-generated off the request path and handed out from a bounded buffer; an empty
+ * buffer falls back to generating inline.
+ */
+@Component
+@ConditionalOnProperty(
+    prefix = "app.webauthn.entropy",
+    name = "type",
+    havingValue = "striped",
+    matchIfMissing = true
+)
+public class StripedEntropySource implements EntropySource {
+  private static final Logger log = LoggerFactory.getLogger(StripedEntropySource.class);
+
+  private final SecureRandom[] stripes;
+  private final int mask;
+  private final BlockingQueue<String> idBuffer;
+  private final Counter bufferedIds;
+  private final Counter inlineIds;
+  private volatile boolean reseedUnsupportedLogged;
+
+  @Autowired
+  public StripedEntropySource(WebAuthnProperties properties, MeterRegistry meterRegistry) {
+    this(
+        newStripes(properties.entropy().stripes()),
+        properties.entropy().idBufferSize(),
+        meterRegistry
+    );
+  }
+
+  /** {@code stripes.length} must be a power of two. */
+  StripedEntropySource(SecureRandom[] stripes, int idBufferSize, MeterRegistry meterRegistry) {
+    this.stripes = stripes;
+    this.mask = stripes.length - 1;
+    this.idBuffer = idBufferSize > 0
+        ? new ArrayBlockingQueue<>(idBufferSize)
+        : null;
+    this.bufferedIds = Counter.builder("webauthn.entropy.ids")
+        .tag("source", "buffer")
+        .register(meterRegistry);
+    this.inlineIds = Counter.builder("webauthn.entropy.ids")
+        .tag("source", "inline")
+        .register(meterRegistry);
+    if (idBuffer != null) {
+      Gauge.builder("webauthn.entropy.id-buffer.size", idBuffer, BlockingQueue::size)
+          .register(meterRegistry);
+      refillIds();
+    }
+  }
+
+  @Override
+  public void nextBytes(byte[] bytes) {
+    stripe().nextBytes(bytes);
+  }
+
+  @Override
+  public int nextInt(int bound) {
+    return stripe().nextInt(bound);
+  }
+
+  @Override
+  public String randomId() {
+    if (idBuffer != null) {
+      String id = idBuffer.poll();
+      if (id != null) {
+        bufferedIds.increment();
+        return id;
+      }
+    }
+    inlineIds.increment();
+    return EntropySource.super.randomId();
+  }
+
+  @Scheduled(fixedDelayString = "${app.webauthn.entropy.refillInterval:100ms}")
+  public void refillIds() {
+    if (idBuffer == null) {
+      return;
+    }
+    while (idBuffer.remainingCapacity() > 0) {
+      if (!idBuffer.offer(EntropySource.super.randomId())) {
+        return;
+      }
+    }
+  }
+
+  @Scheduled(
+      initialDelayString = "${app.webauthn.entropy.reseedInterval:10m}",
+      fixedDelayString = "${app.webauthn.entropy.reseedInterval:10m}"
+  )
+  public void reseed() {
+    for (SecureRandom stripe : stripes) {
+      try {
+        stripe.reseed();
+      } catch (UnsupportedOperationException e) {
+        // A stripe that fell back to the platform default cannot reseed; the rest still must.
+        if (!reseedUnsupportedLogged) {
+          reseedUnsupportedLogged = true;
+          log.warn("{} does not support reseeding; skipping it", stripe.getAlgorithm());
+        }
+      }
+    }
+  }
+
+  int stripeCount() {
+    return stripes.length;
+  }
+
+  int stripeIndex(long threadId) {
+    return (int) ((threadId * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+  }
+
+  private SecureRandom stripe() {
+    return stripes[stripeIndex(Thread.currentThread().threadId())];
+  }
+
+  private static SecureRandom[] newStripes(int configured) {
+    int requested = configured > 0
+        ? configured
+        : Runtime.getRuntime().availableProcessors() * 2;
+    int size = requested <= 1 ? 1 : Integer.highestOneBit(requested - 1) << 1;
+    SecureRandom[] stripes = new SecureRandom[size];
+    for (int i = 0; i < size; i++) {
+      stripes[i] = newDrbg(i);
+    }
+    return stripes;
+  }
+
+  private static SecureRandom newDrbg(int index) {
+    byte[] personalization = ByteBuffer.allocate(16)
+        .putLong(ProcessHandle.current().pid() ^ System.nanoTime())
+        .putInt(index)
+        .array();
+    try {
+      return SecureRandom.getInstance("DRBG", DrbgParameters.instantiation(
+          256,
+          DrbgParameters.Capability.RESEED_ONLY,
+          personalization
+      ));
+    } catch (NoSuchAlgorithmException e) {
+      return new SecureRandom();
+    }
+  }
+}
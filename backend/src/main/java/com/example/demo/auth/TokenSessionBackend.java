@@ -0,0 +1,220 @@
+package com.example.demo.auth;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the signed-in user in an HMAC-SHA256 signed cookie, so any node can authenticate a
+ * request without server-side session state. The token is
+ * {@code version | key id | user id | issued at | epoch | mac}, 54 bytes before base64.
+ *
+ * <p>The first configured key signs; every configured key verifies, so a new key is rolled out
+ * by adding it second, then moving it first once every node has it, then dropping the old one.
+ * Tokens older than {@code renewAfter} are reissued on use and expire after {@code maxAge}
+ * without one. Signing out only clears the cookie; {@link SessionService#revokeAll} bumps the
+ * user's epoch to invalidate tokens that are still out there.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.webauthn.session", name = "type", havingValue = "token")
+public class TokenSessionBackend implements SessionBackend {
+  private static final Logger log = LoggerFactory.getLogger(TokenSessionBackend.class);
+  private static final byte VERSION = 1;
+  private static final String ALGORITHM = "HmacSHA256";
+  private static final int PAYLOAD_LENGTH = 2 + Long.BYTES + Long.BYTES + Integer.BYTES;
+  private static final int MAC_LENGTH = 32;
+  private static final int MIN_KEY_LENGTH = 32;
+
+  private final Clock clock = Clock.systemUTC();
+  private final String cookieName;
+  private final Duration maxAge;
+  private final long renewAfterSeconds;
+  private final boolean secureCookie;
+  private final SigningKey signingKey;
+  private final SigningKey[] verifyingKeys = new SigningKey[256];
+
+  public TokenSessionBackend(WebAuthnProperties properties, EntropySource entropy) {
+    WebAuthnProperties.Session config = properties.session();
+    this.cookieName = config.cookieName();
+    this.maxAge = config.maxAge();
+    this.renewAfterSeconds = config.renewAfter().toSeconds();
+    this.secureCookie = config.secureCookie();
+    SigningKey first = null;
+    for (WebAuthnProperties.Session.Key key : config.keys()) {
+      if (key.secret() == null || key.secret().isBlank()) {
+        continue;
+      }
+      SigningKey signing = new SigningKey(key.id(), decodeSecret(key.id(), key.secret()));
+      verifyingKeys[key.id()] = signing;
+      if (first == null) {
+        first = signing;
+      }
+    }
+    if (first == null) {
+      log.warn("app.webauthn.session.keys is not set; using a per-process key, so sessions "
+          + "are only valid on this node and until it restarts");
+      first = new SigningKey(0, entropy.randomBytes(MIN_KEY_LENGTH));
+      verifyingKeys[0] = first;
+    }
+    this.signingKey = first;
+  }
+
+  @Override
+  public void signIn(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      Principal principal
+  ) {
+    long issuedAt = clock.instant().getEpochSecond();
+    writeCookie(response, issue(principal, issuedAt), maxAge);
+  }
+
+  @Override
+  public Optional<Principal> principal(HttpServletRequest request, HttpServletResponse response) {
+    String value = cookieValue(request);
+    if (value == null) {
+      return Optional.empty();
+    }
+    byte[] token;
+    try {
+      token = Base64.getUrlDecoder().decode(value);
+    } catch (IllegalArgumentException e) {
+      return Optional.empty();
+    }
+    if (token.length != PAYLOAD_LENGTH + MAC_LENGTH || token[0] != VERSION) {
+      return Optional.empty();
+    }
+    SigningKey key = verifyingKeys[token[1] & 0xff];
+    if (key == null || !key.verifies(token)) {
+      return Optional.empty();
+    }
+    ByteBuffer payload = ByteBuffer.wrap(token, 2, PAYLOAD_LENGTH - 2);
+    long userId = payload.getLong();
+    long issuedAt = payload.getLong();
+    int epoch = payload.getInt();
+    long age = clock.instant().getEpochSecond() - issuedAt;
+    if (age < 0 || age >= maxAge.toSeconds()) {
+      return Optional.empty();
+    }
+    Principal principal = new Principal(userId, epoch);
+    if (age >= renewAfterSeconds || key != signingKey) {
+      signIn(request, response, principal);
+    }
+    return Optional.of(principal);
+  }
+
+  @Override
+  public void signOut(HttpServletRequest request, HttpServletResponse response) {
+    writeCookie(response, "", Duration.ZERO);
+  }
+
+  String issue(Principal principal, long issuedAtSeconds) {
+    byte[] token = new byte[PAYLOAD_LENGTH + MAC_LENGTH];
+    ByteBuffer.wrap(token)
+        .put(VERSION)
+        .put((byte) signingKey.id())
+        .putLong(principal.userId())
+        .putLong(issuedAtSeconds)
+        .putInt(principal.epoch());
+    signingKey.sign(token);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+  }
+
+  private String cookieValue(HttpServletRequest request) {
+    Cookie[] cookies = request.getCookies();
+    if (cookies == null) {
+      return null;
+    }
+    for (Cookie cookie : cookies) {
+      if (cookieName.equals(cookie.getName())) {
+        return cookie.getValue();
+      }
+    }
+    return null;
+  }
+
+  private void writeCookie(HttpServletResponse response, String value, Duration cookieMaxAge) {
+    ResponseCookie cookie = ResponseCookie.from(cookieName, value)
+        .path("/")
+        .httpOnly(true)
+        .secure(secureCookie)
+        .sameSite("Lax")
+        .maxAge(cookieMaxAge)
+        .build();
+    response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+  }
+
+  private static byte[] decodeSecret(int id, String secret) {
+    if (id < 0 || id > 255) {
+      throw new IllegalStateException("session key ids must be between 0 and 255");
+    }
+    byte[] decoded = Base64.getDecoder().decode(secret);
+    if (decoded.length < MIN_KEY_LENGTH) {
+      throw new IllegalStateException("session key " + id + " must be at least 256 bits");
+    }
+    return decoded;
+  }
+
+  /** A keyed Mac kept as a prototype; each use works on a clone since Mac is not thread-safe. */
+  private static final class SigningKey {
+    private final int id;
+    private final Mac prototype;
+
+    SigningKey(int id, byte[] secret) {
+      this.id = id;
+      try {
+        this.prototype = Mac.getInstance(ALGORITHM);
+        this.prototype.init(new SecretKeySpec(secret, ALGORITHM));
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException(ALGORITHM + " not available", e);
+      }
+    }
+
+    int id() {
+      return id;
+    }
+
+    void sign(byte[] token) {
+      try {
+        Mac mac = mac();
+        mac.update(token, 0, PAYLOAD_LENGTH);
+        mac.doFinal(token, PAYLOAD_LENGTH);
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException("Failed to sign session token", e);
+      }
+    }
+
+    boolean verifies(byte[] token) {
+      Mac mac = mac();
+      mac.update(token, 0, PAYLOAD_LENGTH);
+      byte[] expected = mac.doFinal();
+      int difference = 0;
+      for (int i = 0; i < MAC_LENGTH; i++) {
+        difference |= expected[i] ^ token[PAYLOAD_LENGTH + i];
+      }
+      return difference == 0;
+    }
+
+    private Mac mac() {
+      try {
+        return (Mac) prototype.clone();
+      } catch (CloneNotSupportedException e) {
+        throw new IllegalStateException(ALGORITHM + " does not support clone", e);
+      }
+    }
+  }
+}
@@ -5,12 +5,20 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import java.time.Instant;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 import jakarta.persistence.Table;
 
 @Entity
-@Table(name = "users")
+@Table(
+    name = "users",
+    indexes = @Index(
+        name = "ix_users_session_epoch_changed_at",
+        columnList = "session_epoch_changed_at"
+    )
+)
 public class UserAccount {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -30,6 +38,21 @@ public class UserAccount {
   @Column(columnDefinition = "bytea")
   private byte[] recoverySalt;
 
+  /** {@link RecoveryKdf} spec of the user's recovery codes; null for SHA-256 hashes. */
+  private String recoveryKdf;
+
+  /** Written only by {@link SessionEpochs}, so a stale entity flush cannot roll it back. */
+  @Column(
+      nullable = false,
+      insertable = false,
+      updatable = false,
+      columnDefinition = "integer default 0"
+  )
+  private int sessionEpoch;
+
+  @Column(insertable = false, updatable = false)
+  private Instant sessionEpochChangedAt;
+
   protected UserAccount() {}
 
   public UserAccount(String username, String displayName, byte[] userHandle) {
@@ -73,4 +96,20 @@ public class UserAccount {
   public void setRecoverySalt(byte[] recoverySalt) {
     this.recoverySalt = recoverySalt;
   }
+
+  public String getRecoveryKdf() {
+    return recoveryKdf;
+  }
+
+  public void setRecoveryKdf(String recoveryKdf) {
+    this.recoveryKdf = recoveryKdf;
+  }
+
+  public int getSessionEpoch() {
+    return sessionEpoch;
+  }
+
+  public Instant getSessionEpochChangedAt() {
+    return sessionEpochChangedAt;
+  }
 }
@@ -10,4 +10,34 @@ public interface UserAccountRepository extends JpaRepository<UserAccount, Long>
 
   @Query("select u from UserAccount u where u.userHandle = :userHandle")
   Optional<UserAccount> findByUserHandle(@Param("userHandle") byte[] userHandle);
+
+  @Query("""
+      select new com.example.demo.auth.UserSummary(u.id, u.username, u.displayName, u.userHandle)
+      from UserAccount u
+      where u.username = :username
+      """)
+  Optional<UserSummary> findSummaryByUsername(@Param("username") String username);
+
+  @Query("""
+      select new com.example.demo.auth.UserSummary(u.id, u.username, u.displayName, u.userHandle)
+      from UserAccount u
+      where u.userHandle = :userHandle
+      """)
+  Optional<UserSummary> findSummaryByUserHandle(@Param("userHandle") byte[] userHandle);
+
+  @Query("""
+      select new com.example.demo.auth.UserSummary(u.id, u.username, u.displayName, u.userHandle)
+      from UserAccount u
+      where u.id = :id
+      """)
+  Optional<UserSummary> findSummaryById(@Param("id") Long id);
+
+  @Query("""
+      select new com.example.demo.auth.RecoveryHashParams(u.recoverySalt, u.recoveryKdf)
+      from UserAccount u
+      where u.username = :username
+      """)
+  Optional<RecoveryHashParams> findRecoveryHashParamsByUsername(
+      @Param("username") String username
+  );
 }
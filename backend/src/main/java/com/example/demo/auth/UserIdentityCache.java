@@ -0,0 +1,162 @@
+package com.example.demo.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.yubico.webauthn.data.ByteArray;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.Optional;
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserIdentityCache {
+  private final UserAccountRepository userRepository;
+  private final Cache<String, Optional<UserSummary>> byUsername;
+  private final Cache<ByteArray, Optional<UserSummary>> byUserHandle;
+  private final Cache<Long, UserSummary> byId;
+
+  public UserIdentityCache(
+      UserAccountRepository userRepository,
+      WebAuthnProperties properties,
+      MeterRegistry meterRegistry
+  ) {
+    this.userRepository = userRepository;
+    WebAuthnProperties.UserCache config = properties.userCache();
+    this.byUsername = Caffeine.newBuilder()
+        .maximumSize(config.maximumSize())
+        .expireAfter(new NegativeAwareExpiry<String>(config))
+        .recordStats()
+        .build();
+    this.byUserHandle = Caffeine.newBuilder()
+        .maximumSize(config.maximumSize())
+        .expireAfter(new NegativeAwareExpiry<ByteArray>(config))
+        .recordStats()
+        .build();
+    this.byId = Caffeine.newBuilder()
+        .maximumSize(config.maximumSize())
+        .expireAfterWrite(config.ttl())
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, byUsername, "auth.users.by-username");
+    CaffeineCacheMetrics.monitor(meterRegistry, byUserHandle, "auth.users.by-user-handle");
+    CaffeineCacheMetrics.monitor(meterRegistry, byId, "auth.users.by-id");
+  }
+
+  public Optional<UserSummary> findByUsername(String username) {
+    if (username == null || username.isBlank()) {
+      return Optional.empty();
+    }
+    Optional<UserSummary> user = RequestMemo.computeIfAbsent(
+        "user-by-username",
+        username,
+        () -> byUsername.get(username, key -> remember(userRepository.findSummaryByUsername(key)))
+    );
+    user.ifPresent(found -> RequestMemo.put("user-by-user-handle", found.userHandle(), user));
+    return user;
+  }
+
+  public Optional<UserSummary> findByUserHandle(ByteArray userHandle) {
+    Optional<UserSummary> user = RequestMemo.computeIfAbsent(
+        "user-by-user-handle",
+        userHandle,
+        () -> byUserHandle.get(
+            userHandle,
+            key -> remember(userRepository.findSummaryByUserHandle(key.getBytes()))
+        )
+    );
+    user.ifPresent(found -> RequestMemo.put("user-by-username", found.username(), user));
+    return user;
+  }
+
+  public Optional<UserSummary> findById(Long userId) {
+    if (userId == null) {
+      return Optional.empty();
+    }
+    return RequestMemo.computeIfAbsent(
+        "user-by-id",
+        userId,
+        () -> Optional.ofNullable(byId.get(
+            userId,
+            key -> userRepository.findSummaryById(key).orElse(null)
+        ))
+    );
+  }
+
+  public void evict(UserAccount user) {
+    RequestMemo.forget("user-by-username", user.getUsername());
+    RequestMemo.forget("user-by-user-handle", new ByteArray(user.getUserHandle()));
+    RequestMemo.forget("user-by-id", user.getId());
+    AfterCommit.run(() -> {
+      UserSummary cached = byId.getIfPresent(user.getId());
+      if (cached != null) {
+        byUsername.invalidate(cached.username());
+        byUserHandle.invalidate(cached.userHandle());
+      }
+      byId.invalidate(user.getId());
+      byUsername.invalidate(user.getUsername());
+      byUserHandle.invalidate(new ByteArray(user.getUserHandle()));
+    });
+  }
+
+  /** A user this request just inserted: stale entries go, and the request remembers it. */
+  public void created(UserAccount user) {
+    evict(user);
+    UserSummary summary = UserSummary.from(user);
+    RequestMemo.put("user-by-username", summary.username(), Optional.of(summary));
+    RequestMemo.put("user-by-user-handle", summary.userHandle(), Optional.of(summary));
+    RequestMemo.put("user-by-id", summary.id(), Optional.of(summary));
+  }
+
+  /** Drops what is known about a username, including a negative entry, on this node only. */
+  public void forgetUsername(String username) {
+    RequestMemo.forget("user-by-username", username);
+    byUsername.invalidate(username);
+  }
+
+  void invalidateAll() {
+    byUsername.invalidateAll();
+    byUserHandle.invalidateAll();
+    byId.invalidateAll();
+  }
+
+  private Optional<UserSummary> remember(Optional<UserSummary> summary) {
+    summary.ifPresent(found -> byId.put(found.id(), found));
+    return summary;
+  }
+
+  private static final class NegativeAwareExpiry<K> implements Expiry<K, Optional<UserSummary>> {
+    private final long positiveNanos;
+    private final long negativeNanos;
+
+    NegativeAwareExpiry(WebAuthnProperties.UserCache config) {
+      this.positiveNanos = config.ttl().toNanos();
+      this.negativeNanos = config.negativeTtl().toNanos();
+    }
+
+    @Override
+    public long expireAfterCreate(K key, Optional<UserSummary> value, long currentTime) {
+      return value.isPresent() ? positiveNanos : negativeNanos;
+    }
+
+    @Override
+    public long expireAfterUpdate(
+        K key,
+        Optional<UserSummary> value,
+        long currentTime,
+        long currentDuration
+    ) {
+      return expireAfterCreate(key, value, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(
+        K key,
+        Optional<UserSummary> value,
+        long currentTime,
+        long currentDuration
+    ) {
+      return currentDuration;
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.auth;
+
+import com.yubico.webauthn.data.ByteArray;
+
+public record UserSummary(Long id, String username, String displayName, ByteArray userHandle) {
+  public UserSummary(Long id, String username, String displayName, byte[] userHandle) {
+    this(id, username, displayName, new ByteArray(userHandle));
+  }
+
+  public static UserSummary from(UserAccount user) {
+    return new UserSummary(
+        user.getId(),
+        user.getUsername(),
+        user.getDisplayName(),
+        new ByteArray(user.getUserHandle())
+    );
+  }
+}
@@ -0,0 +1,92 @@
+package com.example.demo.auth;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Streams {@code jdk.VirtualThreadPinned} JFR events while the app runs on virtual threads. A
+ * virtual thread that blocks inside {@code synchronized} (a contended SecureRandom, a lazy
+ * Hibernate load, a driver lock) holds its carrier for the whole wait. Each pinning site is
+ * logged once with its stack, and every event is counted.
+ */
+@Component
+@ConditionalOnProperty(prefix = "spring.threads.virtual", name = "enabled", havingValue = "true")
+public class VirtualThreadPinMonitor {
+  private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinMonitor.class);
+  private static final String EVENT = "jdk.VirtualThreadPinned";
+  private static final int LOGGED_FRAMES = 12;
+
+  private final Duration threshold;
+  private final Counter pinned;
+  private final Set<String> reportedSites = ConcurrentHashMap.newKeySet();
+  private RecordingStream stream;
+
+  public VirtualThreadPinMonitor(
+      @Value("${app.webauthn.pinMonitor.threshold:20ms}") Duration threshold,
+      MeterRegistry meterRegistry
+  ) {
+    this.threshold = threshold;
+    this.pinned = Counter.builder("jvm.threads.virtual.pinned").register(meterRegistry);
+  }
+
+  @PostConstruct
+  void start() {
+    stream = new RecordingStream();
+    stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+    stream.onEvent(EVENT, this::onPinned);
+    stream.startAsync();
+  }
+
+  @PreDestroy
+  void stop() {
+    if (stream != null) {
+      stream.close();
+    }
+  }
+
+  private void onPinned(RecordedEvent event) {
+    pinned.increment();
+    if (event.getStackTrace() == null) {
+      return;
+    }
+    List<RecordedFrame> frames = event.getStackTrace().getFrames();
+    String site = frames.stream()
+        .filter(RecordedFrame::isJavaFrame)
+        .map(VirtualThreadPinMonitor::describe)
+        .filter(frame -> frame.startsWith("com.example."))
+        .findFirst()
+        .orElseGet(() -> frames.isEmpty() ? "unknown" : describe(frames.get(0)));
+    if (!reportedSites.add(site)) {
+      return;
+    }
+    StringBuilder stack = new StringBuilder();
+    frames.stream()
+        .limit(LOGGED_FRAMES)
+        .forEach(frame -> stack.append("\n\tat ").append(describe(frame)));
+    log.warn(
+        "Virtual thread pinned for {} ms at {}{}",
+        event.getDuration().toMillis(),
+        site,
+        stack
+    );
+  }
+
+  private static String describe(RecordedFrame frame) {
+    return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+        + ":" + frame.getLineNumber();
+  }
+}
@@ -9,9 +9,11 @@ import java.util.Optional;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @Configuration
 @EnableConfigurationProperties(WebAuthnProperties.class)
+@EnableScheduling
 public class WebAuthnConfig {
 
   @Bean
@@ -3,22 +3,54 @@ package com.example.demo.auth;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 public interface WebAuthnCredentialRepository extends JpaRepository<WebAuthnCredential, Long> {
   List<WebAuthnCredential> findByUserId(Long userId);
 
-  @Query("select c from WebAuthnCredential c join fetch c.user where c.credentialId = :credentialId")
-  List<WebAuthnCredential> findAllByCredentialId(@Param("credentialId") byte[] credentialId);
+  @Query("""
+      select new com.example.demo.auth.CredentialDescriptorRow(c.credentialId, c.transports)
+      from WebAuthnCredential c
+      join c.user u
+      where u.userHandle = :userHandle
+      """)
+  List<CredentialDescriptorRow> findDescriptorsByUserHandle(@Param("userHandle") byte[] userHandle);
 
   @Query("""
-      select c from WebAuthnCredential c
+      select new com.example.demo.auth.CredentialKey(
+        c.credentialId, c.publicKeyCose, c.signatureCount, c.backupEligible, c.backupState,
+        u.id, u.username, u.displayName, u.userHandle)
+      from WebAuthnCredential c
       join c.user u
-      where c.credentialId = :credentialId and u.userHandle = :userHandle
+      where c.credentialId = :credentialId
+      """)
+  List<CredentialKey> findKeysByCredentialId(@Param("credentialId") byte[] credentialId);
+
+  @Query("""
+      select new com.example.demo.auth.CredentialState(
+        c.signatureCount, c.backupEligible, c.backupState)
+      from WebAuthnCredential c
+      where c.credentialId = :credentialId
       """)
-  Optional<WebAuthnCredential> findByCredentialIdAndUserHandle(
+  Optional<CredentialState> findStateByCredentialId(@Param("credentialId") byte[] credentialId);
+
+  @Modifying
+  @Query("""
+      update WebAuthnCredential c
+      set c.signatureCount = :signatureCount
+      where c.credentialId = :credentialId and c.signatureCount < :signatureCount
+      """)
+  int advanceSignatureCount(
       @Param("credentialId") byte[] credentialId,
-      @Param("userHandle") byte[] userHandle
+      @Param("signatureCount") long signatureCount
   );
+
+  @Modifying
+  @Query("""
+      delete from WebAuthnCredential c
+      where c.credentialId = :credentialId and c.user.id = :userId
+      """)
+  int deleteOwned(@Param("credentialId") byte[] credentialId, @Param("userId") Long userId);
 }
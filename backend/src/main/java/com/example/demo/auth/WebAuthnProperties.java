@@ -1,7 +1,10 @@
 package com.example.demo.auth;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
 
 @ConfigurationProperties(prefix = "app.webauthn")
 public record WebAuthnProperties(
@@ -9,5 +12,166 @@ public record WebAuthnProperties(
     String rpName,
     List<String> origins,
     boolean allowOriginPort,
-    boolean allowOriginSubdomain
-) {}
+    boolean allowOriginSubdomain,
+    @DefaultValue("raw") OptionsEncoding optionsEncoding,
+    @DefaultValue RequestStore requestStore,
+    @DefaultValue Cluster cluster,
+    @DefaultValue CredentialCache credentialCache,
+    @DefaultValue UserCache userCache,
+    @DefaultValue Entropy entropy,
+    @DefaultValue Bulkhead bulkhead,
+    @DefaultValue SqlAccounting sqlAccounting,
+    @DefaultValue Session session,
+    @DefaultValue Recovery recovery,
+    @DefaultValue Reactive reactive
+) {
+  public enum OptionsEncoding {
+    RAW,
+    STRING
+  }
+
+  public record RequestStore(
+      @DefaultValue("memory") Type type,
+      @DefaultValue("10m") Duration ttl,
+      @DefaultValue("5000") int maxRegistrations,
+      @DefaultValue("20000") int maxAssertions,
+      String sealKey
+  ) {
+    public enum Type {
+      MEMORY,
+      JDBC,
+      SEALED
+    }
+  }
+
+  public record Cluster(
+      String nodeId,
+      Map<String, String> peers,
+      @DefaultValue("forward") MisroutePolicy misroutePolicy,
+      String internalSecret
+  ) {
+    public Cluster {
+      if (nodeId != null && nodeId.indexOf('.') >= 0) {
+        throw new IllegalArgumentException("cluster.nodeId must not contain '.'");
+      }
+      if (nodeId != null && !nodeId.isBlank()
+          && misroutePolicy == MisroutePolicy.FORWARD
+          && (internalSecret == null || internalSecret.isBlank())) {
+        throw new IllegalArgumentException(
+            "cluster.internalSecret is required when cluster.misroutePolicy is forward"
+        );
+      }
+      peers = peers == null ? Map.of() : Map.copyOf(peers);
+    }
+
+    public boolean enabled() {
+      return nodeId != null && !nodeId.isBlank();
+    }
+
+    public enum MisroutePolicy {
+      FORWARD,
+      REDIRECT
+    }
+  }
+
+  /**
+   * {@code ttl} applies to credential keys, which never change; {@code descriptorTtl} to the
+   * per-user credential lists, which change when a passkey is added or removed on any node.
+   */
+  public record CredentialCache(
+      @DefaultValue("10000") long maximumSize,
+      @DefaultValue("30m") Duration ttl,
+      @DefaultValue("5s") Duration descriptorTtl
+  ) {}
+
+  public record Entropy(
+      @DefaultValue("striped") Type type,
+      @DefaultValue("0") int stripes,
+      @DefaultValue("0") int idBufferSize
+  ) {
+    public enum Type {
+      STRIPED,
+      SHARED
+    }
+  }
+
+  /** {@code permits <= 0} means the connection pool's maximum size. */
+  public record Bulkhead(
+      boolean enabled,
+      @DefaultValue("0") int permits,
+      @DefaultValue("200") int maxWaiting,
+      @DefaultValue("2s") Duration acquireTimeout
+  ) {}
+
+  /**
+   * {@code maxAge}, {@code renewAfter} and {@code keys} apply to token sessions;
+   * {@code idleTimeout}, {@code touchInterval} and the near-cache settings to jdbc sessions.
+   */
+  public record Session(
+      @DefaultValue("http") Type type,
+      @DefaultValue("AUTH") String cookieName,
+      @DefaultValue("12h") Duration maxAge,
+      @DefaultValue("1h") Duration renewAfter,
+      boolean secureCookie,
+      @DefaultValue("30s") Duration epochRefreshOverlap,
+      List<Key> keys,
+      @DefaultValue("30m") Duration idleTimeout,
+      @DefaultValue("1m") Duration touchInterval,
+      @DefaultValue("5s") Duration nearCacheTtl,
+      @DefaultValue("100000") long nearCacheSize
+  ) {
+    public Session {
+      keys = keys == null ? List.of() : List.copyOf(keys);
+    }
+
+    public enum Type {
+      HTTP,
+      TOKEN,
+      JDBC
+    }
+
+    /** Base64 HMAC secret of at least 256 bits; the first key signs, all of them verify. */
+    public record Key(int id, String secret) {}
+  }
+
+  /**
+   * {@code kdf} is the {@link RecoveryKdf} spec new codes are hashed with; {@code hashThreads <= 0}
+   * means half the available processors. {@code migrateRows} moves {@code rows} storage into
+   * compact sets at startup; see {@link CompactRecoveryCodeStore}.
+   */
+  public record Recovery(
+      @DefaultValue("rows") Storage storage,
+      @DefaultValue("scrypt:16384:8:1") String kdf,
+      @DefaultValue("0") int hashThreads,
+      @DefaultValue("64") int hashQueue,
+      @DefaultValue("false") boolean migrateRows
+  ) {
+    public enum Storage {
+      /** One recovery_codes row per code. */
+      ROWS,
+      /** One recovery_code_sets row per user with a used-bitmap. */
+      COMPACT
+    }
+  }
+
+  public record SqlAccounting(
+      @DefaultValue("true") boolean enabled,
+      @DefaultValue("5") int repeatThreshold,
+      @DefaultValue("100ms") Duration slowQueryThreshold,
+      @DefaultValue("0.1") double slowQuerySampleRate
+  ) {}
+
+  /** Only read when the {@code reactive} profile is active. */
+  public record Reactive(
+      @DefaultValue("r2dbc:pool:postgresql://db:5432/appdb") String r2dbcUrl,
+      String username,
+      String password,
+      @DefaultValue("0") int verifyThreads
+  ) {}
+
+  public record UserCache(
+      @DefaultValue("10000") long maximumSize,
+      @DefaultValue("30m") Duration ttl,
+      @DefaultValue("30s") Duration negativeTtl
+  ) {}
+}
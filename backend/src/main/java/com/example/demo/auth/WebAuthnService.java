@@ -1,7 +1,9 @@
 package com.example.demo.auth;
 
+import com.example.demo.auth.CeremonyTimers.Ceremony;
+import com.example.demo.auth.CeremonyTimers.Outcome;
+import com.example.demo.auth.CeremonyTimers.Phase;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yubico.webauthn.AssertionRequest;
 import com.yubico.webauthn.FinishAssertionOptions;
 import com.yubico.webauthn.FinishRegistrationOptions;
@@ -17,36 +19,57 @@ import com.yubico.webauthn.data.UserIdentity;
 import com.yubico.webauthn.data.UserVerificationRequirement;
 import com.yubico.webauthn.exception.AssertionFailedException;
 import com.yubico.webauthn.exception.RegistrationFailedException;
-import java.security.SecureRandom;
 import java.util.Optional;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class WebAuthnService {
-  private static final SecureRandom RANDOM = new SecureRandom();
 
   private final RelyingParty relyingParty;
   private final WebAuthnRequestStore requestStore;
   private final UserAccountRepository userRepository;
   private final WebAuthnCredentialRepository credentialRepository;
-  private final ObjectMapper objectMapper;
+  private final CachingCredentialRepository credentialCache;
+  private final UserIdentityCache userCache;
+  private final TransactionTemplate transactionTemplate;
+  private final CredentialUsageWriter usageWriter;
+  private final EntropySource entropy;
+  private final SessionEpochs sessionEpochs;
+  private final CeremonyTimers timers;
 
   public WebAuthnService(
       RelyingParty relyingParty,
       WebAuthnRequestStore requestStore,
       UserAccountRepository userRepository,
       WebAuthnCredentialRepository credentialRepository,
-      ObjectMapper objectMapper
+      CachingCredentialRepository credentialCache,
+      UserIdentityCache userCache,
+      TransactionTemplate transactionTemplate,
+      CredentialUsageWriter usageWriter,
+      EntropySource entropy,
+      SessionEpochs sessionEpochs,
+      CeremonyTimers timers
   ) {
     this.relyingParty = relyingParty;
     this.requestStore = requestStore;
     this.userRepository = userRepository;
     this.credentialRepository = credentialRepository;
-    this.objectMapper = objectMapper;
+    this.credentialCache = credentialCache;
+    this.userCache = userCache;
+    this.transactionTemplate = transactionTemplate;
+    this.usageWriter = usageWriter;
+    this.entropy = entropy;
+    this.sessionEpochs = sessionEpochs;
+    this.timers = timers;
   }
 
-  @Transactional
+  /**
+   * The username check reads {@link UserIdentityCache}, whose negative entries can hide a user
+   * registered on another node moments ago. The insert's unique constraint is the real check: on
+   * a conflict the cached entry is dropped and the existing user is resolved afresh.
+   */
   public StartResponse startRegistration(
       String username,
       String displayName,
@@ -59,36 +82,26 @@ public class WebAuthnService {
         ? username
         : displayName;
 
-    UserAccount user = userRepository.findByUsername(username).orElse(null);
-    if (user != null) {
-      if (sessionUserId.isEmpty() || !user.getId().equals(sessionUserId.get())) {
-        throw new IllegalStateException("User already exists");
-      }
-    } else {
-      user = new UserAccount(username, finalDisplayName, randomBytes(32));
-      userRepository.save(user);
+    UserSummary user = userCache.findByUsername(username).orElse(null);
+    boolean created = false;
+    if (user == null) {
+      user = createUser(username, finalDisplayName).orElse(null);
+      created = user != null;
+    }
+    if (user == null) {
+      userCache.forgetUsername(username);
+      user = userCache.findByUsername(username)
+          .orElseThrow(() -> new IllegalStateException("User already exists"));
+    }
+    if (!created && (sessionUserId.isEmpty() || !user.id().equals(sessionUserId.get()))) {
+      throw new IllegalStateException("User already exists");
     }
 
-    UserIdentity userIdentity = UserIdentity.builder()
-        .name(user.getUsername())
-        .displayName(user.getDisplayName())
-        .id(new ByteArray(user.getUserHandle()))
-        .build();
-
-    AuthenticatorSelectionCriteria selection = AuthenticatorSelectionCriteria.builder()
-        .residentKey(ResidentKeyRequirement.REQUIRED)
-        .userVerification(UserVerificationRequirement.REQUIRED)
-        .build();
-
-    PublicKeyCredentialCreationOptions options = relyingParty.startRegistration(
-        StartRegistrationOptions.builder()
-            .user(userIdentity)
-            .authenticatorSelection(selection)
-            .build()
-    );
+    PublicKeyCredentialCreationOptions options =
+        relyingParty.startRegistration(registrationOptions(user));
 
     WebAuthnRequestStore.PendingRegistration pending =
-        requestStore.createRegistration(options, user.getId(), user.getUsername());
+        requestStore.createRegistration(options, user.id(), user.username());
 
     try {
       return new StartResponse(pending.requestId(), options.toCredentialsCreateJson());
@@ -97,16 +110,43 @@ public class WebAuthnService {
     }
   }
 
-  @Transactional
-  public UserAccount finishRegistration(String requestId, Object credentialPayload) {
-    WebAuthnRequestStore.PendingRegistration pending = requestStore
-        .consumeRegistration(requestId)
-        .orElseThrow(() -> new IllegalArgumentException("Registration request expired"));
+  /** Empty if the username was taken concurrently. */
+  private Optional<UserSummary> createUser(String username, String displayName) {
+    UserAccount created = new UserAccount(username, displayName, entropy.randomBytes(32));
+    try {
+      transactionTemplate.executeWithoutResult(status -> userRepository.saveAndFlush(created));
+    } catch (DataIntegrityViolationException e) {
+      return Optional.empty();
+    }
+    userCache.created(created);
+    return Optional.of(UserSummary.from(created));
+  }
+
+  /**
+   * Records every phase up to the credential write and the ceremony for failures; the successful
+   * ceremony is recorded by {@link SessionService#signIn} so it includes issuing the session.
+   */
+  public UserSummary finishRegistration(String requestId, String credentialJson) {
+    long started = System.nanoTime();
+    WebAuthnRequestStore.PendingRegistration pending =
+        requestStore.consumeRegistration(requestId).orElse(null);
+    if (pending == null) {
+      throw timers.failed(Ceremony.REGISTRATION, Phase.STORE_CONSUME, Outcome.EXPIRED,
+          started, started, new IllegalArgumentException("Registration request expired"));
+    }
+    long phase = timers.phase(Ceremony.REGISTRATION, Phase.STORE_CONSUME, started);
 
     PublicKeyCredential<
         com.yubico.webauthn.data.AuthenticatorAttestationResponse,
         com.yubico.webauthn.data.ClientRegistrationExtensionOutputs
-        > credential = parseRegistrationCredential(credentialPayload);
+        > credential;
+    try {
+      credential = parseRegistrationCredential(credentialJson);
+    } catch (IllegalArgumentException e) {
+      throw timers.failed(Ceremony.REGISTRATION, Phase.PARSE, Outcome.INVALID,
+          phase, started, e);
+    }
+    phase = timers.phase(Ceremony.REGISTRATION, Phase.PARSE, phase);
 
     com.yubico.webauthn.RegistrationResult result;
     try {
@@ -117,45 +157,76 @@ public class WebAuthnService {
               .build()
       );
     } catch (RegistrationFailedException e) {
-      throw new IllegalArgumentException("Registration failed", e);
+      throw timers.failed(Ceremony.REGISTRATION, Phase.VERIFY, Outcome.FAILURE,
+          phase, started, new IllegalArgumentException("Registration failed", e));
     }
+    phase = timers.phase(Ceremony.REGISTRATION, Phase.VERIFY, phase);
 
-    UserAccount user = userRepository.findById(pending.userId())
-        .orElseThrow(() -> new IllegalStateException("User not found"));
+    UserSummary user = userCache.findById(pending.userId()).orElse(null);
+    if (user == null) {
+      throw timers.failed(Ceremony.REGISTRATION, Phase.USER_LOOKUP, Outcome.FAILURE,
+          phase, started, new IllegalStateException("User not found"));
+    }
+    phase = timers.phase(Ceremony.REGISTRATION, Phase.USER_LOOKUP, phase);
 
     String transports = JpaCredentialRepository.Transports.join(
         result.getKeyId().getTransports().orElse(null)
     );
 
-    WebAuthnCredential newCredential = new WebAuthnCredential(
-        user,
-        result.getKeyId().getId().getBytes(),
-        result.getPublicKeyCose().getBytes(),
-        result.getSignatureCount(),
-        transports
-    );
-    newCredential.setBackupEligible(result.isBackupEligible());
-    newCredential.setBackupState(result.isBackedUp());
-    newCredential.setAaguid(result.getAaguid().getBytes());
-    credentialRepository.save(newCredential);
+    try {
+      transactionTemplate.executeWithoutResult(status -> {
+        WebAuthnCredential newCredential = new WebAuthnCredential(
+            userRepository.getReferenceById(user.id()),
+            result.getKeyId().getId().getBytes(),
+            result.getPublicKeyCose().getBytes(),
+            result.getSignatureCount(),
+            transports
+        );
+        newCredential.setBackupEligible(result.isBackupEligible());
+        newCredential.setBackupState(result.isBackedUp());
+        newCredential.setAaguid(result.getAaguid().getBytes());
+        credentialRepository.save(newCredential);
+        credentialCache.credentialRegistered(result.getKeyId().getId(), user.userHandle());
+      });
+    } catch (RuntimeException e) {
+      throw timers.failed(Ceremony.REGISTRATION, Phase.CREDENTIAL_WRITE, Outcome.FAILURE,
+          phase, started, e);
+    }
+    timers.phase(Ceremony.REGISTRATION, Phase.CREDENTIAL_WRITE, phase);
 
     return user;
   }
 
+  /**
+   * Removes one of the user's passkeys and, in the same transaction, bumps the session epoch so
+   * sessions that may have been signed in with it end everywhere. False if the user has no such
+   * credential.
+   */
+  public boolean deleteCredential(Long userId, ByteArray credentialId) {
+    UserSummary user = userCache.findById(userId).orElse(null);
+    if (user == null) {
+      return false;
+    }
+    Boolean deleted = transactionTemplate.execute(status -> {
+      if (credentialRepository.deleteOwned(credentialId.getBytes(), userId) == 0) {
+        return false;
+      }
+      credentialCache.credentialRemoved(credentialId, user.userHandle());
+      sessionEpochs.bump(userId);
+      return true;
+    });
+    return Boolean.TRUE.equals(deleted);
+  }
+
   public StartResponse startAuthentication(Optional<String> username) {
     if (username.isPresent()) {
       String value = username.get();
-      if (value.isBlank() || userRepository.findByUsername(value).isEmpty()) {
+      if (value.isBlank() || userCache.findByUsername(value).isEmpty()) {
         throw new IllegalArgumentException("Unknown user");
       }
     }
 
-    AssertionRequest request = relyingParty.startAssertion(
-        StartAssertionOptions.builder()
-            .username(username)
-            .userVerification(UserVerificationRequirement.REQUIRED)
-            .build()
-    );
+    AssertionRequest request = relyingParty.startAssertion(assertionOptions(username));
 
     WebAuthnRequestStore.PendingAssertion pending =
         requestStore.createAssertion(request, username);
@@ -167,16 +238,28 @@ public class WebAuthnService {
     }
   }
 
-  @Transactional
-  public UserAccount finishAuthentication(String requestId, Object credentialPayload) {
-    WebAuthnRequestStore.PendingAssertion pending = requestStore
-        .consumeAssertion(requestId)
-        .orElseThrow(() -> new IllegalArgumentException("Assertion request expired"));
+  /** Timed like {@link #finishRegistration}: success is recorded once the session is issued. */
+  public UserSummary finishAuthentication(String requestId, String credentialJson) {
+    long started = System.nanoTime();
+    WebAuthnRequestStore.PendingAssertion pending =
+        requestStore.consumeAssertion(requestId).orElse(null);
+    if (pending == null) {
+      throw timers.failed(Ceremony.AUTHENTICATION, Phase.STORE_CONSUME, Outcome.EXPIRED,
+          started, started, new IllegalArgumentException("Assertion request expired"));
+    }
+    long phase = timers.phase(Ceremony.AUTHENTICATION, Phase.STORE_CONSUME, started);
 
     PublicKeyCredential<
         com.yubico.webauthn.data.AuthenticatorAssertionResponse,
         com.yubico.webauthn.data.ClientAssertionExtensionOutputs
-        > credential = parseAssertionCredential(credentialPayload);
+        > credential;
+    try {
+      credential = parseAssertionCredential(credentialJson);
+    } catch (IllegalArgumentException e) {
+      throw timers.failed(Ceremony.AUTHENTICATION, Phase.PARSE, Outcome.INVALID,
+          phase, started, e);
+    }
+    phase = timers.phase(Ceremony.AUTHENTICATION, Phase.PARSE, phase);
 
     com.yubico.webauthn.AssertionResult result;
     try {
@@ -187,60 +270,94 @@ public class WebAuthnService {
               .build()
       );
     } catch (AssertionFailedException e) {
-      throw new IllegalArgumentException("Assertion failed", e);
+      throw timers.failed(Ceremony.AUTHENTICATION, Phase.VERIFY, Outcome.FAILURE,
+          phase, started, new IllegalArgumentException("Assertion failed", e));
     }
 
     if (!result.isSuccess()) {
-      throw new IllegalArgumentException("Assertion failed");
+      throw timers.failed(Ceremony.AUTHENTICATION, Phase.VERIFY, Outcome.FAILURE,
+          phase, started, new IllegalArgumentException("Assertion failed"));
     }
+    phase = timers.phase(Ceremony.AUTHENTICATION, Phase.VERIFY, phase);
 
-    UserAccount user = userRepository.findByUsername(result.getUsername())
-        .orElseThrow(() -> new IllegalStateException("User not found"));
+    UserSummary user = userCache.findByUsername(result.getUsername()).orElse(null);
+    if (user == null) {
+      throw timers.failed(Ceremony.AUTHENTICATION, Phase.USER_LOOKUP, Outcome.FAILURE,
+          phase, started, new IllegalStateException("User not found"));
+    }
+    phase = timers.phase(Ceremony.AUTHENTICATION, Phase.USER_LOOKUP, phase);
 
-    credentialRepository.findByCredentialIdAndUserHandle(
-            result.getCredential().getCredentialId().getBytes(),
-            result.getCredential().getUserHandle().getBytes())
-        .ifPresent(found -> {
-          found.setSignatureCount(result.getSignatureCount());
-          found.setBackupEligible(result.isBackupEligible());
-          found.setBackupState(result.isBackedUp());
-          credentialRepository.save(found);
-        });
+    int rowsUpdated;
+    try {
+      rowsUpdated = usageWriter.recordUsage(
+          result.getCredential(),
+          result.getSignatureCount(),
+          result.isBackupEligible(),
+          result.isBackedUp()
+      );
+    } catch (RuntimeException e) {
+      throw timers.failed(Ceremony.AUTHENTICATION, Phase.COUNTER_UPDATE, Outcome.FAILURE,
+          phase, started, e);
+    }
+    if (result.getSignatureCount() > 0 && rowsUpdated == 0) {
+      // Another login already reached this counter (a clone or a replay), or the passkey was
+      // deleted after it was looked up.
+      throw timers.failed(Ceremony.AUTHENTICATION, Phase.COUNTER_UPDATE, Outcome.FAILURE,
+          phase, started, new IllegalArgumentException("Assertion failed"));
+    }
+    timers.phase(Ceremony.AUTHENTICATION, Phase.COUNTER_UPDATE, phase);
 
     return user;
   }
 
-  private byte[] randomBytes(int size) {
-    byte[] bytes = new byte[size];
-    RANDOM.nextBytes(bytes);
-    return bytes;
+  static StartRegistrationOptions registrationOptions(UserSummary user) {
+    UserIdentity userIdentity = UserIdentity.builder()
+        .name(user.username())
+        .displayName(user.displayName())
+        .id(user.userHandle())
+        .build();
+
+    AuthenticatorSelectionCriteria selection = AuthenticatorSelectionCriteria.builder()
+        .residentKey(ResidentKeyRequirement.REQUIRED)
+        .userVerification(UserVerificationRequirement.REQUIRED)
+        .build();
+
+    return StartRegistrationOptions.builder()
+        .user(userIdentity)
+        .authenticatorSelection(selection)
+        .build();
+  }
+
+  static StartAssertionOptions assertionOptions(Optional<String> username) {
+    return StartAssertionOptions.builder()
+        .username(username)
+        .userVerification(UserVerificationRequirement.REQUIRED)
+        .build();
   }
 
-  private PublicKeyCredential<
+  static PublicKeyCredential<
       com.yubico.webauthn.data.AuthenticatorAttestationResponse,
       com.yubico.webauthn.data.ClientRegistrationExtensionOutputs
-      > parseRegistrationCredential(Object credentialPayload) {
-    if (credentialPayload == null) {
+      > parseRegistrationCredential(String credentialJson) {
+    if (credentialJson == null) {
       throw new IllegalArgumentException("Missing attestation response");
     }
     try {
-      String json = objectMapper.writeValueAsString(credentialPayload);
-      return PublicKeyCredential.parseRegistrationResponseJson(json);
+      return PublicKeyCredential.parseRegistrationResponseJson(credentialJson);
     } catch (Exception e) {
       throw new IllegalArgumentException("Invalid attestation response", e);
     }
   }
 
-  private PublicKeyCredential<
+  static PublicKeyCredential<
       com.yubico.webauthn.data.AuthenticatorAssertionResponse,
       com.yubico.webauthn.data.ClientAssertionExtensionOutputs
-      > parseAssertionCredential(Object credentialPayload) {
-    if (credentialPayload == null) {
+      > parseAssertionCredential(String credentialJson) {
+    if (credentialJson == null) {
       throw new IllegalArgumentException("Missing assertion response");
     }
     try {
-      String json = objectMapper.writeValueAsString(credentialPayload);
-      return PublicKeyCredential.parseAssertionResponseJson(json);
+      return PublicKeyCredential.parseAssertionResponseJson(credentialJson);
     } catch (Exception e) {
       throw new IllegalArgumentException("Invalid assertion response", e);
     }
@@ -0,0 +1,118 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.yubico.webauthn.RegisteredCredential;
+import com.yubico.webauthn.data.ByteArray;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@SpringBootTest(properties = "app.webauthn.credentialCache.descriptorTtl=200ms")
+class CachingCredentialRepositoryTests {
+  @Autowired
+  private CachingCredentialRepository credentialCache;
+
+  @Autowired
+  private UserAccountRepository userRepository;
+
+  @Autowired
+  private WebAuthnCredentialRepository credentialRepository;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private UserAccount user;
+
+  @BeforeEach
+  void setUp() {
+    String username = "cache-" + UUID.randomUUID();
+    user = userRepository.save(
+        new UserAccount(username, username, UUID.randomUUID().toString().getBytes())
+    );
+  }
+
+  @Test
+  void counterAndFlagsAreReadFreshWhileTheKeyIsCached() {
+    ByteArray credentialId = saveCredential(5);
+    assertEquals(5, lookup(credentialId).getSignatureCount());
+    long hits = credentialCache.credentialStats().hitCount();
+
+    jdbcTemplate.update(
+        "update webauthn_credentials set signature_count = 9, backup_state = true"
+            + " where credential_id = ?",
+        (Object) credentialId.getBytes()
+    );
+    RegisteredCredential current = lookup(credentialId);
+    assertEquals(9, current.getSignatureCount());
+    assertEquals(Optional.of(true), current.isBackedUp());
+    assertEquals(hits + 1, credentialCache.credentialStats().hitCount());
+  }
+
+  @Test
+  void credentialDeletedOnAnotherNodeStopsResolving() {
+    ByteArray credentialId = saveCredential(0);
+    lookup(credentialId);
+
+    jdbcTemplate.update(
+        "delete from webauthn_credentials where credential_id = ?",
+        (Object) credentialId.getBytes()
+    );
+    assertTrue(credentialCache.lookupAll(credentialId).isEmpty());
+  }
+
+  @Test
+  void unknownCredentialIsNotCached() {
+    ByteArray credentialId = new ByteArray(UUID.randomUUID().toString().getBytes());
+    assertTrue(credentialCache.lookupAll(credentialId).isEmpty());
+
+    credentialRepository.save(new WebAuthnCredential(
+        user, credentialId.getBytes(), new byte[] {1}, 0, null
+    ));
+    assertEquals(1, credentialCache.lookupAll(credentialId).size());
+  }
+
+  @Test
+  void registrationOnThisNodeInvalidatesDescriptorsAtCommit() {
+    saveCredential(0);
+    assertEquals(1, credentialCache.getCredentialIdsForUsername(user.getUsername()).size());
+
+    transactionTemplate.executeWithoutResult(status -> {
+      ByteArray credentialId = saveCredential(0);
+      credentialCache.credentialRegistered(credentialId, new ByteArray(user.getUserHandle()));
+    });
+    assertEquals(2, credentialCache.getCredentialIdsForUsername(user.getUsername()).size());
+  }
+
+  @Test
+  void registrationOnAnotherNodeShowsUpAfterTheDescriptorTtl() throws Exception {
+    saveCredential(0);
+    assertEquals(1, credentialCache.getCredentialIdsForUsername(user.getUsername()).size());
+
+    saveCredential(0);
+    assertEquals(1, credentialCache.getCredentialIdsForUsername(user.getUsername()).size());
+    Thread.sleep(300);
+    assertEquals(2, credentialCache.getCredentialIdsForUsername(user.getUsername()).size());
+  }
+
+  private ByteArray saveCredential(long signatureCount) {
+    byte[] credentialId = UUID.randomUUID().toString().getBytes();
+    credentialRepository.save(
+        new WebAuthnCredential(user, credentialId, new byte[] {1}, signatureCount, null)
+    );
+    return new ByteArray(credentialId);
+  }
+
+  private RegisteredCredential lookup(ByteArray credentialId) {
+    return credentialCache.lookupAll(credentialId).iterator().next();
+  }
+}
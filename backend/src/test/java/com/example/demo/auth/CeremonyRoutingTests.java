@@ -0,0 +1,159 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.example.demo.DemoApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.bind.BindException;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.context.ConfigurableApplicationContext;
+
+class CeremonyRoutingTests {
+  private static final ObjectMapper JSON = new ObjectMapper();
+  private static final HttpClient HTTP = HttpClient.newHttpClient();
+
+  private static int portA;
+  private static int portB;
+  private static ConfigurableApplicationContext nodeA;
+  private static ConfigurableApplicationContext nodeB;
+
+  @BeforeAll
+  static void startNodes() throws IOException {
+    portA = freePort();
+    portB = freePort();
+    nodeA = startNode("a", portA, "redirect", "b", portB);
+    nodeB = startNode("b", portB, "forward", "a", portA);
+  }
+
+  @AfterAll
+  static void stopNodes() {
+    if (nodeB != null) {
+      nodeB.close();
+    }
+    if (nodeA != null) {
+      nodeA.close();
+    }
+  }
+
+  @Test
+  void verifyOnForeignNodeIsForwardedToOwner() throws Exception {
+    String requestId = startLogin(portA);
+    assertEquals("a", RequestIds.nodeId(requestId).orElseThrow());
+
+    HttpResponse<String> forwarded = finishLogin(portB, requestId);
+    assertEquals(400, forwarded.statusCode());
+    assertEquals(1, assertionStats(nodeA).consumed());
+    assertEquals(0, assertionStats(nodeB).consumed());
+
+    HttpResponse<String> replayed = finishLogin(portA, requestId);
+    assertEquals(400, replayed.statusCode());
+    assertEquals(1, assertionStats(nodeA).consumed());
+  }
+
+  @Test
+  void verifyOnForeignNodeIsRejectedWithOwnerHint() throws Exception {
+    String requestId = startLogin(portB);
+    long pendingBefore = assertionStats(nodeB).size();
+
+    HttpResponse<String> misdirected = finishLogin(portA, requestId);
+    assertEquals(421, misdirected.statusCode());
+    assertEquals("b", misdirected.headers().firstValue(CeremonyRouter.NODE_HEADER).orElseThrow());
+    assertEquals(pendingBefore, assertionStats(nodeB).size());
+  }
+
+  @Test
+  void internalEndpointRequiresSharedSecret() throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(url(portA, "/internal/webauthn/login/verify"))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString("{\"requestId\":\"a.x\",\"credential\":{}}"))
+        .build();
+    assertEquals(404, HTTP.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+  }
+
+  @Test
+  void forwardingWithoutSharedSecretIsRefusedAtStartup() {
+    assertThrows(BindException.class, () -> cluster("forward"));
+    assertDoesNotThrow(() -> cluster("redirect"));
+  }
+
+  private static WebAuthnProperties.Cluster cluster(String misroutePolicy) {
+    return new Binder(new MapConfigurationPropertySource(Map.of(
+        "app.webauthn.cluster.nodeId", "a",
+        "app.webauthn.cluster.misroutePolicy", misroutePolicy,
+        "app.webauthn.cluster.internalSecret", ""
+    ))).bindOrCreate("app.webauthn", WebAuthnProperties.class).cluster();
+  }
+
+  private static ConfigurableApplicationContext startNode(
+      String nodeId,
+      int port,
+      String misroutePolicy,
+      String peerId,
+      int peerPort
+  ) {
+    return new SpringApplicationBuilder(DemoApplication.class)
+        .properties(
+            "server.address=127.0.0.1",
+            "server.port=" + port,
+            "app.webauthn.requestStore.type=memory",
+            "app.webauthn.cluster.nodeId=" + nodeId,
+            "app.webauthn.cluster.misroutePolicy=" + misroutePolicy,
+            "app.webauthn.cluster.internalSecret=routing-test-secret",
+            "app.webauthn.cluster.peers." + peerId + "=http://127.0.0.1:" + peerPort
+        )
+        .run();
+  }
+
+  private static String startLogin(int port) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(url(port, "/api/auth/webauthn/login/options"))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString("{}"))
+        .build();
+    HttpResponse<String> response = HTTP.send(request, HttpResponse.BodyHandlers.ofString());
+    assertEquals(200, response.statusCode());
+    return JSON.readTree(response.body()).get("requestId").asText();
+  }
+
+  private static HttpResponse<String> finishLogin(int port, String requestId) throws Exception {
+    ObjectNode payload = JSON.createObjectNode();
+    payload.put("requestId", requestId);
+    payload.putObject("credential").put("id", "not-a-credential");
+    String body = JSON.writeValueAsString(payload);
+    HttpRequest request = HttpRequest.newBuilder(url(port, "/api/auth/webauthn/login/verify"))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(body))
+        .build();
+    return HTTP.send(request, HttpResponse.BodyHandlers.ofString());
+  }
+
+  private static InMemoryWebAuthnRequestStore.Stats assertionStats(
+      ConfigurableApplicationContext node
+  ) {
+    return node.getBean(InMemoryWebAuthnRequestStore.class).assertionStats();
+  }
+
+  private static URI url(int port, String path) {
+    return URI.create("http://127.0.0.1:" + port + path);
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
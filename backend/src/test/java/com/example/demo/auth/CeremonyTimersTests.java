@@ -0,0 +1,144 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class CeremonyTimersTests {
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private WebAuthnService webAuthnService;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Test
+  void successfulLoginRecordsEveryPhaseAndTheCeremonyAfterSignIn() throws Exception {
+    SoftwareAuthenticator authenticator = SoftwareAuthenticator.forLocalhost();
+    String username = "timers-" + UUID.randomUUID();
+    WebAuthnService.StartResponse registration =
+        webAuthnService.startRegistration(username, null, Optional.empty());
+    webAuthnService.finishRegistration(
+        registration.requestId(),
+        authenticator.register(registration.publicKey())
+    );
+
+    long before = count("authentication", "success");
+    long signInsBefore = phaseCount("authentication", "session-sign-in", "success");
+    WebAuthnService.StartResponse login = webAuthnService.startAuthentication(Optional.empty());
+    String body = "{\"requestId\":\"" + login.requestId() + "\",\"credential\":"
+        + authenticator.authenticate(login.publicKey()) + "}";
+    mockMvc.perform(post("/api/auth/webauthn/login/verify")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(body))
+        .andExpect(status().isOk());
+
+    assertEquals(before + 1, count("authentication", "success"));
+    assertEquals(
+        signInsBefore + 1,
+        phaseCount("authentication", "session-sign-in", "success")
+    );
+    for (String phase : new String[] {
+        "store-consume", "parse", "verify", "user-lookup", "counter-update"
+    }) {
+      assertTrue(phaseTimer("authentication", phase, "success").count() > 0, phase);
+    }
+    assertTrue(phaseTimer("registration", "credential-write", "success").count() > 0);
+  }
+
+  @Test
+  void ceremonyIsNotRecordedAsSuccessUntilASessionIsIssued() {
+    SoftwareAuthenticator authenticator = SoftwareAuthenticator.forLocalhost();
+    WebAuthnService.StartResponse registration = webAuthnService.startRegistration(
+        "timers-unsigned-" + UUID.randomUUID(), null, Optional.empty());
+
+    long before = count("registration", "success");
+    webAuthnService.finishRegistration(
+        registration.requestId(),
+        authenticator.register(registration.publicKey())
+    );
+    assertEquals(before, count("registration", "success"));
+  }
+
+  @Test
+  void failedCredentialWriteIsRecordedAsFailure() {
+    SoftwareAuthenticator authenticator = SoftwareAuthenticator.forLocalhost();
+    String username = "timers-write-" + UUID.randomUUID();
+    WebAuthnService.StartResponse registration =
+        webAuthnService.startRegistration(username, null, Optional.empty());
+    String attestation = authenticator.register(registration.publicKey());
+    // The identity cache still resolves the user, so only the credential insert fails.
+    jdbcTemplate.update("delete from users where username = ?", username);
+
+    long before = count("registration", "failure");
+    long writesBefore = phaseCount("registration", "credential-write", "failure");
+    assertThrows(
+        RuntimeException.class,
+        () -> webAuthnService.finishRegistration(registration.requestId(), attestation)
+    );
+    assertEquals(before + 1, count("registration", "failure"));
+    assertEquals(writesBefore + 1, phaseCount("registration", "credential-write", "failure"));
+  }
+
+  @Test
+  void unknownRequestIsRecordedAsExpired() {
+    long before = count("authentication", "expired");
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> webAuthnService.finishAuthentication("missing-" + UUID.randomUUID(), "{}")
+    );
+
+    assertEquals(before + 1, count("authentication", "expired"));
+    assertEquals(
+        before + 1,
+        phaseTimer("authentication", "store-consume", "expired").count()
+    );
+  }
+
+  private long count(String ceremony, String outcome) {
+    Timer timer = meterRegistry.find(CeremonyTimers.CEREMONY_TIMER)
+        .tag("ceremony", ceremony)
+        .tag("outcome", outcome)
+        .timer();
+    return timer == null ? 0 : timer.count();
+  }
+
+  private long phaseCount(String ceremony, String phase, String outcome) {
+    Timer timer = meterRegistry.find(CeremonyTimers.PHASE_TIMER)
+        .tag("ceremony", ceremony)
+        .tag("phase", phase)
+        .tag("outcome", outcome)
+        .timer();
+    return timer == null ? 0 : timer.count();
+  }
+
+  private Timer phaseTimer(String ceremony, String phase, String outcome) {
+    return meterRegistry.get(CeremonyTimers.PHASE_TIMER)
+        .tag("ceremony", ceremony)
+        .tag("phase", phase)
+        .tag("outcome", outcome)
+        .timer();
+  }
+}
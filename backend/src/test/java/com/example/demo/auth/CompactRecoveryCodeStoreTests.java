@@ -0,0 +1,80 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/** Runs the redemption tests against compact storage and checks the migration of old rows. */
+@SpringBootTest(properties = "app.webauthn.recovery.storage=compact")
+class CompactRecoveryCodeStoreTests extends RecoveryCodeRedemptionTests {
+  @Autowired
+  private CompactRecoveryCodeStore store;
+
+  @Autowired
+  private RecoveryCodeRepository recoveryCodeRepository;
+
+  @Autowired
+  private UserAccountRepository userRepository;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Test
+  void startupLeavesLegacyRowsAlone() {
+    Long userId = userWithLegacyRows("startup-" + UUID.randomUUID(), new byte[16]);
+
+    store.createTable();
+
+    assertEquals(3, legacyRows(userId));
+  }
+
+  @Test
+  void legacyRowsAreMovedIntoOneSetWithUsedCodesMarked() {
+    String username = "migrate-" + UUID.randomUUID();
+    byte[] salt = new byte[16];
+    Long userId = userWithLegacyRows(username, salt);
+
+    assertTrue(store.migrateRows() >= 1);
+
+    assertEquals(0, legacyRows(userId));
+    assertEquals(0b010, jdbcTemplate.queryForObject(
+        "select used_mask from recovery_code_sets where user_id = ?",
+        Integer.class,
+        userId
+    ));
+    assertTrue(store.redeem(username, RecoveryKdf.LEGACY.hash(salt, "CCCCCDDDDD")).isEmpty());
+    assertEquals(
+        userId,
+        store.redeem(username, RecoveryKdf.LEGACY.hash(salt, "EEEEEFFFFF")).orElseThrow().id()
+    );
+  }
+
+  /** Three codes in the old one-row-per-code layout; the second one is used. */
+  private Long userWithLegacyRows(String username, byte[] salt) {
+    UserAccount user = new UserAccount(username, username, UUID.randomUUID().toString().getBytes());
+    user.setRecoverySalt(salt);
+    Long userId = userRepository.save(user).getId();
+    for (String code : new String[] {"AAAAABBBBB", "CCCCCDDDDD", "EEEEEFFFFF"}) {
+      RecoveryCode row = new RecoveryCode(
+          userRepository.getReferenceById(userId),
+          RowRecoveryCodeStore.encode(RecoveryKdf.LEGACY.hash(salt, code))
+      );
+      row.setUsed(code.startsWith("C"));
+      recoveryCodeRepository.save(row);
+    }
+    return userId;
+  }
+
+  private int legacyRows(Long userId) {
+    return jdbcTemplate.queryForObject(
+        "select count(*) from recovery_codes where user_id = ?",
+        Integer.class,
+        userId
+    );
+  }
+}
@@ -0,0 +1,84 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.concurrent.FutureTask;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+
+class ConnectionBulkheadTests {
+
+  @Test
+  void closingReleasesThePermitExactlyOnce() throws Exception {
+    ConnectionBulkhead bulkhead = new ConnectionBulkhead(stubDataSource(), 1, 0, Duration.ZERO);
+
+    Connection connection = bulkhead.getConnection();
+    assertEquals(1, bulkhead.inUse());
+    connection.close();
+    connection.close();
+
+    assertEquals(0, bulkhead.inUse());
+    bulkhead.getConnection();
+    assertThrows(ConnectionBulkhead.Rejected.class, bulkhead::getConnection);
+  }
+
+  @Test
+  void rejectsWhenTheWaitQueueIsFull() throws Exception {
+    ConnectionBulkhead bulkhead =
+        new ConnectionBulkhead(stubDataSource(), 1, 0, Duration.ofSeconds(5));
+    bulkhead.getConnection();
+
+    assertThrows(ConnectionBulkhead.Rejected.class, bulkhead::getConnection);
+    assertEquals(1, bulkhead.rejected());
+    assertEquals(0, bulkhead.waiting());
+  }
+
+  @Test
+  void waitersTimeOut() throws Exception {
+    ConnectionBulkhead bulkhead =
+        new ConnectionBulkhead(stubDataSource(), 1, 10, Duration.ofMillis(20));
+    bulkhead.getConnection();
+
+    assertThrows(ConnectionBulkhead.Rejected.class, bulkhead::getConnection);
+    assertEquals(0, bulkhead.waiting());
+  }
+
+  @Test
+  void releasedPermitGoesToTheOldestWaiterNotANewArrival() throws Exception {
+    ConnectionBulkhead bulkhead =
+        new ConnectionBulkhead(stubDataSource(), 1, 10, Duration.ofSeconds(1));
+    Connection held = bulkhead.getConnection();
+
+    FutureTask<Connection> oldest = new FutureTask<>(bulkhead::getConnection);
+    Thread waiter = new Thread(oldest);
+    waiter.start();
+    while (waiter.getState() != Thread.State.TIMED_WAITING) {
+      Thread.onSpinWait();
+    }
+
+    held.close();
+    assertThrows(ConnectionBulkhead.Rejected.class, bulkhead::getConnection);
+    assertNotNull(oldest.get());
+  }
+
+  private static DataSource stubDataSource() {
+    return (DataSource) Proxy.newProxyInstance(
+        DataSource.class.getClassLoader(),
+        new Class<?>[] {DataSource.class},
+        (proxy, method, args) -> "getConnection".equals(method.getName()) ? stubConnection() : null
+    );
+  }
+
+  private static Connection stubConnection() {
+    return (Connection) Proxy.newProxyInstance(
+        Connection.class.getClassLoader(),
+        new Class<?>[] {Connection.class},
+        (proxy, method, args) -> null
+    );
+  }
+}
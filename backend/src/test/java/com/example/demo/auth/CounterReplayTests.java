@@ -0,0 +1,114 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.yubico.webauthn.RegisteredCredential;
+import com.yubico.webauthn.data.ByteArray;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+class CounterReplayTests {
+  @Autowired
+  private WebAuthnService webAuthnService;
+
+  @Autowired
+  private CredentialUsageWriter usageWriter;
+
+  @Autowired
+  private CachingCredentialRepository credentialCache;
+
+  private SoftwareAuthenticator authenticator;
+
+  @BeforeEach
+  void setUp() {
+    authenticator = new SoftwareAuthenticator("localhost", "http://localhost:5173", true);
+    WebAuthnService.StartResponse registration = webAuthnService.startRegistration(
+        "replay-" + UUID.randomUUID(), null, Optional.empty());
+    webAuthnService.finishRegistration(
+        registration.requestId(),
+        authenticator.register(registration.publicKey())
+    );
+  }
+
+  @Test
+  void secondWriteOfTheSameCounterChangesNoRows() {
+    ByteArray credentialId = new ByteArray(
+        Base64.getUrlDecoder().decode(authenticator.credentialIdBase64())
+    );
+    RegisteredCredential stored = credentialCache.lookupAll(credentialId).iterator().next();
+
+    assertEquals(1, usageWriter.recordUsage(stored, 1, true, true));
+    assertEquals(0, usageWriter.recordUsage(stored, 1, true, true));
+  }
+
+  @Test
+  void sameCounterReplayedConcurrentlySignsInOnce() throws Exception {
+    List<WebAuthnService.StartResponse> logins = List.of(
+        webAuthnService.startAuthentication(Optional.empty()),
+        webAuthnService.startAuthentication(Optional.empty())
+    );
+    List<String> assertions = new ArrayList<>();
+    for (WebAuthnService.StartResponse login : logins) {
+      assertions.add(authenticator.authenticate(login.publicKey(), 1));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < logins.size(); i++) {
+        String requestId = logins.get(i).requestId();
+        String assertion = assertions.get(i);
+        results.add(executor.submit(() -> {
+          start.await();
+          try {
+            webAuthnService.finishAuthentication(requestId, assertion);
+            return true;
+          } catch (IllegalArgumentException e) {
+            assertEquals("Assertion failed", e.getMessage());
+            return false;
+          }
+        }));
+      }
+      start.countDown();
+
+      int signedIn = 0;
+      for (Future<Boolean> result : results) {
+        signedIn += result.get() ? 1 : 0;
+      }
+      assertEquals(1, signedIn);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void replayAfterASuccessfulLoginIsRejected() {
+    WebAuthnService.StartResponse first = webAuthnService.startAuthentication(Optional.empty());
+    webAuthnService.finishAuthentication(
+        first.requestId(),
+        authenticator.authenticate(first.publicKey(), 1)
+    );
+
+    WebAuthnService.StartResponse replay = webAuthnService.startAuthentication(Optional.empty());
+    String assertion = authenticator.authenticate(replay.publicKey(), 1);
+    IllegalArgumentException e = assertThrows(
+        IllegalArgumentException.class,
+        () -> webAuthnService.finishAuthentication(replay.requestId(), assertion)
+    );
+    assertEquals("Assertion failed", e.getMessage());
+  }
+}
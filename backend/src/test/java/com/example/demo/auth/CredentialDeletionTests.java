@@ -0,0 +1,124 @@
+package com.example.demo.auth;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class CredentialDeletionTests {
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private WebAuthnService webAuthnService;
+
+  @Autowired
+  private SessionService sessionService;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private SoftwareAuthenticator authenticator;
+  private UserSummary user;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    authenticator = SoftwareAuthenticator.forLocalhost();
+    WebAuthnService.StartResponse registration = webAuthnService.startRegistration(
+        "delete-" + UUID.randomUUID(), null, Optional.empty());
+    user = webAuthnService.finishRegistration(
+        registration.requestId(),
+        authenticator.register(registration.publicKey())
+    );
+    // Puts the credential in this node's cache before it is deleted.
+    login(status().isOk());
+  }
+
+  @Test
+  void deletedPasskeyNoLongerSignsInAndOtherSessionsEnd() throws Exception {
+    MockHttpSession caller = signedIn();
+    MockHttpSession otherDevice = signedIn();
+
+    mockMvc.perform(delete("/api/auth/webauthn/credentials/" + authenticator.credentialIdBase64())
+            .session(caller))
+        .andExpect(status().isOk());
+
+    mockMvc.perform(get("/api/auth/me").session(caller)).andExpect(status().isOk());
+    mockMvc.perform(get("/api/auth/me").session(otherDevice))
+        .andExpect(status().isUnauthorized());
+    login(status().isBadRequest());
+  }
+
+  @Test
+  void passkeyDeletedOnAnotherNodeNoLongerSignsIn() throws Exception {
+    jdbcTemplate.update(
+        "delete from webauthn_credentials where credential_id = ?",
+        (Object) Base64.getUrlDecoder().decode(authenticator.credentialIdBase64())
+    );
+
+    login(status().isBadRequest());
+  }
+
+  @Test
+  void unknownOrForeignCredentialIsNotFound() throws Exception {
+    mockMvc.perform(delete("/api/auth/webauthn/credentials/AAAA").session(signedIn()))
+        .andExpect(status().isNotFound());
+
+    SoftwareAuthenticator other = SoftwareAuthenticator.forLocalhost();
+    WebAuthnService.StartResponse registration = webAuthnService.startRegistration(
+        "delete-other-" + UUID.randomUUID(), null, Optional.empty());
+    webAuthnService.finishRegistration(
+        registration.requestId(),
+        other.register(registration.publicKey())
+    );
+    mockMvc.perform(delete("/api/auth/webauthn/credentials/" + other.credentialIdBase64())
+            .session(signedIn()))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  void deletingRequiresASession() throws Exception {
+    mockMvc.perform(delete("/api/auth/webauthn/credentials/" + authenticator.credentialIdBase64()))
+        .andExpect(status().isUnauthorized());
+  }
+
+  private void login(ResultMatcher expected) throws Exception {
+    WebAuthnService.StartResponse login = webAuthnService.startAuthentication(Optional.empty());
+    String body = "{\"requestId\":\"" + login.requestId() + "\",\"credential\":"
+        + authenticator.authenticate(login.publicKey()) + "}";
+    mockMvc.perform(post("/api/auth/webauthn/login/verify")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(body))
+        .andExpect(expected);
+  }
+
+  private MockHttpSession signedIn() {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    sessionService.signIn(
+        request,
+        new MockHttpServletResponse(),
+        user.id(),
+        CeremonyTimers.Ceremony.AUTHENTICATION,
+        System.nanoTime()
+    );
+    return (MockHttpSession) request.getSession();
+  }
+}
@@ -0,0 +1,147 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Optional;
+import java.util.UUID;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+/**
+ * Pins the statements each endpoint issues, counted by {@link SqlAccountingDataSource} for the
+ * request as a whole. Every test starts from empty caches, so the counts are cold-cache costs.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CredentialQueryCountTests {
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private WebAuthnService webAuthnService;
+
+  @Autowired
+  private SessionService sessionService;
+
+  @Autowired
+  private UserIdentityCache userCache;
+
+  @Autowired
+  private CachingCredentialRepository credentialCache;
+
+  @Autowired
+  private DataSource dataSource;
+
+  private SqlAccountingDataSource accounting;
+  private SoftwareAuthenticator authenticator;
+  private UserSummary user;
+
+  @BeforeEach
+  void setUp() {
+    accounting = SqlAccountingConfig.accounting(dataSource).orElseThrow();
+    authenticator = SoftwareAuthenticator.forLocalhost();
+    String username = "query-count-" + UUID.randomUUID();
+    WebAuthnService.StartResponse registration =
+        webAuthnService.startRegistration(username, null, Optional.empty());
+    user = webAuthnService.finishRegistration(
+        registration.requestId(),
+        authenticator.register(registration.publicKey())
+    );
+    userCache.invalidateAll();
+    credentialCache.invalidateAll();
+  }
+
+  @Test
+  void registerOptionsLooksUpInsertsAndListsOnce() throws Exception {
+    String username = "query-count-new-" + UUID.randomUUID();
+    assertEquals(3, statementsFor(
+        "POST /api/auth/webauthn/register/options",
+        post("/api/auth/webauthn/register/options").content(json("username", username))
+    ));
+  }
+
+  @Test
+  void loginOptionsLoadEachFactOnce() throws Exception {
+    assertEquals(2, statementsFor(
+        "POST /api/auth/webauthn/login/options",
+        post("/api/auth/webauthn/login/options").content(json("username", user.username()))
+    ));
+  }
+
+  @Test
+  void discoverableLoginOptionsTouchNoTables() throws Exception {
+    assertEquals(0, statementsFor(
+        "POST /api/auth/webauthn/login/options",
+        post("/api/auth/webauthn/login/options").content("{}")
+    ));
+  }
+
+  @Test
+  void loginVerifyResolvesUserAndCredentialOnce() throws Exception {
+    assertEquals(3, statementsFor("POST /api/auth/webauthn/login/verify", loginVerify()));
+  }
+
+  @Test
+  void warmLoginVerifyReadsOnlyCredentialStateAndEpoch() throws Exception {
+    statementsFor("POST /api/auth/webauthn/login/verify", loginVerify());
+    assertEquals(2, statementsFor("POST /api/auth/webauthn/login/verify", loginVerify()));
+  }
+
+  @Test
+  void meResolvesUserOnce() throws Exception {
+    assertEquals(1, statementsFor("GET /api/auth/me", get("/api/auth/me").session(signedIn())));
+  }
+
+  @Test
+  void logoutTouchesNoTables() throws Exception {
+    assertEquals(0, statementsFor("POST /api/auth/logout", post("/api/auth/logout")
+        .session(signedIn())));
+  }
+
+  private MockHttpServletRequestBuilder loginVerify() {
+    WebAuthnService.StartResponse login = webAuthnService.startAuthentication(Optional.empty());
+    String body = "{\"requestId\":\"" + login.requestId() + "\",\"credential\":"
+        + authenticator.authenticate(login.publicKey()) + "}";
+    return post("/api/auth/webauthn/login/verify").content(body);
+  }
+
+  private MockHttpSession signedIn() {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    sessionService.signIn(
+        request,
+        new MockHttpServletResponse(),
+        user.id(),
+        CeremonyTimers.Ceremony.AUTHENTICATION,
+        System.nanoTime()
+    );
+    return (MockHttpSession) request.getSession();
+  }
+
+  private long statementsFor(String endpoint, MockHttpServletRequestBuilder request)
+      throws Exception {
+    accounting.rotate();
+    mockMvc.perform(request.contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+    SqlAccountingDataSource.WindowSnapshot window =
+        accounting.report().get(endpoint).currentWindow();
+    assertEquals(1, window.requests());
+    return window.maxStatements();
+  }
+
+  private static String json(String field, String value) {
+    return "{\"" + field + "\":\"" + value + "\"}";
+  }
+}
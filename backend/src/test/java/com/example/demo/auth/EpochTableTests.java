@@ -0,0 +1,67 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class EpochTableTests {
+  @Test
+  void unknownUsersAreAtEpochZero() {
+    assertEquals(0, new EpochTable().get(42));
+  }
+
+  @Test
+  void mergeOnlyMovesForward() {
+    EpochTable table = new EpochTable();
+
+    assertEquals(3, table.merge(7, 3));
+    assertEquals(3, table.merge(7, 2));
+    assertEquals(5, table.merge(7, 5));
+    assertEquals(5, table.get(7));
+    assertEquals(1, table.size());
+  }
+
+  @Test
+  void growingKeepsEveryUser() {
+    EpochTable table = new EpochTable();
+    for (long userId = 1; userId <= 10_000; userId++) {
+      table.merge(userId, (int) (userId % 100) + 1);
+    }
+
+    assertEquals(10_000, table.size());
+    for (long userId = 1; userId <= 10_000; userId++) {
+      assertEquals((int) (userId % 100) + 1, table.get(userId));
+    }
+  }
+
+  @Test
+  void readersNeverSeeAnEpochGoBackwardsWhileTheTableGrows() throws Exception {
+    EpochTable table = new EpochTable();
+    table.merge(1, 1);
+    AtomicBoolean writing = new AtomicBoolean(true);
+    AtomicInteger regressions = new AtomicInteger();
+    Thread reader = new Thread(() -> {
+      int last = 0;
+      while (writing.get()) {
+        int epoch = table.get(1);
+        if (epoch < last || epoch == 0) {
+          regressions.incrementAndGet();
+        }
+        last = epoch;
+      }
+    });
+    reader.start();
+
+    for (int i = 2; i <= 50_000; i++) {
+      table.merge(i, 1);
+      table.merge(1, i);
+    }
+    writing.set(false);
+    reader.join();
+
+    assertEquals(0, regressions.get());
+    assertEquals(50_000, table.get(1));
+  }
+}
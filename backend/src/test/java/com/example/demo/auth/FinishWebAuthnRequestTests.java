@@ -0,0 +1,47 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class FinishWebAuthnRequestTests {
+
+  @Test
+  void slicesCredentialObjectOutOfTheBody() {
+    String credential = "{\"id\":\"AQ\",\"response\":{\"signature\":\"\u00e9\"},\"extra\":[1,{}]}";
+    byte[] body = ("{\"credential\": " + credential + ", \"requestId\":\"n1.abc\"}")
+        .getBytes(StandardCharsets.UTF_8);
+
+    FinishWebAuthnRequest request = FinishWebAuthnRequest.parse(body);
+
+    assertEquals("n1.abc", request.requestId());
+    assertEquals(credential, request.credentialJson());
+  }
+
+  @Test
+  void missingCredentialIsReportedAsAbsent() {
+    FinishWebAuthnRequest request = FinishWebAuthnRequest.parse(
+        "{\"requestId\":\"abc\",\"credential\":null}".getBytes(StandardCharsets.UTF_8)
+    );
+
+    assertFalse(request.hasCredential());
+    assertNull(request.credentialJson());
+  }
+
+  @Test
+  void rejectsMalformedBodies() {
+    assertThrows(IllegalArgumentException.class, () -> FinishWebAuthnRequest.parse(new byte[0]));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> FinishWebAuthnRequest.parse("[1]".getBytes(StandardCharsets.UTF_8))
+    );
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> FinishWebAuthnRequest.parse("{\"requestId\":".getBytes(StandardCharsets.UTF_8))
+    );
+  }
+}
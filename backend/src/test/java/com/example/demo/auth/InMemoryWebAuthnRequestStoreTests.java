@@ -0,0 +1,133 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.demo.auth.InMemoryWebAuthnRequestStore.PendingMap;
+import com.example.demo.auth.InMemoryWebAuthnRequestStore.Stats;
+import com.example.demo.auth.WebAuthnRequestStore.PendingAssertion;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class InMemoryWebAuthnRequestStoreTests {
+  private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
+  @Test
+  void fullMapEvictsOldestEntry() {
+    PendingMap<PendingAssertion> map = new PendingMap<>(2);
+    map.put(pending("a", 60));
+    map.put(pending("b", 60));
+    map.put(pending("c", 60));
+
+    Stats stats = map.stats();
+    assertEquals(2, stats.size());
+    assertEquals(1, stats.evicted());
+    assertTrue(map.consume("a", NOW).isEmpty());
+    assertTrue(map.consume("b", NOW).isPresent());
+    assertTrue(map.consume("c", NOW).isPresent());
+    assertEquals(0, map.stats().size());
+  }
+
+  @Test
+  void concurrentPutsNeverExceedCapacity() throws Exception {
+    int capacity = 16;
+    int writers = 8;
+    int perWriter = 5_000;
+    PendingMap<PendingAssertion> map = new PendingMap<>(capacity);
+    AtomicBoolean running = new AtomicBoolean(true);
+    AtomicInteger largest = new AtomicInteger();
+    Thread sampler = new Thread(() -> {
+      while (running.get()) {
+        largest.accumulateAndGet(map.stats().size(), Math::max);
+      }
+    });
+    sampler.start();
+
+    ExecutorService pool = Executors.newFixedThreadPool(writers);
+    CountDownLatch start = new CountDownLatch(1);
+    for (int w = 0; w < writers; w++) {
+      int writer = w;
+      pool.submit(() -> {
+        start.await();
+        for (int i = 0; i < perWriter; i++) {
+          map.put(pending(writer + "-" + i, 60));
+        }
+        return null;
+      });
+    }
+    start.countDown();
+    pool.shutdown();
+    assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+    running.set(false);
+    sampler.join();
+
+    Stats stats = map.stats();
+    assertTrue(largest.get() <= capacity, "size peaked at " + largest.get());
+    assertEquals(capacity, stats.size());
+    assertEquals(stats.created() - stats.evicted(), stats.size());
+  }
+
+  @Test
+  void sweepRemovesExpiredPrefixOnly() {
+    PendingMap<PendingAssertion> map = new PendingMap<>(8);
+    map.put(pending("old-1", -20));
+    map.put(pending("old-2", -10));
+    map.put(pending("live-1", 10));
+    map.put(pending("live-2", 20));
+
+    map.sweep(NOW);
+    Stats stats = map.stats();
+    assertEquals(2, stats.expired());
+    assertEquals(2, stats.size());
+
+    map.sweep(NOW.plusSeconds(15));
+    assertEquals(3, map.stats().expired());
+    assertTrue(map.consume("live-1", NOW).isEmpty());
+    assertTrue(map.consume("live-2", NOW).isPresent());
+  }
+
+  @Test
+  void sweepSkipsSlotsAlreadyConsumed() {
+    PendingMap<PendingAssertion> map = new PendingMap<>(8);
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      ids.add("r" + i);
+      map.put(pending("r" + i, -1));
+    }
+    assertTrue(map.consume(ids.get(1), NOW.minusSeconds(60)).isPresent());
+
+    map.sweep(NOW);
+    Stats stats = map.stats();
+    assertEquals(3, stats.expired());
+    assertEquals(1, stats.consumed());
+    assertEquals(0, stats.size());
+  }
+
+  @Test
+  void expiredEntryIsNotHandedOut() {
+    PendingMap<PendingAssertion> map = new PendingMap<>(4);
+    map.put(pending("late", -1));
+
+    assertTrue(map.consume("late", NOW).isEmpty());
+    assertEquals(1, map.stats().expired());
+    assertEquals(0, map.stats().size());
+  }
+
+  private static PendingAssertion pending(String requestId, long expiresInSeconds) {
+    return new PendingAssertion(
+        requestId,
+        null,
+        Optional.empty(),
+        NOW.plusSeconds(expiresInSeconds)
+    );
+  }
+}
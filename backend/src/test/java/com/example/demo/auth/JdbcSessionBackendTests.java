@@ -0,0 +1,89 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import jakarta.servlet.http.Cookie;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+@SpringBootTest(properties = {
+    "app.webauthn.session.type=jdbc",
+    "app.webauthn.session.touchInterval=0s",
+    "app.webauthn.session.touchFlushInterval=1h"
+})
+class JdbcSessionBackendTests {
+  @Autowired
+  private JdbcSessionBackend backend;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Test
+  void sessionIsReadBackAndEndsOnSignOut() {
+    String sessionId = signIn(new SessionBackend.Principal(11, 2));
+
+    assertEquals(
+        Optional.of(new SessionBackend.Principal(11, 2)),
+        backend.principal(request(sessionId), new MockHttpServletResponse())
+    );
+    assertEquals(1, rows(sessionId));
+
+    backend.signOut(request(sessionId), new MockHttpServletResponse());
+    assertEquals(0, rows(sessionId));
+    assertTrue(backend.principal(request(sessionId), new MockHttpServletResponse()).isEmpty());
+  }
+
+  @Test
+  void onlyTheHashOfTheSessionIdIsStored() {
+    String sessionId = signIn(new SessionBackend.Principal(13, 0));
+
+    assertEquals(0, storedRows(sessionId));
+    assertEquals(1, storedRows(JdbcSessionBackend.hash(sessionId)));
+  }
+
+  @Test
+  void touchesAreCoalescedUntilFlushed() {
+    String sessionId = signIn(new SessionBackend.Principal(12, 0));
+    backend.flushTouches();
+
+    for (int i = 0; i < 3; i++) {
+      backend.principal(request(sessionId), new MockHttpServletResponse());
+    }
+    assertTrue(backend.pendingTouches() >= 1);
+
+    backend.flushTouches();
+    assertEquals(0, backend.pendingTouches());
+  }
+
+  private String signIn(SessionBackend.Principal principal) {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    backend.signIn(new MockHttpServletRequest(), response, principal);
+    String header = response.getHeader(HttpHeaders.SET_COOKIE);
+    return header.substring("AUTH=".length(), header.indexOf(';'));
+  }
+
+  private static MockHttpServletRequest request(String sessionId) {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setCookies(new Cookie("AUTH", sessionId));
+    return request;
+  }
+
+  private int rows(String sessionId) {
+    return storedRows(JdbcSessionBackend.hash(sessionId));
+  }
+
+  private int storedRows(String storedId) {
+    return jdbcTemplate.queryForObject(
+        "select count(*) from auth_sessions where session_id = ?",
+        Integer.class,
+        storedId
+    );
+  }
+}
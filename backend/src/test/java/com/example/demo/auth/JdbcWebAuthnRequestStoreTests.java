@@ -0,0 +1,112 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.demo.auth.WebAuthnRequestStore.PendingAssertion;
+import com.yubico.webauthn.RelyingParty;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@SpringBootTest(properties = "app.webauthn.requestStore.type=jdbc")
+class JdbcWebAuthnRequestStoreTests {
+  private static final int WORKERS = 8;
+
+  @Autowired
+  private JdbcWebAuthnRequestStore store;
+
+  @Autowired
+  private RelyingParty relyingParty;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Test
+  void assertionIsConsumedOnceAndOnlyAsItsKind() {
+    String requestId = createAssertion("alice").requestId();
+
+    assertTrue(store.consumeRegistration(requestId).isEmpty());
+    Optional<PendingAssertion> consumed = store.consumeAssertion(requestId);
+    assertEquals(Optional.of("alice"), consumed.orElseThrow().username());
+    assertTrue(store.consumeAssertion(requestId).isEmpty());
+    assertEquals(0, rows(requestId));
+  }
+
+  @Test
+  void concurrentConsumesHandOutTheRequestOnce() throws Exception {
+    String requestId = createAssertion("bob").requestId();
+
+    ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Optional<PendingAssertion>>> results = new ArrayList<>();
+    for (int i = 0; i < WORKERS; i++) {
+      results.add(workers.submit(() -> {
+        start.await();
+        return store.consumeAssertion(requestId);
+      }));
+    }
+    start.countDown();
+    workers.shutdown();
+    assertTrue(workers.awaitTermination(1, TimeUnit.MINUTES));
+
+    int handedOut = 0;
+    for (Future<Optional<PendingAssertion>> result : results) {
+      handedOut += result.get().isPresent() ? 1 : 0;
+    }
+    assertEquals(1, handedOut);
+  }
+
+  @Test
+  void expiredRowIsRefusedAndDeleted() {
+    String requestId = createAssertion("carol").requestId();
+    expire(requestId);
+
+    assertTrue(store.consumeAssertion(requestId).isEmpty());
+    assertEquals(0, rows(requestId));
+  }
+
+  @Test
+  void sweepPurgesExpiredRowsOnly() {
+    String expired = createAssertion("dave").requestId();
+    String live = createAssertion("erin").requestId();
+    expire(expired);
+
+    store.sweepExpired();
+    assertEquals(0, rows(expired));
+    assertEquals(1, rows(live));
+    assertTrue(store.consumeAssertion(live).isPresent());
+  }
+
+  private PendingAssertion createAssertion(String username) {
+    return store.createAssertion(
+        relyingParty.startAssertion(WebAuthnService.assertionOptions(Optional.of(username))),
+        Optional.of(username)
+    );
+  }
+
+  private void expire(String requestId) {
+    jdbcTemplate.update(
+        "update webauthn_pending_requests set expires_at = now() - interval '1 second'"
+            + " where request_id = ?",
+        requestId
+    );
+  }
+
+  private int rows(String requestId) {
+    return jdbcTemplate.queryForObject(
+        "select count(*) from webauthn_pending_requests where request_id = ?",
+        Integer.class,
+        requestId
+    );
+  }
+}
@@ -0,0 +1,93 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = {
+    "spring.datasource.hikari.maximum-pool-size=2",
+    "spring.datasource.hikari.connection-timeout=2000"
+})
+class LoginConcurrencyTests {
+  private static final int WORKERS = 16;
+  private static final int LOGINS_PER_WORKER = 25;
+
+  @Autowired
+  private WebAuthnService webAuthnService;
+
+  @Autowired
+  private DataSource dataSource;
+
+  @Test
+  void loginsCompleteWhenWorkersOutnumberPooledConnections() throws Exception {
+    SoftwareAuthenticator authenticator = SoftwareAuthenticator.forLocalhost();
+    String username = "concurrency-" + UUID.randomUUID();
+    WebAuthnService.StartResponse registration =
+        webAuthnService.startRegistration(username, null, Optional.empty());
+    webAuthnService.finishRegistration(
+        registration.requestId(),
+        authenticator.register(registration.publicKey())
+    );
+
+    SqlAccountingDataSource accounting = SqlAccountingConfig.accounting(dataSource).orElseThrow();
+    String unit = "login " + username;
+    LongAdder loginNanos = new LongAdder();
+    ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+    List<Future<Integer>> results = new ArrayList<>();
+    for (int i = 0; i < WORKERS; i++) {
+      results.add(workers.submit(() -> {
+        int completed = 0;
+        for (int n = 0; n < LOGINS_PER_WORKER; n++) {
+          WebAuthnService.StartResponse login = webAuthnService.startAuthentication(Optional.empty());
+          String assertion = authenticator.authenticate(login.publicKey());
+          SqlAccountingDataSource.Usage usage = accounting.begin();
+          long started = System.nanoTime();
+          UserSummary user;
+          try {
+            user = webAuthnService.finishAuthentication(login.requestId(), assertion);
+          } finally {
+            loginNanos.add(System.nanoTime() - started);
+            accounting.end(usage, unit);
+          }
+          if (username.equals(user.username())) {
+            completed++;
+          }
+        }
+        return completed;
+      }));
+    }
+    workers.shutdown();
+    assertTrue(workers.awaitTermination(2, TimeUnit.MINUTES));
+
+    int completed = 0;
+    for (Future<Integer> result : results) {
+      completed += result.get();
+    }
+    assertEquals(WORKERS * LOGINS_PER_WORKER, completed);
+
+    // Of the time a login spends running rather than queueing for a connection, most goes to
+    // parsing and signature verification, which must not hold one. A verify that kept its
+    // connection for the whole ceremony would hold it for nearly all of that time.
+    SqlAccountingDataSource.WindowSnapshot window = accounting.report().get(unit).currentWindow();
+    assertEquals(completed, window.requests());
+    double loginMillis = loginNanos.sum() / 1e6 / completed;
+    double runningMillis = loginMillis - window.acquireMillis();
+    assertTrue(
+        window.holdMillis() < runningMillis / 2,
+        "connection held " + window.holdMillis() + " ms of " + runningMillis + " ms per login"
+    );
+  }
+}
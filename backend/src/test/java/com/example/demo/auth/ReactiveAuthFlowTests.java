@@ -0,0 +1,167 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.example.demo.DemoApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+class ReactiveAuthFlowTests {
+  private static final ObjectMapper JSON = new ObjectMapper();
+
+  private static int port;
+  private static ConfigurableApplicationContext app;
+
+  @BeforeAll
+  static void start() throws IOException {
+    port = freePort();
+    String jdbcUrl = System.getenv()
+        .getOrDefault("SPRING_DATASOURCE_URL", "jdbc:postgresql://db:5432/appdb");
+    app = new SpringApplicationBuilder(DemoApplication.class)
+        .profiles("reactive")
+        .properties(
+            "server.address=127.0.0.1",
+            "server.port=" + port,
+            "app.webauthn.reactive.r2dbcUrl=" + jdbcUrl.replaceFirst("^jdbc:", "r2dbc:")
+        )
+        .run();
+  }
+
+  @AfterAll
+  static void stop() {
+    if (app != null) {
+      app.close();
+    }
+  }
+
+  @Test
+  void registersSignsInAndResolvesSessionUser() throws Exception {
+    HttpClient http = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+    SoftwareAuthenticator authenticator = SoftwareAuthenticator.forLocalhost();
+    String username = "reactive-" + UUID.randomUUID();
+
+    JsonNode registration = post(http, "/api/auth/webauthn/register/options",
+        "{\"username\":\"" + username + "\"}");
+    String attestation = authenticator.register(registration.get("publicKey").toString());
+    JsonNode registered = post(http, "/api/auth/webauthn/register/verify",
+        finishBody(registration, attestation));
+    assertEquals(username, registered.get("username").asText());
+
+    HttpClient fresh = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+    JsonNode login = post(fresh, "/api/auth/webauthn/login/options", "{}");
+    String assertion = authenticator.authenticate(login.get("publicKey").toString());
+    JsonNode signedIn = post(fresh, "/api/auth/webauthn/login/verify",
+        finishBody(login, assertion));
+    assertEquals(registered.get("id").asLong(), signedIn.get("id").asLong());
+
+    HttpResponse<String> me = fresh.send(
+        HttpRequest.newBuilder(url("/api/auth/me")).GET().build(),
+        HttpResponse.BodyHandlers.ofString()
+    );
+    assertEquals(200, me.statusCode());
+    assertEquals(username, JSON.readTree(me.body()).get("username").asText());
+  }
+
+  @Test
+  void revokedSessionIsNoLongerSignedIn() throws Exception {
+    HttpClient http = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+    SoftwareAuthenticator authenticator = SoftwareAuthenticator.forLocalhost();
+    JsonNode registration = post(http, "/api/auth/webauthn/register/options",
+        "{\"username\":\"reactive-revoked-" + UUID.randomUUID() + "\"}");
+    JsonNode registered = post(http, "/api/auth/webauthn/register/verify",
+        finishBody(registration, authenticator.register(registration.get("publicKey").toString())));
+    assertEquals(200, me(http).statusCode());
+
+    app.getBean(SessionEpochs.class).bump(registered.get("id").asLong());
+    assertEquals(401, me(http).statusCode());
+  }
+
+  @Test
+  void deletingAPasskeyKeepsTheCallerAndEndsOtherSessions() throws Exception {
+    HttpClient caller = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+    SoftwareAuthenticator authenticator = SoftwareAuthenticator.forLocalhost();
+    JsonNode registration = post(caller, "/api/auth/webauthn/register/options",
+        "{\"username\":\"reactive-delete-" + UUID.randomUUID() + "\"}");
+    post(caller, "/api/auth/webauthn/register/verify",
+        finishBody(registration, authenticator.register(registration.get("publicKey").toString())));
+
+    HttpClient otherDevice = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+    JsonNode login = post(otherDevice, "/api/auth/webauthn/login/options", "{}");
+    post(otherDevice, "/api/auth/webauthn/login/verify",
+        finishBody(login, authenticator.authenticate(login.get("publicKey").toString())));
+
+    HttpResponse<String> deleted = caller.send(
+        HttpRequest.newBuilder(url("/api/auth/webauthn/credentials/"
+            + authenticator.credentialIdBase64())).DELETE().build(),
+        HttpResponse.BodyHandlers.ofString()
+    );
+    assertEquals(200, deleted.statusCode());
+    assertEquals(200, me(caller).statusCode());
+    assertEquals(401, me(otherDevice).statusCode());
+
+    JsonNode retry = post(otherDevice, "/api/auth/webauthn/login/options", "{}");
+    assertEquals(400, send(otherDevice, "/api/auth/webauthn/login/verify",
+        finishBody(retry, authenticator.authenticate(retry.get("publicKey").toString())))
+        .statusCode());
+  }
+
+  @Test
+  void malformedAssertionIsBadRequest() throws Exception {
+    HttpClient http = HttpClient.newHttpClient();
+    JsonNode login = post(http, "/api/auth/webauthn/login/options", "{}");
+    String body = "{\"requestId\":\"" + login.get("requestId").asText()
+        + "\",\"credential\":{\"id\":\"not-a-credential\"}}";
+
+    assertEquals(400, send(http, "/api/auth/webauthn/login/verify", body).statusCode());
+  }
+
+  private static HttpResponse<String> me(HttpClient http) throws Exception {
+    return http.send(
+        HttpRequest.newBuilder(url("/api/auth/me")).GET().build(),
+        HttpResponse.BodyHandlers.ofString()
+    );
+  }
+
+  private static String finishBody(JsonNode options, String credentialJson) {
+    return "{\"requestId\":\"" + options.get("requestId").asText()
+        + "\",\"credential\":" + credentialJson + "}";
+  }
+
+  private static JsonNode post(HttpClient http, String path, String body) throws Exception {
+    HttpResponse<String> response = send(http, path, body);
+    assertEquals(200, response.statusCode(), response.body());
+    return JSON.readTree(response.body());
+  }
+
+  private static HttpResponse<String> send(HttpClient http, String path, String body)
+      throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(url(path))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(body))
+        .build();
+    return http.send(request, HttpResponse.BodyHandlers.ofString());
+  }
+
+  private static URI url(String path) {
+    return URI.create("http://127.0.0.1:" + port + path);
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
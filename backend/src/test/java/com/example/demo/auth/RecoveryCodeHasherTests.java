@@ -0,0 +1,74 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+class RecoveryCodeHasherTests {
+  private static final byte[] SALT = new byte[16];
+
+  @Test
+  void specsRoundTripAndHashesAreStable() {
+    for (String spec : List.of("sha256", "scrypt:1024:8:1", "argon2id:1024:1:1")) {
+      RecoveryKdf kdf = RecoveryKdf.parse(spec);
+      assertEquals(spec, kdf.spec());
+      byte[] hash = kdf.hash(SALT, "ABCDEFGHJK");
+      assertEquals(RecoveryKdf.HASH_LENGTH, hash.length);
+      assertArrayEquals(hash, RecoveryKdf.parse(spec).hash(SALT, "ABCDEFGHJK"));
+      assertFalse(Arrays.equals(hash, kdf.hash(SALT, "ABCDEFGHJM")));
+    }
+    assertEquals(RecoveryKdf.LEGACY, RecoveryKdf.parse(null));
+    assertThrows(IllegalArgumentException.class, () -> RecoveryKdf.parse("scrypt:1000:8:1"));
+  }
+
+  @Test
+  void sha256AndWeakerParametersAreCheaper() {
+    RecoveryKdf scrypt = RecoveryKdf.parse("scrypt:16384:8:1");
+    assertTrue(RecoveryKdf.LEGACY.cheaperThan(scrypt));
+    assertTrue(RecoveryKdf.LEGACY.cheaperThan(RecoveryKdf.parse("argon2id:19456:2:1")));
+    assertTrue(RecoveryKdf.parse("scrypt:1024:8:1").cheaperThan(scrypt));
+    assertFalse(scrypt.cheaperThan(scrypt));
+    assertFalse(scrypt.cheaperThan(RecoveryKdf.LEGACY));
+    assertFalse(RecoveryKdf.LEGACY.cheaperThan(RecoveryKdf.LEGACY));
+    assertFalse(RecoveryKdf.parse("argon2id:1024:1:1").cheaperThan(scrypt));
+  }
+
+  @Test
+  void fullQueueRejectsInsteadOfWaiting() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    RecoveryCodeHasher hasher = hasher(registry, Map.of(
+        "app.webauthn.recovery.kdf", "scrypt:65536:8:1",
+        "app.webauthn.recovery.hashThreads", "1",
+        "app.webauthn.recovery.hashQueue", "1"
+    ));
+    try {
+      assertThrows(RecoveryCodeHasher.Busy.class, () -> hasher.hashAll(
+          hasher.current(),
+          SALT,
+          List.of("AAAAABBBBB", "CCCCCDDDDD", "EEEEEFFFFF")
+      ));
+      assertEquals(1.0, registry.get("auth.recovery.hash.rejected").counter().count());
+    } finally {
+      hasher.shutdown();
+    }
+  }
+
+  private static RecoveryCodeHasher hasher(
+      SimpleMeterRegistry registry,
+      Map<String, String> values
+  ) {
+    WebAuthnProperties properties = new Binder(new MapConfigurationPropertySource(values))
+        .bindOrCreate("app.webauthn", WebAuthnProperties.class);
+    return new RecoveryCodeHasher(properties, registry);
+  }
+}
@@ -0,0 +1,117 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+class RecoveryCodeRedemptionTests {
+  private static final int WORKERS = 16;
+
+  @Autowired
+  private RecoveryCodeService recoveryCodeService;
+
+  @Autowired
+  private UserAccountRepository userRepository;
+
+  @Autowired
+  private RecoveryCodeHasher hasher;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Test
+  void sameCodeRedeemedConcurrentlySucceedsOnce() throws Exception {
+    String username = "redeem-" + UUID.randomUUID();
+    Long userId = userRepository.save(
+        new UserAccount(username, username, UUID.randomUUID().toString().getBytes())
+    ).getId();
+    String code = recoveryCodeService.generateCodes(userId).get(0);
+
+    ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Optional<UserSummary>>> results = new ArrayList<>();
+    for (int i = 0; i < WORKERS; i++) {
+      results.add(workers.submit(() -> {
+        start.await();
+        return recoveryCodeService.consumeCode(username, code);
+      }));
+    }
+    start.countDown();
+    workers.shutdown();
+    assertTrue(workers.awaitTermination(1, TimeUnit.MINUTES));
+
+    int redeemed = 0;
+    for (Future<Optional<UserSummary>> result : results) {
+      Optional<UserSummary> user = result.get();
+      if (user.isPresent()) {
+        assertEquals(userId, user.get().id());
+        redeemed++;
+      }
+    }
+    assertEquals(1, redeemed);
+    assertTrue(recoveryCodeService.consumeCode(username, code).isEmpty());
+  }
+
+  @Test
+  void unknownUserAndUserWithoutCodesStillHashTheCode() {
+    String withoutCodes = "no-codes-" + UUID.randomUUID();
+    userRepository.save(
+        new UserAccount(withoutCodes, withoutCodes, UUID.randomUUID().toString().getBytes())
+    );
+    long before = codeHashes();
+
+    assertTrue(recoveryCodeService.consumeCode("unknown-" + UUID.randomUUID(), "ABCDE-FGHJK")
+        .isEmpty());
+    assertTrue(recoveryCodeService.consumeCode(withoutCodes, "ABCDE-FGHJK").isEmpty());
+
+    assertEquals(before + 2, codeHashes());
+  }
+
+  @Test
+  void legacyKdfUserPaysForACurrentKdfHashLikeAnUnknownUser() {
+    String legacy = "legacy-kdf-" + UUID.randomUUID();
+    UserAccount user = new UserAccount(legacy, legacy, UUID.randomUUID().toString().getBytes());
+    user.setRecoverySalt(UUID.randomUUID().toString().getBytes());
+    userRepository.save(user);
+
+    double before = hashes(hasher.current());
+    assertTrue(recoveryCodeService.consumeCode("unknown-" + UUID.randomUUID(), "ABCDE-FGHJK")
+        .isEmpty());
+    assertEquals(before + 1, hashes(hasher.current()));
+
+    double legacyBefore = hashes(RecoveryKdf.LEGACY);
+    assertTrue(recoveryCodeService.consumeCode(legacy, "ABCDE-FGHJK").isEmpty());
+    assertEquals(before + 2, hashes(hasher.current()));
+    assertEquals(legacyBefore + 1, hashes(RecoveryKdf.LEGACY));
+  }
+
+  private double hashes(RecoveryKdf kdf) {
+    Counter counter = meterRegistry.find("auth.recovery.hashes").tag("kdf", kdf.spec()).counter();
+    return counter == null ? 0 : counter.count();
+  }
+
+  private long codeHashes() {
+    Timer timer = meterRegistry.find(CeremonyTimers.PHASE_TIMER)
+        .tag("ceremony", "recovery")
+        .tag("phase", "code-hash")
+        .tag("outcome", "success")
+        .timer();
+    return timer == null ? 0 : timer.count();
+  }
+}
@@ -0,0 +1,55 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+class RegistrationConflictTests {
+  @Autowired
+  private WebAuthnService webAuthnService;
+
+  @Autowired
+  private UserIdentityCache userCache;
+
+  @Autowired
+  private UserAccountRepository userRepository;
+
+  @Test
+  void usernameTakenBehindANegativeCacheEntryIsReportedAsExisting() {
+    String username = "conflict-" + UUID.randomUUID();
+    assertTrue(userCache.findByUsername(username).isEmpty());
+    registerOnAnotherNode(username);
+
+    IllegalStateException e = assertThrows(
+        IllegalStateException.class,
+        () -> webAuthnService.startRegistration(username, null, Optional.empty())
+    );
+    assertEquals("User already exists", e.getMessage());
+  }
+
+  @Test
+  void ownerBehindANegativeCacheEntryCanAddAPasskey() {
+    String username = "conflict-owner-" + UUID.randomUUID();
+    assertTrue(userCache.findByUsername(username).isEmpty());
+    Long userId = registerOnAnotherNode(username);
+
+    WebAuthnService.StartResponse started =
+        webAuthnService.startRegistration(username, null, Optional.of(userId));
+    assertNotNull(started.requestId());
+  }
+
+  /** Saves through the repository, which leaves this node's identity cache untouched. */
+  private Long registerOnAnotherNode(String username) {
+    return userRepository.save(
+        new UserAccount(username, username, UUID.randomUUID().toString().getBytes())
+    ).getId();
+  }
+}
@@ -0,0 +1,86 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Optional;
+import java.util.UUID;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+/**
+ * Same endpoints as {@link CredentialQueryCountTests} with every cross-request cache expiring
+ * immediately, so the only thing keeping repeated lookups off the database is {@link RequestMemo}.
+ */
+@SpringBootTest(properties = {
+    "app.webauthn.userCache.ttl=0s",
+    "app.webauthn.userCache.negativeTtl=0s",
+    "app.webauthn.credentialCache.ttl=0s",
+    "app.webauthn.credentialCache.descriptorTtl=0s"
+})
+@AutoConfigureMockMvc
+class RequestMemoQueryCountTests {
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private WebAuthnService webAuthnService;
+
+  @Autowired
+  private DataSource dataSource;
+
+  private SqlAccountingDataSource accounting;
+  private SoftwareAuthenticator authenticator;
+  private String username;
+
+  @BeforeEach
+  void setUp() {
+    accounting = SqlAccountingConfig.accounting(dataSource).orElseThrow();
+    authenticator = SoftwareAuthenticator.forLocalhost();
+    username = "memo-" + UUID.randomUUID();
+    WebAuthnService.StartResponse registration =
+        webAuthnService.startRegistration(username, null, Optional.empty());
+    webAuthnService.finishRegistration(
+        registration.requestId(),
+        authenticator.register(registration.publicKey())
+    );
+  }
+
+  @Test
+  void loginOptionsResolveTheUsernameOnce() throws Exception {
+    assertEquals(2, statementsFor(
+        "POST /api/auth/webauthn/login/options",
+        post("/api/auth/webauthn/login/options").content("{\"username\":\"" + username + "\"}")
+    ));
+  }
+
+  @Test
+  void loginVerifyResolvesTheUserOnceByHandleAndByName() throws Exception {
+    WebAuthnService.StartResponse login = webAuthnService.startAuthentication(Optional.empty());
+    String body = "{\"requestId\":\"" + login.requestId() + "\",\"credential\":"
+        + authenticator.authenticate(login.publicKey()) + "}";
+    assertEquals(3, statementsFor(
+        "POST /api/auth/webauthn/login/verify",
+        post("/api/auth/webauthn/login/verify").content(body)
+    ));
+  }
+
+  private long statementsFor(String endpoint, MockHttpServletRequestBuilder request)
+      throws Exception {
+    accounting.rotate();
+    mockMvc.perform(request.contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+    SqlAccountingDataSource.WindowSnapshot window =
+        accounting.report().get(endpoint).currentWindow();
+    assertEquals(1, window.requests());
+    return window.maxStatements();
+  }
+}
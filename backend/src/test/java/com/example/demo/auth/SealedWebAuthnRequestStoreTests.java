@@ -0,0 +1,158 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.demo.auth.SealedWebAuthnRequestStore.ReplayFilter;
+import com.example.demo.auth.WebAuthnRequestStore.PendingAssertion;
+import com.example.demo.auth.WebAuthnRequestStore.PendingRegistration;
+import com.yubico.webauthn.AssertionRequest;
+import com.yubico.webauthn.data.ByteArray;
+import com.yubico.webauthn.data.PublicKeyCredentialCreationOptions;
+import com.yubico.webauthn.data.PublicKeyCredentialParameters;
+import com.yubico.webauthn.data.PublicKeyCredentialRequestOptions;
+import com.yubico.webauthn.data.RelyingPartyIdentity;
+import com.yubico.webauthn.data.UserIdentity;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+class SealedWebAuthnRequestStoreTests {
+  private static final Instant NOW = Instant.parse("2025-01-01T12:00:00Z");
+  private static final String SEAL_KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+  @Test
+  void assertionRoundTrips() {
+    SealedWebAuthnRequestStore store = store(NOW);
+    PendingAssertion created = store.createAssertion(assertionRequest(), Optional.of("alice"));
+
+    PendingAssertion consumed = store.consumeAssertion(created.requestId()).orElseThrow();
+    assertEquals(Optional.of("alice"), consumed.username());
+    assertEquals(created.request().getPublicKeyCredentialRequestOptions().getChallenge(),
+        consumed.request().getPublicKeyCredentialRequestOptions().getChallenge());
+    assertEquals(created.expiresAt().getEpochSecond(), consumed.expiresAt().getEpochSecond());
+  }
+
+  @Test
+  void registrationRoundTripsOnAnotherNodeWithTheSameKey() {
+    PendingRegistration created = store(NOW).createRegistration(creationOptions(), 7L, "bob");
+
+    PendingRegistration consumed =
+        store(NOW.plusSeconds(5)).consumeRegistration(created.requestId()).orElseThrow();
+    assertEquals(7L, consumed.userId());
+    assertEquals("bob", consumed.username());
+    assertEquals(created.options().getChallenge(), consumed.options().getChallenge());
+  }
+
+  @Test
+  void flippedCiphertextOrTagByteIsRejected() {
+    SealedWebAuthnRequestStore store = store(NOW);
+    byte[] token = decode(store.createAssertion(assertionRequest(), Optional.empty()).requestId());
+
+    for (int index : new int[] {20, token.length - 1}) {
+      byte[] forged = token.clone();
+      forged[index] ^= 1;
+      assertTrue(store.consumeAssertion(encode(forged)).isEmpty(), "byte " + index);
+    }
+  }
+
+  @Test
+  void registrationTokenIsNotAcceptedAsAssertion() {
+    SealedWebAuthnRequestStore store = store(NOW);
+    String requestId = store.createRegistration(creationOptions(), 7L, "bob").requestId();
+
+    assertTrue(store.consumeAssertion(requestId).isEmpty());
+    byte[] relabelled = decode(requestId);
+    relabelled[1] = 2;
+    assertTrue(store.consumeAssertion(encode(relabelled)).isEmpty());
+    assertTrue(store.consumeRegistration(requestId).isPresent());
+  }
+
+  @Test
+  void expiredTokenIsRejected() {
+    String requestId = store(NOW).createAssertion(assertionRequest(), Optional.empty()).requestId();
+
+    assertTrue(store(NOW.plusSeconds(601)).consumeAssertion(requestId).isEmpty());
+  }
+
+  @Test
+  void secondConsumeIsRejected() {
+    SealedWebAuthnRequestStore store = store(NOW);
+    String requestId = store.createAssertion(assertionRequest(), Optional.empty()).requestId();
+
+    assertTrue(store.consumeAssertion(requestId).isPresent());
+    assertTrue(store.consumeAssertion(requestId).isEmpty());
+    assertEquals(1, store.replayFilterSize());
+  }
+
+  @Test
+  void replayFilterDropsABucketOnlyOnceItsMinuteHasPassed() {
+    ReplayFilter filter = new ReplayFilter();
+    Instant lastSecond = NOW.plusSeconds(59);
+    Instant nextMinute = NOW.plusSeconds(60);
+    assertTrue(filter.markUsed(1, lastSecond));
+    assertTrue(filter.markUsed(2, nextMinute));
+
+    filter.sweep(lastSecond);
+    assertEquals(2, filter.size());
+    assertFalse(filter.markUsed(1, lastSecond));
+
+    filter.sweep(nextMinute);
+    assertEquals(1, filter.size());
+    assertFalse(filter.markUsed(2, nextMinute));
+  }
+
+  private static SealedWebAuthnRequestStore store(Instant now) {
+    WebAuthnProperties properties = new Binder(new MapConfigurationPropertySource(Map.of(
+        "app.webauthn.requestStore.type", "sealed",
+        "app.webauthn.requestStore.ttl", "10m",
+        "app.webauthn.requestStore.sealKey", SEAL_KEY
+    ))).bindOrCreate("app.webauthn", WebAuthnProperties.class);
+    return new SealedWebAuthnRequestStore(
+        properties,
+        new SharedEntropySource(),
+        Clock.fixed(now, ZoneOffset.UTC)
+    );
+  }
+
+  private static AssertionRequest assertionRequest() {
+    return AssertionRequest.builder()
+        .publicKeyCredentialRequestOptions(
+            PublicKeyCredentialRequestOptions.builder().challenge(challenge()).build()
+        )
+        .build();
+  }
+
+  private static PublicKeyCredentialCreationOptions creationOptions() {
+    return PublicKeyCredentialCreationOptions.builder()
+        .rp(RelyingPartyIdentity.builder().id("localhost").name("Play").build())
+        .user(UserIdentity.builder()
+            .name("bob")
+            .displayName("bob")
+            .id(new ByteArray(new byte[] {7}))
+            .build())
+        .challenge(challenge())
+        .pubKeyCredParams(List.of(PublicKeyCredentialParameters.ES256))
+        .build();
+  }
+
+  private static ByteArray challenge() {
+    return new ByteArray(new SharedEntropySource().randomBytes(32));
+  }
+
+  private static byte[] decode(String requestId) {
+    return Base64.getUrlDecoder().decode(requestId);
+  }
+
+  private static String encode(byte[] token) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+  }
+}
@@ -0,0 +1,114 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+@SpringBootTest
+class SessionRevocationTests {
+  @Autowired
+  private SessionService sessionService;
+
+  @Autowired
+  private SessionEpochs sessionEpochs;
+
+  @Autowired
+  private RecoveryCodeService recoveryCodeService;
+
+  @Autowired
+  private UserAccountRepository userRepository;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Test
+  void revokingEndsExistingSessionsButNotNewOnes() {
+    Long userId = newUser();
+    MockHttpServletRequest before = signIn(userId);
+    assertEquals(Optional.of(userId), userId(before));
+
+    sessionService.revokeAll(userId);
+    assertTrue(userId(before).isEmpty());
+
+    MockHttpServletRequest after = signIn(userId);
+    assertEquals(Optional.of(userId), userId(after));
+  }
+
+  @Test
+  void bumpFromAnotherNodeIsSeenAfterRefresh() {
+    Long userId = newUser();
+    MockHttpServletRequest session = signIn(userId);
+
+    jdbcTemplate.update("""
+        update users
+        set session_epoch = session_epoch + 1, session_epoch_changed_at = clock_timestamp()
+        where id = ?
+        """, userId);
+    assertEquals(Optional.of(userId), userId(session));
+
+    sessionEpochs.refreshChanged();
+    assertTrue(userId(session).isEmpty());
+  }
+
+  @Test
+  void sessionIssuedAfterABumpThisNodeHasNotSeenIsHonoured() {
+    Long userId = newUser();
+    MockHttpServletRequest older = signIn(userId);
+    jdbcTemplate.update("""
+        update users
+        set session_epoch = session_epoch + 1, session_epoch_changed_at = clock_timestamp()
+        where id = ?
+        """, userId);
+    int bumped = sessionEpochs.current(userId) + 1;
+
+    MockHttpServletRequest issuedElsewhere = new MockHttpServletRequest();
+    issuedElsewhere.getSession().setAttribute(SessionService.SESSION_USER_KEY, userId);
+    issuedElsewhere.getSession().setAttribute(HttpSessionBackend.SESSION_EPOCH_KEY, bumped);
+
+    assertEquals(Optional.of(userId), userId(issuedElsewhere));
+    assertEquals(bumped, sessionEpochs.current(userId));
+    assertTrue(userId(older).isEmpty());
+  }
+
+  @Test
+  void recoverySignInRevokesOtherSessions() {
+    Long userId = newUser();
+    String code = recoveryCodeService.generateCodes(userId).get(0);
+    MockHttpServletRequest other = signIn(userId);
+
+    String username = userRepository.findById(userId).orElseThrow().getUsername();
+    assertTrue(recoveryCodeService.consumeCode(username, code).isPresent());
+    assertTrue(userId(other).isEmpty());
+  }
+
+  private Long newUser() {
+    String username = "revoke-" + UUID.randomUUID();
+    return userRepository.save(
+        new UserAccount(username, username, UUID.randomUUID().toString().getBytes())
+    ).getId();
+  }
+
+  private MockHttpServletRequest signIn(Long userId) {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    sessionService.signIn(
+        request,
+        new MockHttpServletResponse(),
+        userId,
+        CeremonyTimers.Ceremony.AUTHENTICATION,
+        System.nanoTime()
+    );
+    return request;
+  }
+
+  private Optional<Long> userId(MockHttpServletRequest request) {
+    return sessionService.getUserId(request, new MockHttpServletResponse());
+  }
+}
@@ -0,0 +1,288 @@
+package com.example.demo.auth;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ES256 or EdDSA platform authenticator that produces real "none" attestation and assertion
+ * responses in the JSON shape the frontend posts to the verify endpoints. Holds a single
+ * credential.
+ */
+public final class SoftwareAuthenticator {
+  private static final ObjectMapper JSON = new ObjectMapper();
+  private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder B64_DECODER = Base64.getUrlDecoder();
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  private static final int FLAG_UP = 0x01;
+  private static final int FLAG_UV = 0x04;
+  private static final int FLAG_BE = 0x08;
+  private static final int FLAG_BS = 0x10;
+  private static final int FLAG_AT = 0x40;
+
+  private final String rpId;
+  private final String origin;
+  private final boolean countSignatures;
+  private final Algorithm algorithm;
+  private final AtomicInteger signatureCount = new AtomicInteger();
+  private KeyPair keyPair;
+  private byte[] credentialId;
+  private byte[] userHandle;
+
+  /**
+   * @param countSignatures when false the counter stays at zero like a synced passkey, which
+   *     lets the same credential be used from many threads at once
+   */
+  public SoftwareAuthenticator(String rpId, String origin, boolean countSignatures) {
+    this(rpId, origin, countSignatures, Algorithm.ES256);
+  }
+
+  public SoftwareAuthenticator(
+      String rpId,
+      String origin,
+      boolean countSignatures,
+      Algorithm algorithm
+  ) {
+    this.rpId = rpId;
+    this.origin = origin;
+    this.countSignatures = countSignatures;
+    this.algorithm = algorithm;
+  }
+
+  public static SoftwareAuthenticator forLocalhost() {
+    return new SoftwareAuthenticator("localhost", "http://localhost:5173", false);
+  }
+
+  public String credentialIdBase64() {
+    return B64.encodeToString(credentialId);
+  }
+
+  /** Accepts the {@code publicKey} value returned by the register/options endpoint. */
+  public synchronized String register(String creationOptionsJson) {
+    try {
+      JsonNode options = unwrap(JSON.readTree(creationOptionsJson));
+      keyPair = algorithm.generateKeyPair();
+      credentialId = new byte[32];
+      RANDOM.nextBytes(credentialId);
+      userHandle = B64_DECODER.decode(options.path("user").path("id").asText());
+
+      byte[] clientData = clientData("webauthn.create", options.path("challenge").asText());
+      ByteArrayOutputStream authData = new ByteArrayOutputStream();
+      authData.write(sha256(rpId.getBytes(StandardCharsets.UTF_8)));
+      authData.write(FLAG_UP | FLAG_UV | FLAG_BE | FLAG_BS | FLAG_AT);
+      authData.write(ByteBuffer.allocate(4).putInt(signatureCount.get()).array());
+      authData.write(new byte[16]);
+      authData.write(ByteBuffer.allocate(2).putShort((short) credentialId.length).array());
+      authData.write(credentialId);
+      authData.write(algorithm.coseKey(keyPair.getPublic()));
+
+      Cbor attestation = new Cbor();
+      attestation.map(3);
+      attestation.text("fmt").text("none");
+      attestation.text("attStmt").map(0);
+      attestation.text("authData").bytes(authData.toByteArray());
+
+      ObjectNode response = JSON.createObjectNode();
+      response.put("clientDataJSON", B64.encodeToString(clientData));
+      response.put("attestationObject", B64.encodeToString(attestation.toByteArray()));
+      response.putArray("transports").add("internal");
+      return credentialJson(response);
+    } catch (Exception e) {
+      throw new IllegalStateException("Software registration failed", e);
+    }
+  }
+
+  /** Accepts the {@code publicKey} value returned by the login/options endpoint. */
+  public String authenticate(String requestOptionsJson) {
+    return authenticate(
+        requestOptionsJson,
+        countSignatures ? signatureCount.incrementAndGet() : 0
+    );
+  }
+
+  /** Signs with the given counter, as a cloned authenticator replaying an old value would. */
+  public String authenticate(String requestOptionsJson, int counter) {
+    try {
+      JsonNode options = unwrap(JSON.readTree(requestOptionsJson));
+      byte[] clientData = clientData("webauthn.get", options.path("challenge").asText());
+
+      ByteBuffer authData = ByteBuffer.allocate(37);
+      authData.put(sha256(rpId.getBytes(StandardCharsets.UTF_8)));
+      authData.put((byte) (FLAG_UP | FLAG_UV | FLAG_BE | FLAG_BS));
+      authData.putInt(counter);
+
+      Signature signer = Signature.getInstance(algorithm.signatureAlgorithm);
+      signer.initSign(keyPair.getPrivate());
+      signer.update(authData.array());
+      signer.update(sha256(clientData));
+
+      ObjectNode response = JSON.createObjectNode();
+      response.put("clientDataJSON", B64.encodeToString(clientData));
+      response.put("authenticatorData", B64.encodeToString(authData.array()));
+      response.put("signature", B64.encodeToString(signer.sign()));
+      response.put("userHandle", B64.encodeToString(userHandle));
+      return credentialJson(response);
+    } catch (Exception e) {
+      throw new IllegalStateException("Software assertion failed", e);
+    }
+  }
+
+  private static JsonNode unwrap(JsonNode options) {
+    return options.has("publicKey") ? options.get("publicKey") : options;
+  }
+
+  private String credentialJson(ObjectNode response) throws Exception {
+    ObjectNode credential = JSON.createObjectNode();
+    credential.put("type", "public-key");
+    credential.put("id", B64.encodeToString(credentialId));
+    credential.put("rawId", B64.encodeToString(credentialId));
+    credential.set("response", response);
+    credential.putObject("clientExtensionResults");
+    return JSON.writeValueAsString(credential);
+  }
+
+  private byte[] clientData(String type, String challenge) throws Exception {
+    ObjectNode clientData = JSON.createObjectNode();
+    clientData.put("type", type);
+    clientData.put("challenge", challenge);
+    clientData.put("origin", origin);
+    clientData.put("crossOrigin", false);
+    return JSON.writeValueAsBytes(clientData);
+  }
+
+  public enum Algorithm {
+    ES256("SHA256withECDSA") {
+      @Override
+      KeyPair generateKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return generator.generateKeyPair();
+      }
+
+      @Override
+      byte[] coseKey(PublicKey publicKey) {
+        ECPublicKey ec = (ECPublicKey) publicKey;
+        Cbor cose = new Cbor();
+        cose.map(5);
+        cose.integer(1).integer(2);
+        cose.integer(3).integer(-7);
+        cose.integer(-1).integer(1);
+        cose.integer(-2).bytes(unsigned(ec.getW().getAffineX()));
+        cose.integer(-3).bytes(unsigned(ec.getW().getAffineY()));
+        return cose.toByteArray();
+      }
+    },
+    EDDSA("Ed25519") {
+      @Override
+      KeyPair generateKeyPair() throws GeneralSecurityException {
+        return KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+      }
+
+      /** The raw key is the last 32 bytes of the X.509 SubjectPublicKeyInfo encoding. */
+      @Override
+      byte[] coseKey(PublicKey publicKey) {
+        byte[] encoded = publicKey.getEncoded();
+        byte[] raw = new byte[32];
+        System.arraycopy(encoded, encoded.length - 32, raw, 0, 32);
+        Cbor cose = new Cbor();
+        cose.map(4);
+        cose.integer(1).integer(1);
+        cose.integer(3).integer(-8);
+        cose.integer(-1).integer(6);
+        cose.integer(-2).bytes(raw);
+        return cose.toByteArray();
+      }
+    };
+
+    private final String signatureAlgorithm;
+
+    Algorithm(String signatureAlgorithm) {
+      this.signatureAlgorithm = signatureAlgorithm;
+    }
+
+    abstract KeyPair generateKeyPair() throws GeneralSecurityException;
+
+    abstract byte[] coseKey(PublicKey publicKey);
+  }
+
+  private static byte[] unsigned(BigInteger value) {
+    byte[] raw = value.toByteArray();
+    byte[] fixed = new byte[32];
+    int length = Math.min(raw.length, 32);
+    System.arraycopy(raw, raw.length - length, fixed, 32 - length, length);
+    return fixed;
+  }
+
+  private static byte[] sha256(byte[] value) throws GeneralSecurityException {
+    return MessageDigest.getInstance("SHA-256").digest(value);
+  }
+
+  /** Just enough CBOR for attestation objects and COSE keys. */
+  private static final class Cbor {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    Cbor map(int size) {
+      header(5, size);
+      return this;
+    }
+
+    Cbor text(String value) {
+      byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+      header(3, utf8.length);
+      out.writeBytes(utf8);
+      return this;
+    }
+
+    Cbor bytes(byte[] value) {
+      header(2, value.length);
+      out.writeBytes(value);
+      return this;
+    }
+
+    Cbor integer(long value) {
+      if (value >= 0) {
+        header(0, value);
+      } else {
+        header(1, -1 - value);
+      }
+      return this;
+    }
+
+    byte[] toByteArray() {
+      return out.toByteArray();
+    }
+
+    private void header(int major, long length) {
+      int type = major << 5;
+      if (length < 24) {
+        out.write(type | (int) length);
+      } else if (length < 0x100) {
+        out.write(type | 24);
+        out.write((int) length);
+      } else if (length < 0x10000) {
+        out.write(type | 25);
+        out.write((int) (length >> 8));
+        out.write((int) length);
+      } else {
+        out.write(type | 26);
+        out.writeBytes(ByteBuffer.allocate(4).putInt((int) length).array());
+      }
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.HandlerMapping;
+
+class SqlAccountingDataSourceTests {
+  private static final String SELECT_USER = "select * from users where id = ?";
+
+  @Test
+  void unmatchedRequestsShareOneEndpointWhateverTheirMethod() {
+    MockHttpServletRequest scan = new MockHttpServletRequest("XYZZY", "/wp-login.php");
+    assertEquals("unmapped", SqlAccountingConfig.SqlAccountingFilter.endpoint(scan));
+
+    MockHttpServletRequest mapped = new MockHttpServletRequest("GET", "/api/auth/me");
+    mapped.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/auth/me");
+    assertEquals("GET /api/auth/me", SqlAccountingConfig.SqlAccountingFilter.endpoint(mapped));
+  }
+
+  @Test
+  void chargesStatementsToTheBoundRequest() throws Exception {
+    SqlAccountingDataSource accounting =
+        new SqlAccountingDataSource(stubDataSource(), 5, Duration.ofSeconds(1), 0);
+
+    SqlAccountingDataSource.Usage usage = accounting.begin();
+    try (Connection connection = accounting.getConnection()) {
+      for (int i = 0; i < 3; i++) {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_USER)) {
+          statement.executeQuery();
+        }
+      }
+    }
+    accounting.end(usage, "GET /api/auth/me");
+
+    SqlAccountingDataSource.WindowSnapshot window =
+        accounting.report().get("GET /api/auth/me").currentWindow();
+    assertEquals(1, window.requests());
+    assertEquals(3.0, window.statements());
+    assertEquals(1.0, window.connections());
+    assertEquals(0, window.repeatedSqlRequests());
+  }
+
+  @Test
+  void flagsTheSameStatementRepeatedWithinOneRequest() throws Exception {
+    SqlAccountingDataSource accounting =
+        new SqlAccountingDataSource(stubDataSource(), 5, Duration.ofSeconds(1), 0);
+
+    SqlAccountingDataSource.Usage usage = accounting.begin();
+    try (Connection connection = accounting.getConnection()) {
+      for (int i = 0; i < 6; i++) {
+        connection.prepareStatement(SELECT_USER).executeQuery();
+      }
+    }
+    accounting.end(usage, "POST /api/auth/webauthn/login/verify");
+
+    SqlAccountingDataSource.EndpointReport report =
+        accounting.report().get("POST /api/auth/webauthn/login/verify");
+    assertEquals(1, report.currentWindow().repeatedSqlRequests());
+    assertEquals(List.of(SELECT_USER), report.repeatedStatements());
+    assertEquals(1, accounting.repeatedUnits());
+  }
+
+  @Test
+  void unboundWorkIsChargedPerConnectionAndRotates() throws Exception {
+    SqlAccountingDataSource accounting =
+        new SqlAccountingDataSource(stubDataSource(), 5, Duration.ZERO, 0);
+
+    try (Connection connection = accounting.getConnection()) {
+      connection.createStatement().executeUpdate("delete from webauthn_requests");
+    }
+    accounting.rotate();
+
+    SqlAccountingDataSource.EndpointReport report =
+        accounting.report().get(SqlAccountingDataSource.BACKGROUND);
+    assertEquals(1, report.lastWindow().requests());
+    assertEquals(0, report.currentWindow().requests());
+    assertTrue(accounting.slowStatements() >= 1);
+  }
+
+  private static DataSource stubDataSource() {
+    return (DataSource) Proxy.newProxyInstance(
+        DataSource.class.getClassLoader(),
+        new Class<?>[] {DataSource.class},
+        (proxy, method, args) -> "getConnection".equals(method.getName()) ? stubConnection() : null
+    );
+  }
+
+  private static Connection stubConnection() {
+    return (Connection) Proxy.newProxyInstance(
+        Connection.class.getClassLoader(),
+        new Class<?>[] {Connection.class},
+        (proxy, method, args) -> switch (method.getName()) {
+          case "prepareStatement", "createStatement" -> stub(method.getReturnType());
+          default -> null;
+        }
+    );
+  }
+
+  private static Object stub(Class<?> type) {
+    return Proxy.newProxyInstance(
+        type.getClassLoader(),
+        new Class<?>[] {type},
+        (proxy, method, args) -> method.getReturnType() == int.class ? 0 : null
+    );
+  }
+}
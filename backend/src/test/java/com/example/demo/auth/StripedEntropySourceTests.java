@@ -0,0 +1,122 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+class StripedEntropySourceTests {
+  @Test
+  void stripeCountIsRoundedUpToAPowerOfTwo() {
+    assertEquals(8, source(Map.of("entropy.stripes", "5")).stripeCount());
+    assertEquals(1, source(Map.of("entropy.stripes", "1")).stripeCount());
+  }
+
+  @Test
+  void consecutiveThreadIdsSpreadEvenlyOverStripes() {
+    StripedEntropySource source = source(Map.of("entropy.stripes", "8"));
+    int[] hits = new int[source.stripeCount()];
+    for (long threadId = 1; threadId <= 1024; threadId++) {
+      hits[source.stripeIndex(threadId)]++;
+    }
+    for (int count : hits) {
+      assertTrue(count >= 96 && count <= 160, "stripe hit " + count + " times of 1024");
+    }
+  }
+
+  @Test
+  void idsComeFromTheBufferUntilItDrainsThenInline() {
+    MeterRegistry registry = new SimpleMeterRegistry();
+    StripedEntropySource source = new StripedEntropySource(
+        new SecureRandom[] {new SecureRandom()}, 4, registry);
+
+    Set<String> ids = new HashSet<>();
+    for (int i = 0; i < 5; i++) {
+      ids.add(source.randomId());
+    }
+    assertEquals(5, ids.size());
+    assertEquals(4, ids(registry, "buffer"));
+    assertEquals(1, ids(registry, "inline"));
+
+    source.refillIds();
+    assertEquals(4.0, registry.get("webauthn.entropy.id-buffer.size").gauge().value());
+    ids.add(source.randomId());
+    assertEquals(6, ids.size());
+    assertEquals(5, ids(registry, "buffer"));
+  }
+
+  @Test
+  void unbufferedSourceGeneratesInline() {
+    MeterRegistry registry = new SimpleMeterRegistry();
+    StripedEntropySource source = new StripedEntropySource(
+        new SecureRandom[] {new SecureRandom()}, 0, registry);
+
+    assertEquals(43, source.randomId().length());
+    source.refillIds();
+    assertEquals(1, ids(registry, "inline"));
+    assertEquals(0, ids(registry, "buffer"));
+  }
+
+  @Test
+  void reseedSkipsStripesThatCannotReseed() {
+    AtomicInteger reseeded = new AtomicInteger();
+    StripedEntropySource source = new StripedEntropySource(
+        new SecureRandom[] {
+            unsupported(), reseedable(reseeded), unsupported(), reseedable(reseeded)
+        },
+        0,
+        new SimpleMeterRegistry()
+    );
+
+    source.reseed();
+    source.reseed();
+    assertEquals(4, reseeded.get());
+  }
+
+  @Test
+  void drbgStripesReseed() {
+    StripedEntropySource source = source(Map.of("entropy.stripes", "2"));
+    source.reseed();
+    assertEquals(32, source.randomBytes(32).length);
+  }
+
+  private static StripedEntropySource source(Map<String, String> entropy) {
+    Map<String, String> values = new HashMap<>();
+    entropy.forEach((key, value) -> values.put("app.webauthn." + key, value));
+    WebAuthnProperties properties = new Binder(new MapConfigurationPropertySource(values))
+        .bindOrCreate("app.webauthn", WebAuthnProperties.class);
+    return new StripedEntropySource(properties, new SimpleMeterRegistry());
+  }
+
+  private static double ids(MeterRegistry registry, String source) {
+    return registry.get("webauthn.entropy.ids").tag("source", source).counter().count();
+  }
+
+  private static SecureRandom unsupported() {
+    return new SecureRandom() {
+      @Override
+      public void reseed() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  private static SecureRandom reseedable(AtomicInteger reseeded) {
+    return new SecureRandom() {
+      @Override
+      public void reseed() {
+        reseeded.incrementAndGet();
+      }
+    };
+  }
+}
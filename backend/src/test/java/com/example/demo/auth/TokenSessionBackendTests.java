@@ -0,0 +1,104 @@
+package com.example.demo.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import jakarta.servlet.http.Cookie;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class TokenSessionBackendTests {
+  private static final String OLD_KEY = secret(1);
+  private static final String NEW_KEY = secret(2);
+
+  @Test
+  void signedCookieRoundTrips() {
+    TokenSessionBackend backend = backend(Map.entry(1, OLD_KEY));
+    String token = signIn(backend, new SessionBackend.Principal(42, 3));
+
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    Optional<SessionBackend.Principal> principal = backend.principal(request(token), response);
+
+    assertEquals(Optional.of(new SessionBackend.Principal(42, 3)), principal);
+    assertNull(response.getHeader(HttpHeaders.SET_COOKIE));
+  }
+
+  @Test
+  void tamperedTokenIsRejected() {
+    TokenSessionBackend backend = backend(Map.entry(1, OLD_KEY));
+    byte[] token = Base64.getUrlDecoder().decode(
+        signIn(backend, new SessionBackend.Principal(42, 0))
+    );
+    token[9] ^= 1;
+    String forged = Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+
+    assertTrue(backend.principal(request(forged), new MockHttpServletResponse()).isEmpty());
+  }
+
+  @Test
+  void tokenFromRetiredSigningKeyIsAcceptedAndReissued() {
+    String token = signIn(backend(Map.entry(1, OLD_KEY)), new SessionBackend.Principal(7, 1));
+    TokenSessionBackend rotated = backend(Map.entry(2, NEW_KEY), Map.entry(1, OLD_KEY));
+
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    assertEquals(
+        Optional.of(new SessionBackend.Principal(7, 1)),
+        rotated.principal(request(token), response)
+    );
+    String reissued = cookieValue(response);
+
+    TokenSessionBackend newOnly = backend(Map.entry(2, NEW_KEY));
+    assertTrue(newOnly.principal(request(token), new MockHttpServletResponse()).isEmpty());
+    assertEquals(
+        Optional.of(new SessionBackend.Principal(7, 1)),
+        newOnly.principal(request(reissued), new MockHttpServletResponse())
+    );
+  }
+
+  private static String signIn(TokenSessionBackend backend, SessionBackend.Principal principal) {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    backend.signIn(new MockHttpServletRequest(), response, principal);
+    return cookieValue(response);
+  }
+
+  private static MockHttpServletRequest request(String token) {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setCookies(new Cookie("AUTH", token));
+    return request;
+  }
+
+  private static String cookieValue(MockHttpServletResponse response) {
+    String header = response.getHeader(HttpHeaders.SET_COOKIE);
+    return header.substring("AUTH=".length(), header.indexOf(';'));
+  }
+
+  /** The first key signs, as in the configuration. */
+  @SafeVarargs
+  private static TokenSessionBackend backend(Map.Entry<Integer, String>... keys) {
+    Map<String, String> values = new HashMap<>();
+    values.put("app.webauthn.session.type", "token");
+    for (int i = 0; i < keys.length; i++) {
+      values.put("app.webauthn.session.keys[" + i + "].id", keys[i].getKey().toString());
+      values.put("app.webauthn.session.keys[" + i + "].secret", keys[i].getValue());
+    }
+    WebAuthnProperties properties = new Binder(new MapConfigurationPropertySource(values))
+        .bindOrCreate("app.webauthn", WebAuthnProperties.class);
+    return new TokenSessionBackend(properties, new SharedEntropySource());
+  }
+
+  private static String secret(int seed) {
+    byte[] key = new byte[32];
+    Arrays.fill(key, (byte) seed);
+    return Base64.getEncoder().encodeToString(key);
+  }
+}
@@ -62,6 +62,7 @@ const fetchJson = async <T>(path: string, init?: RequestInit): Promise<T> => {
   return body as T;
 };
 
+// publicKey는 기본적으로 JSON 객체로 옵니다 (app.webauthn.optionsEncoding=string 이면 문자열)
 const parsePublicKeyOptions = <T,>(options: StartOptionsResponse<T>): T => {
   const raw =
     typeof options.publicKey === 'string'